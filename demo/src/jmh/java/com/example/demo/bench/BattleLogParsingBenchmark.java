@@ -0,0 +1,80 @@
+package com.example.demo.bench;
+
+import com.example.demo.client.BattleLogDecoder;
+import com.example.demo.client.CardDictionary;
+import com.example.demo.model.BattleRecord;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse de um battlelog gravado (25 batalhas, ~128 KB): árvore {@code JsonNode} (caminho antigo,
+ * lendo os mesmos campos) contra o {@link BattleLogDecoder} com o corpo inteiro e em pedaços de
+ * 8 KB, como chegam os DataBuffers do WebClient.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="BattleLogParsingBenchmark -rf json -rff target/jmh-parsing.json"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BattleLogParsingBenchmark {
+
+    private static final int CHUNK = 8 * 1024;
+
+    @Param({"battlelog-1.json", "battlelog-2.json", "battlelog-3.json"})
+    public String fixture;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final CardDictionary cards = new CardDictionary();
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        json = BenchData.fixture(fixture);
+    }
+
+    @Benchmark
+    public void jsonNodeTree(Blackhole bh) throws Exception {
+        JsonNode battles = mapper.readTree(json);
+        for (JsonNode battle : battles) {
+            if (!battle.has("team") || !battle.has("opponent") || !battle.has("gameMode")) continue;
+            bh.consume(battle.get("battleTime").asText());
+            bh.consume(battle.get("gameMode").get("id").asInt());
+            for (JsonNode side : new JsonNode[]{battle.get("team").get(0), battle.get("opponent").get(0)}) {
+                bh.consume(side.get("tag").asText());
+                bh.consume(side.get("crowns").asInt());
+                for (JsonNode card : side.get("cards")) {
+                    bh.consume(card.get("id").asInt());
+                    bh.consume(card.get("name").asText());
+                    bh.consume(card.has("elixirCost") ? card.get("elixirCost").asInt() : 0);
+                    bh.consume(card.get("iconUrls").get("medium").asText());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<BattleRecord> streamingWhole() {
+        return BattleLogDecoder.decode(json, cards);
+    }
+
+    @Benchmark
+    public List<BattleRecord> streamingChunked() {
+        BattleLogDecoder decoder = new BattleLogDecoder(cards);
+        List<BattleRecord> battles = new ArrayList<>();
+        for (int offset = 0; offset < json.length; offset += CHUNK) {
+            battles.addAll(decoder.feed(ByteBuffer.wrap(json, offset, Math.min(CHUNK, json.length - offset))));
+        }
+        battles.addAll(decoder.finish());
+        return battles;
+    }
+}
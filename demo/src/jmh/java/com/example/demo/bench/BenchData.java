@@ -0,0 +1,57 @@
+package com.example.demo.bench;
+
+import com.example.demo.model.DeckKey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Geração determinística de dados sintéticos para os benchmarks.
+ */
+final class BenchData {
+
+    // Faixas aproximadas dos IDs reais: tropas, construções e feitiços
+    private static final int[][] CARD_RANGES = {{26000000, 110}, {27000000, 15}, {28000000, 30}};
+
+    private BenchData() {
+    }
+
+    static int randomCardId(Random rnd) {
+        int[] range = CARD_RANGES[rnd.nextInt(10) < 7 ? 0 : 1 + rnd.nextInt(2)];
+        return range[0] + rnd.nextInt(range[1]);
+    }
+
+    static int[] randomDeckIds(Random rnd) {
+        int[] ids = new int[DeckKey.SLOTS];
+        for (int i = 0; i < ids.length; i++) {
+            int id;
+            boolean dup;
+            do {
+                id = randomCardId(rnd);
+                dup = false;
+                for (int j = 0; j < i; j++) dup |= ids[j] == id;
+            } while (dup);
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    static DeckKey[] randomDecks(int count, long seed) {
+        Random rnd = new Random(seed);
+        DeckKey[] decks = new DeckKey[count];
+        for (int i = 0; i < count; i++) decks[i] = DeckKey.of(randomDeckIds(rnd));
+        return decks;
+    }
+
+    /** Battlelog gravado em {@code src/jmh/resources/fixtures} (resposta real de 25 batalhas). */
+    static byte[] fixture(String name) {
+        try (InputStream in = BenchData.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) throw new IllegalStateException("Fixture não encontrada: " + name);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.demo.bench;
+
+import com.example.demo.aggregate.BattleRows;
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.DeckRanking;
+import com.example.demo.aggregate.MatchupTable;
+import com.example.demo.aggregate.SeenBattles;
+import com.example.demo.model.CardInfo;
+import com.example.demo.model.DeckKey;
+import com.example.demo.store.CheckpointStore;
+import com.example.demo.store.RankedSnapshot;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primeira resposta de {@code /global/topdecks/data} depois de um restart:
+ * <ul>
+ *   <li>{@code legacyJson}: {@code getAggregatedData} antigo (readTree do globalCache.json com as
+ *       cartas de cada deck, mapas, score e sort de tudo);</li>
+ *   <li>{@code checkpointReplay}: replay do checkpoint compactado (colunas) + {@link DeckRanking} (top 20);</li>
+ *   <li>{@code rankedSnapshot}: mapeia o snapshot já ranqueado e copia as 20 primeiras entradas.</li>
+ * </ul>
+ * O setup imprime o tamanho de cada arquivo ({@code globalCache.json} × checkpoint × snapshot).
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="ColdLoadBenchmark -rf json -rff target/jmh-coldload.json"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ColdLoadBenchmark {
+
+    private static final int TOP = 20;
+    private static final TypeReference<List<Map<String, Object>>> CARD_LIST = new TypeReference<>() {};
+
+    @Param({"100000"})
+    public int decks;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private Path dir;
+    private File legacyFile;
+    private Path checkpointFile;
+    private Path snapshotFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("coldload");
+        Random rnd = new Random(7);
+        DeckKey[] keys = BenchData.randomDecks(decks, 7);
+        DeckAggregate aggregate = new DeckAggregate();
+        Map<Integer, CardInfo> cards = new HashMap<>();
+        Map<String, Integer> deckGames = new HashMap<>();
+        Map<String, Integer> deckWins = new HashMap<>();
+        Map<String, List<Map<String, Object>>> deckCards = new HashMap<>();
+        for (DeckKey key : keys) {
+            int games = (int) Math.min(2_000, 1 / Math.max(rnd.nextDouble(), 1e-6) * 10);
+            int wins = (int) Math.round(games * (0.4 + rnd.nextDouble() * 0.2));
+            aggregate.add(key, games, wins);
+
+            List<String> names = new ArrayList<>();
+            List<Map<String, Object>> deck = new ArrayList<>();
+            for (int id : key.cardIds()) {
+                CardInfo card = cards.computeIfAbsent(id, i -> new CardInfo(i, "Card " + i, 1 + i % 7,
+                        "https://api-assets.clashroyale.com/cards/300/card-" + i + ".png"));
+                names.add(card.name());
+                deck.add(card.toMap());
+            }
+            Collections.sort(names);
+            String legacyKey = String.join(",", names);
+            deckGames.put(legacyKey, games);
+            deckWins.put(legacyKey, wins);
+            deckCards.put(legacyKey, deck);
+        }
+
+        legacyFile = dir.resolve("globalCache.json").toFile();
+        mapper.writeValue(legacyFile, Map.of("processedRegions", List.of(), "deckWins", deckWins,
+                "deckGames", deckGames, "deckCards", deckCards));
+
+        checkpointFile = dir.resolve("globalCache.log");
+        CheckpointStore store = new CheckpointStore(checkpointFile.toString(), 1.0);
+        store.open(new Replay(new DeckAggregate()));
+        store.compact(cards.values(), Map.of(), aggregate, new MatchupTable(), new BattleRows(), new SeenBattles(), Map.of());
+        store.close();
+
+        DeckRanking ranking = DeckRanking.of(aggregate, this::render);
+        List<byte[]> stable = new ArrayList<>();
+        for (Map<String, Object> entry : ranking.stable(0, 500)) stable.add(mapper.writeValueAsBytes(entry));
+        List<byte[]> trending = new ArrayList<>();
+        for (Map<String, Object> entry : ranking.trending(0, 500)) trending.add(mapper.writeValueAsBytes(entry));
+        snapshotFile = dir.resolve("globalSnapshot.bin");
+        RankedSnapshot.write(snapshotFile, mapper.writeValueAsBytes(Map.of("totalGames", ranking.totalGames())),
+                stable, trending);
+
+        System.out.printf("%n📦 %d decks: globalCache.json %d KB, checkpoint %d KB, snapshot %d KB%n", decks,
+                legacyFile.length() / 1024, Files.size(checkpointFile) / 1024, Files.size(snapshotFile) / 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public Object legacyJson() throws Exception {
+        JsonNode json = mapper.readTree(legacyFile);
+        Map<String, Integer> deckWins = new HashMap<>();
+        Map<String, Integer> deckGames = new HashMap<>();
+        Map<String, List<Map<String, Object>>> deckCards = new HashMap<>();
+        json.get("deckWins").properties().forEach(e -> deckWins.put(e.getKey(), e.getValue().asInt()));
+        json.get("deckGames").properties().forEach(e -> deckGames.put(e.getKey(), e.getValue().asInt()));
+        json.get("deckCards").properties().forEach(e -> deckCards.put(e.getKey(), mapper.convertValue(e.getValue(), CARD_LIST)));
+
+        int totalWins = deckWins.values().stream().mapToInt(Integer::intValue).sum();
+        int totalGames = deckGames.values().stream().mapToInt(Integer::intValue).sum();
+        double p0 = totalGames > 0 ? totalWins / (double) totalGames : 0.5;
+        List<Map<String, Object>> stable = new ArrayList<>();
+        List<Map<String, Object>> trending = new ArrayList<>();
+        for (String deckKey : deckGames.keySet()) {
+            int games = deckGames.get(deckKey);
+            int wins = deckWins.getOrDefault(deckKey, 0);
+            Map<String, Object> deckData = new LinkedHashMap<>();
+            deckData.put("cards", deckCards.get(deckKey));
+            deckData.put("games", games);
+            deckData.put("wins", wins);
+            deckData.put("winrate", games > 0 ? (wins * 100.0) / games : 0.0);
+            deckData.put("wilsonLB", DeckRanking.wilsonLowerBound(wins, games, DeckRanking.Z95) * 100.0);
+            deckData.put("empiricalBayes", DeckRanking.empiricalBayesRate(wins, games, p0, DeckRanking.W_PRIOR) * 100.0);
+            if (games >= DeckRanking.MIN_STABLE) {
+                stable.add(deckData);
+            } else if (games >= DeckRanking.MIN_TRENDING) {
+                trending.add(deckData);
+            }
+        }
+        Comparator<Map<String, Object>> byWilsonDesc =
+                (a, b) -> Double.compare((double) b.get("wilsonLB"), (double) a.get("wilsonLB"));
+        stable.sort(byWilsonDesc);
+        trending.sort(byWilsonDesc);
+        return mapper.writeValueAsBytes(Map.of("stable", stable.subList(0, Math.min(TOP, stable.size())),
+                "trending", trending.subList(0, Math.min(TOP, trending.size()))));
+    }
+
+    @Benchmark
+    public Object checkpointReplay() throws Exception {
+        DeckAggregate aggregate = new DeckAggregate();
+        new CheckpointStore(checkpointFile.toString(), 1.0).read(new Replay(aggregate));
+        DeckRanking ranking = DeckRanking.of(aggregate, this::render);
+        return mapper.writeValueAsBytes(Map.of("stable", ranking.stable(0, TOP), "trending", ranking.trending(0, TOP)));
+    }
+
+    @Benchmark
+    public Object rankedSnapshot() {
+        return RankedSnapshot.map(snapshotFile).toJson(TOP);
+    }
+
+    private List<Map<String, Object>> render(DeckKey key) {
+        List<Map<String, Object>> cards = new ArrayList<>();
+        for (int id : key.cardIds()) cards.add(Map.of("id", id));
+        return cards;
+    }
+
+    private record Replay(DeckAggregate decks) implements CheckpointStore.Listener {
+        @Override
+        public void card(CardInfo card) {
+        }
+
+        @Override
+        public void region(int locationId) {
+        }
+
+        @Override
+        public void deck(DeckKey key, int games, int wins) {
+            decks.add(key, games, wins);
+        }
+    }
+}
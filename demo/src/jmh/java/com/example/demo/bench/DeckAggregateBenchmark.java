@@ -0,0 +1,142 @@
+package com.example.demo.bench;
+
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.DeckPartials;
+import com.example.demo.model.DeckKey;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escrita concorrente de partidas: três mapas sob {@code synchronized (deckGames)}
+ * (caminho antigo dos serviços) contra o {@link DeckAggregate} compartilhado e contra as
+ * parciais do {@link DeckPartials}, um slot por thread escritora (a redução final é medida à
+ * parte em {@code reduce}, com uma thread só).
+ *
+ * Escalonamento com 1, 8, 32 e 100 threads escritoras, seguido do {@code reduce}:
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.main=com.example.demo.bench.DeckAggregateBenchmark -Djmh.args=
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeckAggregateBenchmark {
+
+    private static final int DISTINCT_DECKS = 20_000;
+    private static final List<Map<String, Object>> CARDS = List.of();
+
+    private DeckKey[] pool;
+
+    private Map<DeckKey, Integer> deckWins;
+    private Map<DeckKey, Integer> deckGames;
+    private Map<DeckKey, List<Map<String, Object>>> deckCards;
+    private DeckAggregate aggregate;
+    private DeckPartials partials;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        pool = BenchData.randomDecks(DISTINCT_DECKS, 42);
+        deckWins = new ConcurrentHashMap<>();
+        deckGames = new ConcurrentHashMap<>();
+        deckCards = new ConcurrentHashMap<>();
+        aggregate = new DeckAggregate();
+        partials = new DeckPartials();
+    }
+
+    @Benchmark
+    public void globalMonitor() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        DeckKey key = pool[rnd.nextInt(pool.length)];
+        boolean win = rnd.nextBoolean();
+        synchronized (deckGames) {
+            deckCards.putIfAbsent(key, CARDS);
+            deckGames.put(key, deckGames.getOrDefault(key, 0) + 1);
+            if (win) deckWins.put(key, deckWins.getOrDefault(key, 0) + 1);
+        }
+    }
+
+    @Benchmark
+    public void deckAggregate() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        aggregate.record(pool[rnd.nextInt(pool.length)], rnd.nextBoolean());
+    }
+
+    /** Slot de cada thread escritora, como uma tarefa de jogador que segura o seu durante o lote. */
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private DeckPartials.Slot slot;
+
+        @Setup(Level.Iteration)
+        public void setup(DeckAggregateBenchmark bench) {
+            slot = bench.partials.acquire();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            slot.close();
+        }
+    }
+
+    @Benchmark
+    public void deckPartials(Writer writer) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        writer.slot.record(pool[rnd.nextInt(pool.length)], rnd.nextBoolean(), 0);
+    }
+
+    /** 8 parciais com todos os decks do pool, montadas fora da medição a cada chamada. */
+    @State(Scope.Thread)
+    public static class Region {
+
+        private DeckPartials partials;
+
+        @Setup(Level.Invocation)
+        public void setup(DeckAggregateBenchmark bench) {
+            DeckKey[] pool = bench.pool;
+            partials = new DeckPartials();
+            DeckPartials.Slot[] slots = new DeckPartials.Slot[8];
+            for (int w = 0; w < slots.length; w++) slots[w] = partials.acquire();
+            for (int i = 0; i < pool.length * 2; i++) slots[i % 8].record(pool[i % pool.length], (i & 1) == 0, 0);
+            for (DeckPartials.Slot slot : slots) slot.close();
+        }
+    }
+
+    /** Custo do fim da região: só a soma em árvore das 8 parciais. */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object reduce(Region region) {
+        return region.partials.reduce();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String writers = DeckAggregateBenchmark.class.getSimpleName() + "\\.(globalMonitor|deckAggregate|deckPartials)$";
+        for (int threads : new int[]{1, 8, 32, 100}) {
+            Options opts = new OptionsBuilder()
+                    .include(writers)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-aggregate-" + threads + "t.json")
+                    .build();
+            new Runner(opts).run();
+        }
+        // a redução acontece uma vez por região, numa thread só
+        Options reduce = new OptionsBuilder()
+                .include(DeckAggregateBenchmark.class.getSimpleName() + "\\.reduce$")
+                .threads(1)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-aggregate-reduce.json")
+                .build();
+        new Runner(reduce).run();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo.bench;
+
+import com.example.demo.model.DeckKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chave de deck para todas as batalhas de um battlelog gravado: nomes ordenados e unidos por
+ * vírgula + mapa por carta (caminho antigo de {@code handlePlayerBattles}) contra o
+ * {@link DeckKey} empacotado a partir dos IDs.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="DeckKeyBenchmark -rf json -rff target/jmh-deckkey.json"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeckKeyBenchmark {
+
+    // decks já extraídos do JSON: o parse fica de fora da medida
+    private int[][] ids;
+    private String[][] names;
+    private int[][] elixir;
+    private String[][] icons;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        List<JsonNode> decks = new ArrayList<>();
+        for (String fixture : new String[]{"battlelog-1.json", "battlelog-2.json", "battlelog-3.json"}) {
+            for (JsonNode battle : new ObjectMapper().readTree(BenchData.fixture(fixture))) {
+                decks.add(battle.get("team").get(0).get("cards"));
+                decks.add(battle.get("opponent").get(0).get("cards"));
+            }
+        }
+        ids = new int[decks.size()][];
+        names = new String[decks.size()][];
+        elixir = new int[decks.size()][];
+        icons = new String[decks.size()][];
+        for (int d = 0; d < decks.size(); d++) {
+            JsonNode cards = decks.get(d);
+            ids[d] = new int[cards.size()];
+            names[d] = new String[cards.size()];
+            elixir[d] = new int[cards.size()];
+            icons[d] = new String[cards.size()];
+            for (int c = 0; c < cards.size(); c++) {
+                JsonNode card = cards.get(c);
+                ids[d][c] = card.get("id").asInt();
+                names[d][c] = card.get("name").asText();
+                elixir[d][c] = card.path("elixirCost").asInt(0);
+                icons[d][c] = card.get("iconUrls").get("medium").asText();
+            }
+        }
+    }
+
+    @Benchmark
+    public void joinedNames(Blackhole bh) {
+        for (int d = 0; d < names.length; d++) {
+            List<Map<String, Object>> cards = new ArrayList<>();
+            List<String> cardNames = new ArrayList<>();
+            for (int c = 0; c < names[d].length; c++) {
+                Map<String, Object> cardInfo = new LinkedHashMap<>();
+                cardInfo.put("name", names[d][c]);
+                cardInfo.put("elixirCost", elixir[d][c]);
+                cardInfo.put("iconUrl", icons[d][c]);
+                cards.add(cardInfo);
+                cardNames.add(names[d][c]);
+            }
+            Collections.sort(cardNames);
+            bh.consume(String.join(",", cardNames));
+            bh.consume(cards);
+        }
+    }
+
+    @Benchmark
+    public void packedIds(Blackhole bh) {
+        for (int[] deck : ids) {
+            bh.consume(DeckKey.of(deck, deck.length));
+        }
+    }
+}
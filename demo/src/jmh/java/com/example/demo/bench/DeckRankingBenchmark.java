@@ -0,0 +1,89 @@
+package com.example.demo.bench;
+
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.DeckRanking;
+import com.example.demo.aggregate.DeckStats;
+import com.example.demo.model.DeckKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ranking stable/trending com top 20: mapa por deck + sort completo (caminho antigo)
+ * contra o {@link DeckRanking} (scores primitivos + heap limitado).
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="DeckRankingBenchmark -rf json -rff target/jmh-ranking.json"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DeckRankingBenchmark {
+
+    private static final int TOP = 20;
+    private static final List<Map<String, Object>> CARDS = List.of();
+
+    @Param({"100000", "1000000"})
+    public int decks;
+
+    private DeckAggregate aggregate;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random rnd = new Random(7);
+        DeckKey[] keys = BenchData.randomDecks(decks, 7);
+        aggregate = new DeckAggregate();
+        for (DeckKey key : keys) {
+            // cauda longa: a maioria dos decks tem poucas partidas
+            int games = (int) Math.min(2_000, 1 / Math.max(rnd.nextDouble(), 1e-6) * 10);
+            int wins = (int) Math.round(games * (0.4 + rnd.nextDouble() * 0.2));
+            aggregate.add(key, games, wins);
+        }
+    }
+
+    @Benchmark
+    public Object fullSort() {
+        long totalWins = aggregate.totalWins();
+        long totalGames = aggregate.totalGames();
+        double p0 = totalGames > 0 ? totalWins / (double) totalGames : 0.5;
+
+        List<Map<String, Object>> stable = new ArrayList<>();
+        List<Map<String, Object>> trending = new ArrayList<>();
+        for (DeckStats deck : aggregate.decks()) {
+            int games = deck.games();
+            int wins = deck.wins();
+            Map<String, Object> deckData = new LinkedHashMap<>();
+            deckData.put("cards", CARDS);
+            deckData.put("games", games);
+            deckData.put("wins", wins);
+            deckData.put("winrate", games > 0 ? (wins * 100.0) / games : 0.0);
+            deckData.put("wilsonLB", DeckRanking.wilsonLowerBound(wins, games, DeckRanking.Z95) * 100.0);
+            deckData.put("empiricalBayes", DeckRanking.empiricalBayesRate(wins, games, p0, DeckRanking.W_PRIOR) * 100.0);
+            if (games >= DeckRanking.MIN_STABLE) {
+                stable.add(deckData);
+            } else if (games >= DeckRanking.MIN_TRENDING) {
+                trending.add(deckData);
+            }
+        }
+        Comparator<Map<String, Object>> byWilsonDesc =
+                (a, b) -> Double.compare((double) b.get("wilsonLB"), (double) a.get("wilsonLB"));
+        stable.sort(byWilsonDesc);
+        trending.sort(byWilsonDesc);
+        return List.of(stable.subList(0, Math.min(TOP, stable.size())),
+                trending.subList(0, Math.min(TOP, trending.size())));
+    }
+
+    @Benchmark
+    public Object boundedTopK() {
+        DeckRanking ranking = DeckRanking.of(aggregate, key -> CARDS);
+        return List.of(ranking.stable(0, TOP), ranking.trending(0, TOP));
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.demo.bench;
+
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.DeckRanking;
+import com.example.demo.aggregate.DeckSearchIndex;
+import com.example.demo.aggregate.DeckStats;
+import com.example.demo.model.DeckKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Com a carta A, sem a carta B, elixir médio até 3.5, pelo menos 200 partidas", top 20 por Wilson:
+ * varredura de todos os decks (caminho sem índice) contra o {@link DeckSearchIndex} (AND/ANDNOT de
+ * bitmaps por carta + colunas primitivas). {@code build} mede a montagem do índice.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="DeckSearchBenchmark -rf json -rff target/jmh-search.json"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DeckSearchBenchmark {
+
+    private static final int TOP = 20;
+    private static final int INCLUDE = 26000010;
+    private static final int EXCLUDE = 28000004;
+    private static final int MIN_GAMES = 200;
+    private static final double MAX_ELIXIR = 3.5;
+
+    @Param({"100000", "1000000"})
+    public int decks;
+
+    private DeckAggregate aggregate;
+    private DeckSearchIndex index;
+    private DeckSearchIndex.Query query;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random rnd = new Random(7);
+        aggregate = new DeckAggregate();
+        for (DeckKey key : BenchData.randomDecks(decks, 7)) {
+            // cauda longa: a maioria dos decks tem poucas partidas
+            int games = (int) Math.min(2_000, 1 / Math.max(rnd.nextDouble(), 1e-6) * 10);
+            int wins = (int) Math.round(games * (0.4 + rnd.nextDouble() * 0.2));
+            aggregate.add(key, games, wins);
+        }
+        index = DeckSearchIndex.of(aggregate, DeckSearchBenchmark::elixir);
+        query = new DeckSearchIndex.Query(new int[]{INCLUDE}, new int[]{EXCLUDE}, MIN_GAMES, 0,
+                MAX_ELIXIR, DeckSearchIndex.Sort.WILSON);
+    }
+
+    // custo sintético estável por carta (1 a 8)
+    private static int elixir(int cardId) {
+        return 1 + Math.floorMod(cardId * 31, 8);
+    }
+
+    @Benchmark
+    public Object fullScan() {
+        List<DeckStats> found = new ArrayList<>();
+        for (DeckStats deck : aggregate.decks()) {
+            DeckKey key = deck.key();
+            if (deck.games() < MIN_GAMES || !key.contains(INCLUDE) || key.contains(EXCLUDE)) continue;
+            int[] ids = key.cardIds();
+            double total = 0;
+            for (int id : ids) total += elixir(id);
+            if (total / ids.length <= MAX_ELIXIR) found.add(deck);
+        }
+        found.sort(Comparator.comparingDouble((DeckStats deck) ->
+                DeckRanking.wilsonLowerBound(deck.wins(), deck.games(), DeckRanking.Z95)).reversed());
+        return found.subList(0, Math.min(TOP, found.size()));
+    }
+
+    @Benchmark
+    public Object bitmapIndex() {
+        return index.search(query, 0, TOP);
+    }
+
+    @Benchmark
+    public Object bitmapIndexNoCards() {
+        return index.search(new DeckSearchIndex.Query(new int[0], new int[0], MIN_GAMES, 0, MAX_ELIXIR,
+                DeckSearchIndex.Sort.WILSON), 0, TOP);
+    }
+
+    @Benchmark
+    @Measurement(iterations = 3, time = 2)
+    public Object build() {
+        return DeckSearchIndex.of(aggregate, DeckSearchBenchmark::elixir);
+    }
+}
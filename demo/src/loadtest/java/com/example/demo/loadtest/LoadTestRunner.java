@@ -0,0 +1,218 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.DemoApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Teste de carga ponta a ponta contra a {@link MockRoyaleApi}: sobe a API falsa e a aplicação
+ * (porta aleatória, checkpoint/snapshot em diretório temporário) no mesmo processo, roda a coleta
+ * global até o fim e depois dispara {@code /locations/{id}/topdecks} com vários clientes.
+ *
+ * Relata batalhas/s da coleta, p50/p99 das consultas por região e o pico de heap, no console e
+ * em {@code target/loadtest-result.json}.
+ *
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--regions=20 --latency-ms=80 --rate-429=0.01 --clients=16"
+ */
+public final class LoadTestRunner {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        MockRoyaleApi.Settings settings = MockRoyaleApi.Settings.from(options);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "16"));
+        int regionRequests = Integer.parseInt(options.getOrDefault("region-requests", "500"));
+        Path work = Files.createTempDirectory("loadtest");
+
+        HeapSampler heap = new HeapSampler();
+        heap.start();
+        try (MockRoyaleApi upstream = MockRoyaleApi.start(settings)) {
+            System.setProperty("spring.devtools.restart.enabled", "false");
+            // argumentos de linha de comando: precedem o application.properties
+            ConfigurableApplicationContext app = new SpringApplicationBuilder(DemoApplication.class).run(
+                    "--server.port=0",
+                    "--royale.api.base-url=" + upstream.baseUrl(),
+                    "--royale.api.rate-per-second=" + options.getOrDefault("rate-per-second", "1000"),
+                    "--royale.api.burst=" + options.getOrDefault("burst", "200"),
+                    "--royale.checkpoint.path=" + work.resolve("globalCache.log"),
+                    "--royale.snapshot.path=" + work.resolve("globalSnapshot.bin"));
+            String base = "http://localhost:" + app.getEnvironment().getProperty("local.server.port") + "/";
+            HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("settings", settings.toString());
+            try {
+                report.put("crawl", crawl(http, base));
+                report.put("regionQueries", regionQueries(http, base, settings.regions(), clients, regionRequests));
+            } finally {
+                Map<String, Object> upstreamStats = new LinkedHashMap<>();
+                upstreamStats.put("requests", upstream.requests());
+                upstreamStats.put("throttled429", upstream.throttled());
+                upstreamStats.put("megabytesSent", upstream.bytesSent() / (1024.0 * 1024.0));
+                report.put("upstream", upstreamStats);
+                report.put("heap", heap.finish());
+                app.close();
+            }
+
+            Path result = Path.of("target", "loadtest-result.json");
+            Files.createDirectories(result.getParent());
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(result.toFile(), report);
+            System.out.println("📈 Resultado do teste de carga (" + result + "):");
+            System.out.println(MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+        }
+        System.exit(0); // threads do Netty/Reactor não são daemon
+    }
+
+    // 🔹 Coleta global completa: /start e polling de /status até terminar
+    private static Map<String, Object> crawl(HttpClient http, String base) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> started = get(http, base + "global/topdecks/start");
+        if (started.statusCode() != 200) throw new IllegalStateException("Falha ao iniciar coleta: " + started.body());
+
+        JsonNode status;
+        do {
+            Thread.sleep(250);
+            status = MAPPER.readTree(get(http, base + "global/topdecks/status").body());
+        } while (status.path("running").asBoolean());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long unique = status.path("uniqueBattles").asLong();
+        Map<String, Object> crawl = new LinkedHashMap<>();
+        crawl.put("seconds", seconds);
+        crawl.put("regionsProcessed", status.path("regionsProcessed").asInt());
+        crawl.put("uniqueBattles", unique);
+        crawl.put("duplicateBattles", status.path("duplicateBattles").asLong());
+        crawl.put("battlesPerSecond", unique / seconds);
+        crawl.put("totalGames", status.path("totalGames").asLong());
+        return crawl;
+    }
+
+    // 🔹 Consultas concorrentes de ranking por região (frias e depois em cache)
+    private static Map<String, Object> regionQueries(HttpClient http, String base, int regions,
+                                                     int clients, int requests) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long[] latencies = new long[requests];
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                tasks.add(pool.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                        int region = MockRoyaleApi.FIRST_REGION + i % Math.max(1, regions);
+                        long t0 = System.nanoTime();
+                        try {
+                            if (get(http, base + "locations/" + region + "/topdecks?limit=20").statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - t0;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) task.get();
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        Map<String, Object> queries = new LinkedHashMap<>();
+        queries.put("requests", requests);
+        queries.put("clients", clients);
+        queries.put("errors", errors.get());
+        queries.put("requestsPerSecond", requests / seconds);
+        queries.put("p50Millis", percentile(latencies, 0.50));
+        queries.put("p99Millis", percentile(latencies, 0.99));
+        queries.put("maxMillis", latencies[latencies.length - 1] / 1e6);
+        return queries;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static HttpResponse<String> get(HttpClient http, String url) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofMinutes(2)).GET().build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /** {@code --chave=valor} -> mapa. */
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Argumento inválido: " + arg + " (use --chave=valor)");
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    /** Pico de heap usado, amostrado a cada 100 ms (API falsa e aplicação dividem o processo). */
+    private static final class HeapSampler extends Thread {
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private volatile boolean running = true;
+        private volatile long peak;
+
+        HeapSampler() {
+            super("heap-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                peak = Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        Map<String, Object> finish() {
+            running = false;
+            System.gc();
+            Map<String, Object> heap = new LinkedHashMap<>();
+            heap.put("peakUsedMegabytes", peak / (1024.0 * 1024.0));
+            heap.put("usedAfterGcMegabytes", memory.getHeapMemoryUsage().getUsed() / (1024.0 * 1024.0));
+            heap.put("maxMegabytes", memory.getHeapMemoryUsage().getMax() / (1024.0 * 1024.0));
+            return heap;
+        }
+    }
+}
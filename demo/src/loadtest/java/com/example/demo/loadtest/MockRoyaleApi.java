@@ -0,0 +1,275 @@
+package com.example.demo.loadtest;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Royale API falsa (Reactor Netty) para testes de carga locais, sem gastar a cota do token.
+ *
+ * Serve {@code /v1/cards}, {@code /v1/locations/{id}/pathoflegend/players} e
+ * {@code /v1/players/{tag}/battlelog} com dados sintéticos no formato real, com latência,
+ * taxa de 429 e tamanho de payload configuráveis. Os jogadores vêm de um pool compartilhado,
+ * então regiões vizinhas se sobrepõem (cache de battlelog e batalhas repetidas entram na conta),
+ * e as batalhas têm horário relativo ao momento da requisição.
+ *
+ * Sozinha: mvn -Ploadtest test-compile exec:exec -Dloadtest.main=com.example.demo.loadtest.MockRoyaleApi -Dloadtest.args="--port=8090"
+ */
+public final class MockRoyaleApi implements AutoCloseable {
+
+    static final int FIRST_REGION = 57000007;
+
+    private static final int[][] CARD_RANGES = {{26000000, 36}, {27000000, 10}, {28000000, 12}};
+    private static final int[] MODES = {72000464, 72000464, 72000464, 72000464, 72000006, 72000006, 72000006, 72000009};
+    private static final DateTimeFormatter BATTLE_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'.000Z'").withZone(ZoneOffset.UTC);
+
+    /** Parâmetros da simulação ({@code --chave=valor}). */
+    public record Settings(int port, int regions, int playersPerRegion, int playerPool, int deckPool,
+                           int battlesPerLog, int paddingBytes, Duration latency, Duration jitter,
+                           double rate429, double retryAfterSeconds) {
+
+        static Settings from(Map<String, String> options) {
+            return new Settings(
+                    Integer.parseInt(options.getOrDefault("port", "0")),
+                    Integer.parseInt(options.getOrDefault("regions", "20")),
+                    Integer.parseInt(options.getOrDefault("players-per-region", "50")),
+                    Integer.parseInt(options.getOrDefault("player-pool", "2000")),
+                    Integer.parseInt(options.getOrDefault("deck-pool", "5000")),
+                    Integer.parseInt(options.getOrDefault("battles-per-log", "25")),
+                    Integer.parseInt(options.getOrDefault("padding-bytes", "0")),
+                    Duration.ofMillis(Long.parseLong(options.getOrDefault("latency-ms", "80"))),
+                    Duration.ofMillis(Long.parseLong(options.getOrDefault("jitter-ms", "40"))),
+                    Double.parseDouble(options.getOrDefault("rate-429", "0.01")),
+                    Double.parseDouble(options.getOrDefault("retry-after", "0.2")));
+        }
+    }
+
+    private final Settings settings;
+    private final int[][] decks;
+    private final String padding;
+    private final DisposableServer server;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    private MockRoyaleApi(Settings settings) {
+        this.settings = settings;
+        this.decks = randomDecks(settings.deckPool(), new Random(7));
+        this.padding = "x".repeat(Math.max(0, settings.paddingBytes() / Math.max(1, settings.battlesPerLog())));
+        this.server = HttpServer.create()
+                .port(settings.port())
+                .route(routes -> routes
+                        .get("/v1/cards", (request, response) -> respond(response, this::cards))
+                        .get("/v1/locations/{id}/pathoflegend/players", this::players)
+                        .get("/v1/players/{tag}/battlelog", this::battlelog))
+                .bindNow();
+    }
+
+    public static MockRoyaleApi start(Settings settings) {
+        return new MockRoyaleApi(settings);
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.port() + "/v1/";
+    }
+
+    public Settings settings() {
+        return settings;
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long throttled() {
+        return throttled.sum();
+    }
+
+    public long bytesSent() {
+        return bytes.sum();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    // =============================
+    // 🔹 Rotas
+    // =============================
+
+    private Mono<Void> players(HttpServerRequest request, HttpServerResponse response) {
+        int region = Integer.parseInt(request.param("id")) - FIRST_REGION;
+        if (region < 0 || region >= settings.regions()) {
+            return delayed(response.status(404).sendString(Mono.just("{\"reason\":\"notFound\"}")).then());
+        }
+        return respond(response, () -> {
+            StringBuilder json = new StringBuilder(64 * settings.playersPerRegion()).append("{\"items\":[");
+            // ~30% dos jogadores também aparecem na região seguinte
+            int first = region * settings.playersPerRegion() * 7 / 10;
+            for (int i = 0; i < settings.playersPerRegion(); i++) {
+                int player = (first + i) % settings.playerPool();
+                if (i > 0) json.append(',');
+                json.append("{\"tag\":\"").append(tag(player)).append("\",\"name\":\"Player ").append(player)
+                        .append("\",\"eloRating\":").append(3000 - i).append(",\"rank\":").append(i + 1).append('}');
+            }
+            return json.append("],\"paging\":{\"cursors\":{}}}").toString();
+        });
+    }
+
+    private Mono<Void> battlelog(HttpServerRequest request, HttpServerResponse response) {
+        String tag = URLDecoder.decode(request.param("tag"), StandardCharsets.UTF_8);
+        int player = tag.startsWith("#P") ? Integer.parseInt(tag.substring(2), 36) : tag.hashCode() & 0xffff;
+        return respond(response, () -> battlelog(player, tag));
+    }
+
+    private Mono<Void> respond(HttpServerResponse response, Supplier<String> body) {
+        requests.increment();
+        if (ThreadLocalRandom.current().nextDouble() < settings.rate429()) {
+            throttled.increment();
+            return delayed(response.status(429)
+                    .header("Retry-After", String.valueOf(settings.retryAfterSeconds()))
+                    .sendString(Mono.just("{\"reason\":\"requestThrottled\"}")).then());
+        }
+        return delayed(Mono.defer(() -> {
+            byte[] json = body.get().getBytes(StandardCharsets.UTF_8);
+            bytes.add(json.length);
+            return response.header("Content-Type", "application/json").sendByteArray(Mono.just(json)).then();
+        }));
+    }
+
+    private Mono<Void> delayed(Mono<Void> send) {
+        long jitter = settings.jitter().toMillis();
+        long millis = settings.latency().toMillis() + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0);
+        return millis > 0 ? Mono.delay(Duration.ofMillis(millis)).then(send) : send;
+    }
+
+    // =============================
+    // 🔹 Dados sintéticos
+    // =============================
+
+    private String cards() {
+        StringBuilder json = new StringBuilder(8192).append("{\"items\":[");
+        boolean first = true;
+        for (int[] range : CARD_RANGES) {
+            for (int id = range[0]; id < range[0] + range[1]; id++) {
+                if (!first) json.append(',');
+                first = false;
+                appendCard(json, id, 14, false);
+            }
+        }
+        return json.append("],\"supportItems\":[]}").toString();
+    }
+
+    private String battlelog(int player, String tag) {
+        // batalhas mudam com o tempo: a cada 20 min o jogador "joga" uma nova
+        long now = System.currentTimeMillis();
+        long slot = now / 1_200_000L;
+        StringBuilder json = new StringBuilder(3_000 * settings.battlesPerLog()).append('[');
+        for (int i = 0; i < settings.battlesPerLog(); i++) {
+            long battleSlot = slot - i;
+            SplittableRandom rnd = new SplittableRandom(player * 1_000_003L + battleSlot);
+            int[] teamDeck = decks[(player * 3 + rnd.nextInt(3)) % decks.length];
+            int[] opponentDeck = decks[zipf(rnd, decks.length)];
+            int opponent = rnd.nextInt(settings.playerPool());
+            int teamCrowns = rnd.nextInt(4);
+            int opponentCrowns = teamCrowns == 0 ? 1 + rnd.nextInt(3) : rnd.nextInt(teamCrowns + 1);
+            if (rnd.nextBoolean()) {
+                int swap = teamCrowns;
+                teamCrowns = opponentCrowns;
+                opponentCrowns = swap;
+            }
+            if (i > 0) json.append(',');
+            json.append("{\"type\":\"pathOfLegend\",\"battleTime\":\"")
+                    .append(BATTLE_TIME.format(Instant.ofEpochMilli(battleSlot * 1_200_000L + rnd.nextInt(600_000))))
+                    .append("\",\"isLadderTournament\":false,\"arena\":{\"id\":54000031,\"name\":\"Legendary Arena\"},")
+                    .append("\"gameMode\":{\"id\":").append(MODES[rnd.nextInt(MODES.length)]).append("},")
+                    .append("\"deckSelection\":\"collection\",\"team\":[");
+            appendSide(json, rnd, tag, teamCrowns, teamDeck);
+            json.append("],\"opponent\":[");
+            appendSide(json, rnd, tag(opponent), opponentCrowns, opponentDeck);
+            json.append("],\"isHostedMatch\":false,\"leagueNumber\":7");
+            if (!padding.isEmpty()) json.append(",\"padding\":\"").append(padding).append('"');
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private void appendSide(StringBuilder json, SplittableRandom rnd, String tag, int crowns, int[] deck) {
+        json.append("{\"tag\":\"").append(tag).append("\",\"name\":\"Player\",\"startingTrophies\":")
+                .append(9000 + rnd.nextInt(1000)).append(",\"crowns\":").append(crowns)
+                .append(",\"kingTowerHitPoints\":").append(rnd.nextInt(9000))
+                .append(",\"clan\":{\"tag\":\"#C0\",\"name\":\"Clan\",\"badgeId\":16000000},\"cards\":[");
+        for (int c = 0; c < deck.length; c++) {
+            if (c > 0) json.append(',');
+            appendCard(json, deck[c], 13 + rnd.nextInt(4), rnd.nextInt(10) == 0);
+        }
+        json.append("],\"supportCards\":[{\"name\":\"Tower Princess\",\"id\":159000000,\"level\":16,\"maxLevel\":16,")
+                .append("\"rarity\":\"common\",\"iconUrls\":{\"medium\":\"https://api-assets.clashroyale.com/cards/300/tower-princess.png\"}}],")
+                .append("\"elixirLeaked\":").append(rnd.nextInt(800) / 100.0).append('}');
+    }
+
+    private static void appendCard(StringBuilder json, int id, int level, boolean evolved) {
+        json.append("{\"name\":\"Card ").append(id).append("\",\"id\":").append(id)
+                .append(",\"level\":").append(level).append(",\"maxLevel\":16,\"rarity\":\"common\",\"elixirCost\":")
+                .append(1 + id % 7).append(",\"iconUrls\":{\"medium\":\"https://api-assets.clashroyale.com/cards/300/card-")
+                .append(id).append(".png\"");
+        if (evolved) json.append(",\"evolutionMedium\":\"https://api-assets.clashroyale.com/cardevolutions/300/card-").append(id).append(".png\"");
+        json.append("}}");
+    }
+
+    static String tag(int player) {
+        return "#P" + Integer.toString(player, 36).toUpperCase();
+    }
+
+    // poucos decks muito populares e cauda longa
+    private static int zipf(SplittableRandom rnd, int size) {
+        double u = rnd.nextDouble();
+        return (int) (size * u * u * u);
+    }
+
+    private static int[][] randomDecks(int count, Random rnd) {
+        int[][] decks = new int[count][];
+        for (int d = 0; d < count; d++) {
+            int[] deck = new int[8];
+            for (int i = 0; i < deck.length; i++) {
+                int id;
+                boolean dup;
+                do {
+                    int[] range = CARD_RANGES[rnd.nextInt(10) < 7 ? 0 : 1 + rnd.nextInt(2)];
+                    id = range[0] + rnd.nextInt(range[1]);
+                    dup = false;
+                    for (int j = 0; j < i; j++) dup |= deck[j] == id;
+                } while (dup);
+                deck[i] = id;
+            }
+            decks[d] = deck;
+        }
+        return decks;
+    }
+
+    public static void main(String[] args) {
+        Settings settings = Settings.from(LoadTestRunner.options(args));
+        try (MockRoyaleApi api = start(settings)) {
+            System.out.println("🧪 Royale API falsa em " + api.baseUrl() + " " + settings);
+            api.server.onDispose().block();
+        }
+    }
+}
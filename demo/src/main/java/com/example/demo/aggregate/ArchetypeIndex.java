@@ -0,0 +1,232 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Arquétipos: grupos de decks quase iguais (ex: só o feitiço trocado), por similaridade de Jaccard
+ * entre os conjuntos de cartas. Dois decks de 8 cartas com uma troca têm Jaccard 7/9 ≈ 0.78; com
+ * duas, 6/10 = 0.6.
+ *
+ * Cada arquétipo tem um deck representante (o primeiro que o criou). Um deck novo entra no
+ * arquétipo cujo representante é o mais parecido com ele, se a similaridade for pelo menos
+ * {@code minSimilarity}; senão vira representante de um arquétipo novo. Comparar só com
+ * representantes evita o encadeamento (A~B~C~D com A e D sem nada em comum).
+ *
+ * Os candidatos vêm de LSH sobre MinHash: a assinatura tem {@link #BANDS} × {@link #ROWS} mínimos
+ * de hashes das cartas, e cada faixa de {@link #ROWS} valores é a chave de um balde. Só os
+ * representantes que caem num mesmo balde que o deck são comparados (Jaccard exato), então atribuir
+ * um deck custa O(candidatos), sem comparar todos os pares. Com 10×3, um par com Jaccard 0.78 divide
+ * algum balde com probabilidade ~0.998, e um com 0.6, ~0.91.
+ *
+ * A atribuição depende da ordem de chegada: {@link #addAll} ordena por partidas para que os decks
+ * mais jogados virem representantes. Thread-safe (métodos sincronizados).
+ */
+public final class ArchetypeIndex {
+
+    static final int BANDS = 10;
+    static final int ROWS = 3;
+    private static final int HASHES = BANDS * ROWS;
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < HASHES; i++) SEEDS[i] = seed = mix(seed + 0x9E3779B97F4A7C15L);
+    }
+
+    private final double minSimilarity;
+
+    private final Map<DeckKey, Integer> archetypeOf = new HashMap<>();
+    private final List<DeckKey> representatives = new ArrayList<>();
+    private final List<List<DeckKey>> members = new ArrayList<>();
+    private final int[][] cardHashes = new int[1 << 16][]; // código -> hash de cada função, calculado uma vez
+
+    // baldes LSH: chave da faixa -> lista encadeada de entradas (arquétipo * BANDS + faixa), +1 (0 = vazio)
+    private long[] bucketKeys = new long[1024];
+    private int[] bucketHeads = new int[1024];
+    private int bucketCount;
+    private int[] next = new int[64 * BANDS];
+    private int[] visited = new int[64]; // carimbo da última consulta que já comparou o arquétipo
+    private int stamp;
+
+    public ArchetypeIndex(double minSimilarity) {
+        this.minSimilarity = minSimilarity;
+    }
+
+    /** Arquétipo do deck, criando a atribuição se ele ainda não foi visto. */
+    public synchronized int assign(DeckKey deck) {
+        Integer known = archetypeOf.get(deck);
+        if (known != null) return known;
+
+        int[] signature = signature(deck);
+        int best = -1;
+        double bestSimilarity = minSimilarity;
+        if (++stamp == 0) {
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            int entry = bucketHeads[bucketSlot(bandKey(signature, band))];
+            while (entry != 0) {
+                int archetype = (entry - 1) / BANDS;
+                if (visited[archetype] != stamp) {
+                    visited[archetype] = stamp;
+                    double similarity = similarity(deck, representatives.get(archetype));
+                    if (similarity > bestSimilarity || (similarity == bestSimilarity && best < 0)) {
+                        best = archetype;
+                        bestSimilarity = similarity;
+                    }
+                }
+                entry = next[entry - 1];
+            }
+        }
+        if (best < 0) best = create(deck, signature);
+        archetypeOf.put(deck, best);
+        members.get(best).add(deck);
+        return best;
+    }
+
+    /** Atribui todos os decks do agregado, dos mais jogados para os menos jogados. */
+    public synchronized void addAll(DeckAggregate decks) {
+        List<DeckStats> rows = new ArrayList<>(decks.decks());
+        rows.sort(Comparator.comparingInt(DeckStats::games).reversed().thenComparing(DeckStats::key));
+        for (DeckStats deck : rows) assign(deck.key());
+    }
+
+    /** Arquétipo já atribuído ao deck, ou -1. */
+    public synchronized int archetypeOf(DeckKey deck) {
+        Integer archetype = archetypeOf.get(deck);
+        return archetype != null ? archetype : -1;
+    }
+
+    public synchronized DeckKey representative(int archetype) {
+        return representatives.get(archetype);
+    }
+
+    /** Cópia dos decks do arquétipo, em ordem de atribuição (o representante é o primeiro). */
+    public synchronized List<DeckKey> members(int archetype) {
+        return new ArrayList<>(members.get(archetype));
+    }
+
+    public synchronized int variants(int archetype) {
+        return members.get(archetype).size();
+    }
+
+    public synchronized int size() {
+        return representatives.size();
+    }
+
+    public synchronized int decks() {
+        return archetypeOf.size();
+    }
+
+    public synchronized void clear() {
+        archetypeOf.clear();
+        representatives.clear();
+        members.clear();
+        bucketKeys = new long[1024];
+        bucketHeads = new int[1024];
+        bucketCount = 0;
+        next = new int[64 * BANDS];
+        visited = new int[64];
+        stamp = 0;
+    }
+
+    /** Jaccard entre os conjuntos de cartas (slots em ordem crescente de código: merge linear). */
+    public static double similarity(DeckKey a, DeckKey b) {
+        int na = a.size(), nb = b.size();
+        int i = 0, j = 0, common = 0;
+        while (i < na && j < nb) {
+            int ca = a.code(i), cb = b.code(j);
+            if (ca == cb) {
+                common++;
+                i++;
+                j++;
+            } else if (ca < cb) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = na + nb - common;
+        return union > 0 ? common / (double) union : 1.0;
+    }
+
+    private int create(DeckKey deck, int[] signature) {
+        int archetype = representatives.size();
+        representatives.add(deck);
+        members.add(new ArrayList<>(1));
+        if ((archetype + 1) * BANDS > next.length) next = Arrays.copyOf(next, next.length * 2);
+        if (archetype >= visited.length) visited = Arrays.copyOf(visited, visited.length * 2);
+        for (int band = 0; band < BANDS; band++) {
+            long key = bandKey(signature, band);
+            int slot = bucketSlot(key);
+            if (bucketKeys[slot] == 0) {
+                bucketKeys[slot] = key;
+                bucketCount++;
+            }
+            int entry = archetype * BANDS + band;
+            next[entry] = bucketHeads[slot];
+            bucketHeads[slot] = entry + 1;
+            if (bucketCount * 2 > bucketKeys.length) growBuckets();
+        }
+        return archetype;
+    }
+
+    /** Posição do balde da chave (ocupada por ela ou livre). */
+    private int bucketSlot(long key) {
+        int mask = bucketKeys.length - 1;
+        for (int i = (int) (key ^ (key >>> 32)) & mask; ; i = (i + 1) & mask) {
+            if (bucketKeys[i] == key || bucketKeys[i] == 0) return i;
+        }
+    }
+
+    private void growBuckets() {
+        long[] oldKeys = bucketKeys;
+        int[] oldHeads = bucketHeads;
+        bucketKeys = new long[oldKeys.length * 2];
+        bucketHeads = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = bucketSlot(oldKeys[i]);
+            bucketKeys[slot] = oldKeys[i];
+            bucketHeads[slot] = oldHeads[i];
+        }
+    }
+
+    private int[] signature(DeckKey deck) {
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int slot = 0; slot < DeckKey.SLOTS; slot++) {
+            int code = deck.code(slot);
+            if (code == 0) break;
+            int[] hashes = cardHashes[code];
+            if (hashes == null) {
+                hashes = cardHashes[code] = new int[HASHES];
+                for (int i = 0; i < HASHES; i++) hashes[i] = (int) mix(code * 0x9E3779B97F4A7C15L ^ SEEDS[i]);
+            }
+            for (int i = 0; i < HASHES; i++) signature[i] = Math.min(signature[i], hashes[i]);
+        }
+        return signature;
+    }
+
+    // faixa + seus ROWS mínimos numa chave; 0 fica reservado para balde livre
+    private static long bandKey(int[] signature, int band) {
+        long h = band + 1;
+        for (int row = 0; row < ROWS; row++) h = h * 0x9E3779B97F4A7C15L + signature[band * ROWS + row];
+        h = mix(h);
+        return h != 0 ? h : 1;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+
+import java.util.Arrays;
+
+/**
+ * O que cada batalha contada somou no agregado: ID, horário, os dois decks e o resultado, em
+ * colunas primitivas (49 bytes por batalha, sem objetos).
+ *
+ * Só a coleta particionada guarda isso. Uma batalha entre jogadores de regiões de partições
+ * diferentes é contada pelas duas, e os contadores já somados não dizem quanto descontar; com as
+ * linhas, o coordenador refaz o agregado a partir da união das batalhas, uma vez por ID, como a
+ * coleta num nó só faria. Thread-safe (métodos sincronizados).
+ *
+ * Batalhas contadas sem linha (log gravado antes delas ou por um nó não particionado) ficam marcadas
+ * por {@link #markMissing}; enquanto alguma estiver dentro do horizonte, as linhas não são
+ * {@link #complete()} e o coordenador usa os contadores desta partição.
+ */
+public final class BattleRows {
+
+    /** Recebe as batalhas na ordem de inserção; um deck ausente no battlelog vem {@code null}. */
+    public interface RowVisitor {
+        void accept(long battleId, long battleTime, DeckKey team, DeckKey opponent, boolean win, boolean opponentWin);
+    }
+
+    static final int WIN = 1;
+    static final int OPPONENT_WIN = 2;
+    static final int TEAM = 4;
+    static final int OPPONENT = 8;
+
+    private long[] ids = new long[16];
+    private long[] times = new long[16];
+    private long[] decks = new long[16 * 4]; // hi/lo do time, hi/lo do adversário
+    private byte[] flags = new byte[16];
+    private int size;
+    private long missingUntil = Long.MIN_VALUE; // maior battleTime entre as batalhas sem linha
+
+    public synchronized void add(long battleId, long battleTime, DeckKey team, DeckKey opponent,
+                                 boolean win, boolean opponentWin) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            times = Arrays.copyOf(times, capacity);
+            decks = Arrays.copyOf(decks, capacity * 4);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        ids[size] = battleId;
+        times[size] = battleTime;
+        int bits = (win ? WIN : 0) | (opponentWin ? OPPONENT_WIN : 0);
+        if (team != null) {
+            decks[4 * size] = team.hi();
+            decks[4 * size + 1] = team.lo();
+            bits |= TEAM;
+        }
+        if (opponent != null) {
+            decks[4 * size + 2] = opponent.hi();
+            decks[4 * size + 3] = opponent.lo();
+            bits |= OPPONENT;
+        }
+        flags[size++] = (byte) bits;
+    }
+
+    /** Copia todas as linhas de {@code other} ({@code other} não muda). */
+    public void addAll(BattleRows other) {
+        other.forEach(this::add);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /** Registra que há batalhas contadas sem linha até {@code battleTime}. */
+    public synchronized void markMissing(long battleTime) {
+        missingUntil = Math.max(missingUntil, battleTime);
+    }
+
+    /** {@code true} se toda batalha contada (dentro do horizonte) tem a sua linha. */
+    public synchronized boolean complete() {
+        return missingUntil == Long.MIN_VALUE;
+    }
+
+    /**
+     * Esquece as linhas com {@code battleTime} anterior a {@code horizon}, como
+     * {@link SeenBattles#prune} faz com os IDs. Devolve quantas foram esquecidas.
+     */
+    public synchronized int prune(long horizon) {
+        if (missingUntil < horizon) missingUntil = Long.MIN_VALUE;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (times[i] < horizon) continue;
+            if (kept != i) {
+                ids[kept] = ids[i];
+                times[kept] = times[i];
+                System.arraycopy(decks, 4 * i, decks, 4 * kept, 4);
+                flags[kept] = flags[i];
+            }
+            kept++;
+        }
+        int removed = size - kept;
+        size = kept;
+        int capacity = 16;
+        while (capacity < kept) capacity *= 2;
+        if (capacity < ids.length) { // devolve a memória, não só o tamanho
+            ids = Arrays.copyOf(ids, capacity);
+            times = Arrays.copyOf(times, capacity);
+            decks = Arrays.copyOf(decks, capacity * 4);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        return removed;
+    }
+
+    public synchronized void forEach(RowVisitor visitor) {
+        for (int i = 0; i < size; i++) {
+            int bits = flags[i];
+            DeckKey team = (bits & TEAM) != 0 ? DeckKey.fromBits(decks[4 * i], decks[4 * i + 1]) : null;
+            DeckKey opponent = (bits & OPPONENT) != 0 ? DeckKey.fromBits(decks[4 * i + 2], decks[4 * i + 3]) : null;
+            visitor.accept(ids[i], times[i], team, opponent, (bits & WIN) != 0, (bits & OPPONENT_WIN) != 0);
+        }
+    }
+
+    public synchronized void clear() {
+        ids = new long[16];
+        times = new long[16];
+        decks = new long[16 * 4];
+        flags = new byte[16];
+        size = 0;
+        missingUntil = Long.MIN_VALUE;
+    }
+}
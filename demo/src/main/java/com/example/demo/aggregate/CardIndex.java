@@ -0,0 +1,160 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Índice de cartas: partidas/vitórias por carta e por par de cartas do mesmo deck.
+ *
+ * Cada carta ganha um índice denso na primeira vez que aparece (até {@link #MAX_CARDS}); os
+ * contadores ficam em arrays primitivos atômicos indexados por ele, e os pares numa matriz
+ * triangular achatada ({@code j * (j - 1) / 2 + i}, com {@code i < j}). Somar um deck custa
+ * 8 + 28 incrementos, e as consultas de uma carta percorrem só as outras cartas, O(cartas)
+ * em vez de O(decks).
+ */
+public final class CardIndex {
+
+    public static final int MAX_CARDS = 512;
+
+    /** Parceiro de uma carta: partidas/vitórias dos decks com as duas. */
+    public record Pair(int cardId, long games, long wins, double synergy) {
+    }
+
+    private final AtomicIntegerArray slotOf = new AtomicIntegerArray(1 << 16); // código -> índice + 1
+    private final int[] codeOf = new int[MAX_CARDS];
+    private volatile int size;
+
+    private final AtomicLongArray games = new AtomicLongArray(MAX_CARDS);
+    private final AtomicLongArray wins = new AtomicLongArray(MAX_CARDS);
+    private final AtomicLongArray pairGames = new AtomicLongArray(MAX_CARDS * (MAX_CARDS - 1) / 2);
+    private final AtomicLongArray pairWins = new AtomicLongArray(MAX_CARDS * (MAX_CARDS - 1) / 2);
+    private final LongAdder deckGames = new LongAdder();
+
+    /** Soma {@code games} partidas (e {@code wins} vitórias) de um deck às suas cartas e pares. */
+    public void add(DeckKey deck, long games, long wins) {
+        if (games == 0) return;
+        int[] cards = new int[DeckKey.SLOTS];
+        int n = 0;
+        for (int slot = 0; slot < DeckKey.SLOTS; slot++) {
+            int code = deck.code(slot);
+            if (code == 0) break;
+            int index = index(code);
+            if (index >= 0) cards[n++] = index;
+        }
+        deckGames.add(games);
+        // slots em ordem canônica crescente de código, mas os índices densos não: ordena o par
+        for (int a = 0; a < n; a++) {
+            this.games.addAndGet(cards[a], games);
+            if (wins != 0) this.wins.addAndGet(cards[a], wins);
+            for (int b = a + 1; b < n; b++) {
+                int pair = pair(cards[a], cards[b]);
+                pairGames.addAndGet(pair, games);
+                if (wins != 0) pairWins.addAndGet(pair, wins);
+            }
+        }
+    }
+
+    /** Soma todos os decks de um agregado (ex: delta de uma região concluída). */
+    public void addAll(DeckAggregate decks) {
+        for (DeckStats deck : decks.decks()) add(deck.key(), deck.games(), deck.wins());
+    }
+
+    /** Partidas de decks somadas (cada partida conta uma vez, não uma por carta). */
+    public long totalGames() {
+        return deckGames.sum();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int cardId) {
+        return indexOf(cardId) >= 0;
+    }
+
+    public long games(int cardId) {
+        int index = indexOf(cardId);
+        return index >= 0 ? games.get(index) : 0;
+    }
+
+    public long wins(int cardId) {
+        int index = indexOf(cardId);
+        return index >= 0 ? wins.get(index) : 0;
+    }
+
+    /**
+     * Parceiros de {@code cardId} com pelo menos {@code minGames} partidas juntos, do maior para o
+     * menor {@code synergy}: winrate do par menos a média dos winrates das duas cartas (em pontos
+     * percentuais). Positivo = as cartas rendem mais juntas do que cada uma rende em geral.
+     */
+    public List<Pair> synergies(int cardId, long minGames, int limit) {
+        int card = indexOf(cardId);
+        if (card < 0) return List.of();
+        double cardRate = rate(wins.get(card), games.get(card));
+        int cards = size;
+        List<Pair> pairs = new ArrayList<>();
+        for (int other = 0; other < cards; other++) {
+            if (other == card) continue;
+            int pair = pair(card, other);
+            long together = pairGames.get(pair);
+            if (together == 0 || together < minGames) continue;
+            long won = pairWins.get(pair);
+            double otherRate = rate(wins.get(other), games.get(other));
+            double synergy = rate(won, together) - (cardRate + otherRate) / 2;
+            pairs.add(new Pair(DeckKey.decode(codeOf[other]), together, won, synergy));
+        }
+        pairs.sort(Comparator.comparingDouble(Pair::synergy).reversed().thenComparing(Comparator.comparingLong(Pair::games).reversed()));
+        return pairs.subList(0, Math.min(Math.max(limit, 0), pairs.size()));
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            slotOf.set(codeOf[i], 0);
+            games.set(i, 0);
+            wins.set(i, 0);
+            for (int j = 0; j < i; j++) {
+                pairGames.set(pair(i, j), 0);
+                pairWins.set(pair(i, j), 0);
+            }
+        }
+        size = 0;
+        deckGames.reset();
+    }
+
+    /** Índice denso da carta, ou -1 se nunca apareceu (IDs fora do formato são rejeitados pelo DeckKey). */
+    private int indexOf(int cardId) {
+        return slotOf.get(DeckKey.encode(cardId)) - 1;
+    }
+
+    private int index(int code) {
+        int slot = slotOf.get(code);
+        return slot != 0 ? slot - 1 : assign(code);
+    }
+
+    private synchronized int assign(int code) {
+        int slot = slotOf.get(code);
+        if (slot != 0) return slot - 1;
+        if (size == MAX_CARDS) return -1; // além da capacidade: carta ignorada no índice
+        int index = size;
+        codeOf[index] = code;
+        slotOf.set(code, index + 1);
+        size = index + 1;
+        return index;
+    }
+
+    private static int pair(int a, int b) {
+        int i = Math.min(a, b);
+        int j = Math.max(a, b);
+        return j * (j - 1) / 2 + i;
+    }
+
+    private static double rate(long wins, long games) {
+        return games > 0 ? wins * 100.0 / games : 0.0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agregado concorrente de partidas por deck.
+ *
+ * Substitui os três mapas paralelos (deckCards/deckGames/deckWins) protegidos por um
+ * único {@code synchronized}: cada deck tem um {@link DeckStats} criado uma vez via
+ * computeIfAbsent (travado só no bin do mapa) e, a partir daí, as atualizações são
+ * incrementos em LongAdder, sem monitor global.
+ *
+ * Os totais de partidas/vitórias são mantidos junto com cada incremento, então
+ * {@link #totalGames()} e {@link #totalWins()} são O(1) (o /status não percorre os decks).
+ */
+public class DeckAggregate {
+
+    private final ConcurrentHashMap<DeckKey, DeckStats> decks = new ConcurrentHashMap<>();
+    private final LongAdder totalGames = new LongAdder();
+    private final LongAdder totalWins = new LongAdder();
+
+    /** Registra uma partida do deck. */
+    public void record(DeckKey key, boolean win) {
+        stats(key).record(win);
+        count(1, win ? 1 : 0);
+    }
+
+    /** Registra uma partida com o horário dela (epoch millis), alimentando as janelas de 24h/7d. */
+    public void record(DeckKey key, boolean win, long battleTime) {
+        stats(key).record(win, battleTime);
+        count(1, win ? 1 : 0);
+    }
+
+    /** Soma contadores já agregados (ex: vindos do checkpoint em disco). */
+    public void add(DeckKey key, long games, long wins) {
+        stats(key).add(games, wins);
+        count(games, wins);
+    }
+
+    /** Soma baldes por hora já empacotados (ver {@link DeckStats#buckets(int)}). */
+    public void addBuckets(DeckKey key, long[] buckets) {
+        if (buckets.length > 0) stats(key).addBuckets(buckets);
+    }
+
+    void addBucket(DeckKey key, int hour, int games, int wins) {
+        stats(key).addBucket(hour, games, wins);
+    }
+
+    /** Soma todos os decks de {@code other} (ex: delta de uma região concluída). */
+    public void merge(DeckAggregate other) {
+        for (DeckStats deck : other.decks()) {
+            DeckStats stats = stats(deck.key());
+            stats.add(deck.games(), deck.wins());
+            stats.addBuckets(deck.buckets(Integer.MIN_VALUE));
+        }
+        count(other.totalGames(), other.totalWins());
+    }
+
+    private void count(long games, long wins) {
+        totalGames.add(games);
+        if (wins != 0) totalWins.add(wins);
+    }
+
+    private DeckStats stats(DeckKey key) {
+        DeckStats stats = decks.get(key);
+        if (stats == null) {
+            stats = decks.computeIfAbsent(key, DeckStats::new);
+        }
+        return stats;
+    }
+
+    public DeckStats get(DeckKey key) {
+        return decks.get(key);
+    }
+
+    public Collection<DeckStats> decks() {
+        return decks.values();
+    }
+
+    public int size() {
+        return decks.size();
+    }
+
+    public long totalGames() {
+        return totalGames.sum();
+    }
+
+    public long totalWins() {
+        return totalWins.sum();
+    }
+
+    public void clear() {
+        decks.clear();
+        totalGames.reset();
+        totalWins.reset();
+    }
+}
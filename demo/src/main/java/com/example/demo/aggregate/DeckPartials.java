@@ -0,0 +1,94 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Agregação map-reduce de uma região/coleta: cada tarefa que processa batalhas pega um
+ * {@link Slot} livre com a sua {@link DeckTable}, escreve nela sem trava e o devolve ao
+ * terminar; {@link #reduce()} soma as parciais em árvore quando todas as escritas terminaram.
+ *
+ * O número de slots acompanha o pico de tarefas simultâneas (não o número de threads, que
+ * com virtual threads é uma por tarefa). O único acesso compartilhado é pegar/devolver o
+ * slot, uma vez por lote de batalhas. Os confrontos (deck contra deck) seguem o mesmo
+ * esquema, numa {@link MatchupTable} por slot.
+ */
+public final class DeckPartials {
+
+    private final Queue<Slot> free = new ConcurrentLinkedQueue<>();
+    private final Queue<Slot> slots = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Pega um slot livre (ou cria um). Até o {@link Slot#close()} ele é exclusivo de quem o
+     * pegou; use com try-with-resources em volta do lote de batalhas.
+     */
+    public Slot acquire() {
+        Slot slot = free.poll();
+        if (slot == null) {
+            slot = new Slot();
+            slots.add(slot);
+        }
+        return slot;
+    }
+
+    /** Número de tabelas parciais (pico de tarefas gravando ao mesmo tempo). */
+    public int partitions() {
+        return slots.size();
+    }
+
+    /**
+     * Soma as parciais em um agregado e as descarta. Só pode ser chamado depois que as escritas
+     * terminaram (ex: após o join das tarefas ou a conclusão do Flux da região).
+     */
+    public DeckAggregate reduce() {
+        List<DeckTable> tables = new ArrayList<>();
+        for (Slot slot : slots) tables.add(slot.decks);
+        DeckAggregate aggregate = DeckTable.reduce(tables).toAggregate();
+        for (Slot slot : slots) slot.decks = new DeckTable();
+        return aggregate;
+    }
+
+    /** Soma os confrontos das parciais na maior delas e as descarta (mesma regra de {@link #reduce()}). */
+    public MatchupTable reduceMatchups() {
+        MatchupTable target = null;
+        for (Slot slot : slots) {
+            if (slot.matchups != null && (target == null || slot.matchups.pairs() > target.pairs())) target = slot.matchups;
+        }
+        if (target == null) return new MatchupTable();
+        for (Slot slot : slots) {
+            if (slot.matchups != null && slot.matchups != target) target.addAll(slot.matchups);
+            slot.matchups = null;
+        }
+        return target;
+    }
+
+    /** Tabelas de uma tarefa; escrita sem trava enquanto o slot estiver com ela. */
+    public final class Slot implements AutoCloseable {
+
+        private DeckTable decks = new DeckTable();
+        private MatchupTable matchups;
+
+        private Slot() {
+        }
+
+        public void record(DeckKey key, boolean win, long battleTime) {
+            decks.record(key, win, battleTime);
+        }
+
+        /** Registra o confronto de uma batalha, do ponto de vista de {@code deck}. */
+        public void recordMatchup(DeckKey deck, DeckKey opponent, boolean win, boolean loss) {
+            if (matchups == null) matchups = new MatchupTable();
+            matchups.record(deck, opponent, win, loss);
+        }
+
+        /** Devolve o slot para a próxima tarefa (a fila publica as escritas feitas nele). */
+        @Override
+        public void close() {
+            free.add(this);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Ranking dos decks em duas categorias:
+ * <ul>
+ *   <li>stable: decks com pelo menos {@link #MIN_STABLE} partidas na janela, por limite inferior de Wilson;</li>
+ *   <li>trending: decks com pelo menos {@link #MIN_TRENDING} partidas nas últimas 24h, pelo crescimento da
+ *       participação (share) das últimas 24h em relação aos 6 dias anteriores.</li>
+ * </ul>
+ *
+ * Os scores ficam em arrays primitivos, um por categoria. Uma página ({@code offset}, {@code limit})
+ * é escolhida com um heap mínimo limitado a {@code offset + limit} índices, em O(n log k) em vez de
+ * ordenar tudo. Só os decks devolvidos viram mapas de resposta, e só então as cartas são
+ * resolvidas ({@code cards}), então nomes atualizados no catálogo aparecem sem recalcular o ranking.
+ */
+public final class DeckRanking {
+
+    public static final int MIN_TRENDING = 50;
+    public static final int MIN_STABLE = 200;
+    public static final double Z95 = 1.96;
+    public static final int W_PRIOR = 200; // “peso” do prior
+
+    private final TimeWindow window;
+    private final double p0;
+    private final long totalGames;
+    private final int totalDecks;
+    private final Category stable;
+    private final Category trending;
+    private final Function<DeckKey, List<Map<String, Object>>> cards;
+
+    private DeckRanking(TimeWindow window, double p0, long totalGames, int totalDecks,
+                        Category stable, Category trending, Function<DeckKey, List<Map<String, Object>>> cards) {
+        this.window = window;
+        this.p0 = p0;
+        this.totalGames = totalGames;
+        this.totalDecks = totalDecks;
+        this.stable = stable;
+        this.trending = trending;
+        this.cards = cards;
+    }
+
+    public static DeckRanking of(DeckAggregate decks, Function<DeckKey, List<Map<String, Object>>> cards) {
+        return of(decks, TimeWindow.ALL, System.currentTimeMillis(), cards);
+    }
+
+    /**
+     * Calcula os scores de todos os decks do agregado em uma passada, sem alocar por deck.
+     * As janelas de 24h/7d terminam na hora de {@code nowMillis}.
+     */
+    public static DeckRanking of(DeckAggregate decks, TimeWindow window, long nowMillis,
+                                 Function<DeckKey, List<Map<String, Object>>> cards) {
+        int nowHour = TimeWindow.hour(nowMillis);
+        long[] counts = new long[4]; // games24h, wins24h, games7d, wins7d
+
+        Category stable = new Category(16, false);
+        Category trending = new Category(16, true);
+        long windowGames = 0;
+        long windowWins = 0;
+        long dayTotal = 0;
+        long previousTotal = 0;
+        int count = 0;
+
+        for (DeckStats deck : decks.decks()) {
+            deck.windowCounts(nowHour, counts);
+            dayTotal += counts[0];
+            previousTotal += counts[2] - counts[0];
+
+            int games, wins;
+            switch (window) {
+                case DAY -> { games = (int) counts[0]; wins = (int) counts[1]; }
+                case WEEK -> { games = (int) counts[2]; wins = (int) counts[3]; }
+                default -> { games = deck.games(); wins = deck.wins(); }
+            }
+            if (games > 0) {
+                count++;
+                windowGames += games;
+                windowWins += wins;
+            }
+            if (games >= MIN_STABLE) {
+                stable.add(deck, games, wins, wilsonLowerBound(wins, games, Z95), 0);
+            }
+            if (counts[0] >= MIN_TRENDING) {
+                trending.add(deck, (int) counts[0], (int) counts[1], 0, (int) (counts[2] - counts[0]));
+            }
+        }
+        trending.scoreShareGrowth(dayTotal, previousTotal);
+
+        double p0 = windowGames > 0 ? windowWins / (double) windowGames : 0.5; // fallback 50%
+        return new DeckRanking(window, p0, windowGames, count, stable, trending, cards);
+    }
+
+    public TimeWindow window() {
+        return window;
+    }
+
+    /** Média global de vitórias (prior do empirical Bayes), entre 0 e 1. */
+    public double globalMean() {
+        return p0;
+    }
+
+    public long totalGames() {
+        return totalGames;
+    }
+
+    public int totalDecks() {
+        return totalDecks;
+    }
+
+    public int stableCount() {
+        return stable.size;
+    }
+
+    public int trendingCount() {
+        return trending.size;
+    }
+
+    public List<Map<String, Object>> stable(int offset, int limit) {
+        return page(stable, offset, limit);
+    }
+
+    public List<Map<String, Object>> trending(int offset, int limit) {
+        return page(trending, offset, limit);
+    }
+
+    private List<Map<String, Object>> page(Category category, int offset, int limit) {
+        int[] top = category.top(offset, limit);
+        List<Map<String, Object>> page = new ArrayList<>(top.length);
+        for (int index : top) page.add(toMap(category, index));
+        return page;
+    }
+
+    private Map<String, Object> toMap(Category category, int index) {
+        int games = category.games[index];
+        int wins = category.wins[index];
+        DeckKey key = category.decks[index].key();
+        Map<String, Object> deckData = new LinkedHashMap<>();
+        deckData.put("id", key.toString()); // aceito por /global/topdecks/counters
+        deckData.put("cards", cards.apply(key));
+        deckData.put("games", games);
+        deckData.put("wins", wins);
+        deckData.put("winrate", (wins * 100.0) / games);
+        deckData.put("wilsonLB", wilsonLowerBound(wins, games, Z95) * 100.0);
+        deckData.put("empiricalBayes", empiricalBayesRate(wins, games, p0, W_PRIOR) * 100.0);
+        if (category.growth) {
+            // trending: partidas/vitórias acima são das últimas 24h
+            deckData.put("share24h", category.share[index] * 100.0);
+            deckData.put("sharePrevious", category.previousShare[index] * 100.0);
+            deckData.put("shareGrowth", category.scores[index]);
+        }
+        return deckData;
+    }
+
+    // ================================
+    // 📈 Funções auxiliares estatísticas
+    // ================================
+
+    public static double wilsonLowerBound(int wins, int games, double z) {
+        if (games == 0) return 0.0;
+        double p = wins / (double) games;
+        double z2 = z * z;
+        double denom = 1.0 + z2 / games;
+        double center = p + z2 / (2.0 * games);
+        double margin = z * Math.sqrt((p * (1 - p) + z2 / (4.0 * games)) / games);
+        return (center - margin) / denom;
+    }
+
+    public static double empiricalBayesRate(int wins, int games, double p0, int w) {
+        return (wins + p0 * w) / (games + w);
+    }
+
+    /** Colunas primitivas de uma categoria; o índice é a ordem de inserção (desempate). */
+    private static final class Category {
+
+        final boolean growth;
+        DeckStats[] decks;
+        int[] games;
+        int[] wins;
+        double[] scores;
+        int[] previousGames;     // só trending: partidas nos 6 dias anteriores às últimas 24h
+        double[] share;
+        double[] previousShare;
+        int size;
+
+        Category(int capacity, boolean growth) {
+            this.growth = growth;
+            decks = new DeckStats[capacity];
+            games = new int[capacity];
+            wins = new int[capacity];
+            scores = new double[capacity];
+            if (growth) previousGames = new int[capacity];
+        }
+
+        void add(DeckStats deck, int games, int wins, double score, int previousGames) {
+            if (size == scores.length) grow();
+            this.decks[size] = deck;
+            this.games[size] = games;
+            this.wins[size] = wins;
+            this.scores[size] = score;
+            if (growth) this.previousGames[size] = previousGames;
+            size++;
+        }
+
+        /**
+         * Score = share nas últimas 24h / share nos 6 dias anteriores. O share anterior é suavizado
+         * (+1 partida) para que decks novos tenham crescimento alto, mas finito.
+         */
+        void scoreShareGrowth(long dayTotal, long previousTotal) {
+            share = new double[size];
+            previousShare = new double[size];
+            for (int i = 0; i < size; i++) {
+                share[i] = dayTotal > 0 ? games[i] / (double) dayTotal : 0.0;
+                previousShare[i] = previousTotal > 0 ? previousGames[i] / (double) previousTotal : 0.0;
+                double smoothed = (previousGames[i] + 1.0) / (previousTotal + 1.0);
+                scores[i] = share[i] / smoothed;
+            }
+        }
+
+        private void grow() {
+            int capacity = scores.length * 2;
+            decks = Arrays.copyOf(decks, capacity);
+            games = Arrays.copyOf(games, capacity);
+            wins = Arrays.copyOf(wins, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            if (growth) previousGames = Arrays.copyOf(previousGames, capacity);
+        }
+
+        /** {@code a} vem antes de {@code b}: score maior; empate mantém a ordem de inserção. */
+        private boolean before(int a, int b) {
+            double sa = scores[a], sb = scores[b];
+            return sa > sb || (sa == sb && a < b);
+        }
+
+        /** Índices da página pedida, já em ordem decrescente de score. */
+        int[] top(int offset, int limit) {
+            offset = Math.max(offset, 0);
+            limit = Math.max(limit, 0);
+            int k = (int) Math.min((long) offset + limit, size);
+            if (k <= offset) return new int[0];
+
+            // heap mínimo: a raiz é o pior dos k melhores vistos até agora
+            int[] heap = new int[k];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (n < k) {
+                    heap[n] = i;
+                    siftUp(heap, n++);
+                } else if (before(i, heap[0])) {
+                    heap[0] = i;
+                    siftDown(heap, 0, k);
+                }
+            }
+
+            // esvazia o heap do pior para o melhor, preenchendo de trás para frente
+            int[] ordered = new int[k];
+            for (int end = k - 1; end >= 0; end--) {
+                ordered[end] = heap[0];
+                heap[0] = heap[end];
+                siftDown(heap, 0, end);
+            }
+            return Arrays.copyOfRange(ordered, offset, k);
+        }
+
+        private void siftUp(int[] heap, int i) {
+            int item = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(heap[parent], item)) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = item;
+        }
+
+        private void siftDown(int[] heap, int i, int n) {
+            int item = heap[i];
+            int half = n >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < n && before(heap[child], heap[right])) child = right;
+                if (!before(item, heap[child])) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = item;
+        }
+    }
+}
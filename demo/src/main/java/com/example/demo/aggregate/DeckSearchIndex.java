@@ -0,0 +1,318 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Índice de busca sobre um retrato do {@link DeckAggregate}: "decks com Mineiro e sem Barril,
+ * elixir médio até 3.5, pelo menos 200 partidas".
+ *
+ * Os decks ganham ordinais densos em ordem decrescente de partidas, então {@code minGames} é um
+ * prefixo {@code [0, k)} achado por busca binária. Cada carta tem um bitmap comprimido (Roaring) com
+ * os ordinais dos decks que a usam; os filtros de carta são AND/ANDNOT desses bitmaps, e só os
+ * candidatos que sobram consultam as colunas primitivas (elixir médio, partidas, vitórias, Wilson)
+ * antes do ranking por heap limitado à página pedida.
+ *
+ * Imutável depois de montado: quem usa troca o índice inteiro quando o agregado muda.
+ */
+public final class DeckSearchIndex {
+
+    /** Ordem do resultado. {@code GAMES} segue a ordem dos ordinais e dispensa o heap. */
+    public enum Sort {
+        WILSON, WINRATE, GAMES;
+
+        public static Sort parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Ordenação inválida: " + value + " (use wilson, winrate ou games)");
+            }
+        }
+    }
+
+    /**
+     * Filtros de uma busca. {@code include}/{@code exclude} são IDs de carta da API; elixir fora de
+     * {@code (0, +inf)} desliga o filtro correspondente.
+     */
+    public record Query(int[] include, int[] exclude, int minGames, double minElixir, double maxElixir, Sort sort) {
+    }
+
+    /** Página encontrada: {@code total} decks passaram nos filtros; {@code ordinals} já vem ordenado. */
+    public record Result(int total, int[] ordinals) {
+    }
+
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final int size;
+    private final long[] his;
+    private final long[] los;
+    private final int[] games;   // decrescente
+    private final int[] wins;
+    private final float[] elixir; // NaN: nenhuma carta do deck com custo conhecido
+    private final double[] wilson;
+    private final RoaringBitmap[] byCard = new RoaringBitmap[1 << 16]; // código compacto -> decks
+
+    private DeckSearchIndex(int size) {
+        this.size = size;
+        his = new long[size];
+        los = new long[size];
+        games = new int[size];
+        wins = new int[size];
+        elixir = new float[size];
+        wilson = new double[size];
+    }
+
+    /**
+     * Monta o índice com os totais de todo o período. {@code elixir} devolve o custo de uma carta
+     * (pelo ID da API), ou negativo quando desconhecido; o elixir médio usa só as cartas conhecidas.
+     */
+    public static DeckSearchIndex of(DeckAggregate decks, IntUnaryOperator elixir) {
+        // uma passada sequencial copia cada deck para [hi, lo, games|wins] contíguos: depois da ordenação
+        // a leitura é fora de ordem, e assim custa uma linha de cache por deck em vez de quatro
+        int capacity = decks.size() + 16;
+        long[] rows = new long[capacity * 3];
+        long[] order = new long[capacity]; // (games, linha) empacotados: ordena primitivos
+        int n = 0;
+        for (DeckStats deck : decks.decks()) {
+            if (n == capacity) break; // decks novos durante a cópia ficam para o próximo índice
+            int games = deck.games();
+            if (games <= 0) continue;
+            rows[3 * n] = deck.key().hi();
+            rows[3 * n + 1] = deck.key().lo();
+            rows[3 * n + 2] = ((long) games << 32) | Math.min(deck.wins(), games);
+            order[n] = ((long) games << 32) | n;
+            n++;
+        }
+        Arrays.sort(order, 0, n);
+
+        // decks por carta: conta, depois preenche listas de ordinais (já crescentes) e monta cada bitmap de uma vez
+        int[] counts = new int[1 << 16];
+        for (int row = 0; row < n; row++) {
+            for (int slot = 0; slot < DeckKey.SLOTS; slot++) {
+                int code = DeckKey.code(rows[3 * row], rows[3 * row + 1], slot);
+                if (code == 0) break;
+                counts[code]++;
+            }
+        }
+        int[][] postings = new int[1 << 16][];
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) postings[code] = new int[counts[code]];
+            counts[code] = 0;
+        }
+
+        DeckSearchIndex index = new DeckSearchIndex(n);
+        int[] costs = new int[1 << 16];
+        Arrays.fill(costs, Integer.MIN_VALUE);
+        for (int ordinal = 0; ordinal < n; ordinal++) {
+            int row = (int) order[n - 1 - ordinal];
+            long hi = rows[3 * row], lo = rows[3 * row + 1], counters = rows[3 * row + 2];
+            int games = (int) (counters >>> 32);
+            int wins = (int) counters;
+            index.his[ordinal] = hi;
+            index.los[ordinal] = lo;
+            index.games[ordinal] = games;
+            index.wins[ordinal] = wins;
+            index.wilson[ordinal] = DeckRanking.wilsonLowerBound(wins, games, DeckRanking.Z95);
+
+            int total = 0, known = 0;
+            for (int slot = 0; slot < DeckKey.SLOTS; slot++) {
+                int code = DeckKey.code(hi, lo, slot);
+                if (code == 0) break;
+                postings[code][counts[code]++] = ordinal;
+                if (costs[code] == Integer.MIN_VALUE) costs[code] = elixir.applyAsInt(DeckKey.decode(code));
+                if (costs[code] >= 0) {
+                    total += costs[code];
+                    known++;
+                }
+            }
+            index.elixir[ordinal] = known > 0 ? total / (float) known : Float.NaN;
+        }
+        for (int code = 0; code < postings.length; code++) {
+            if (postings[code] == null) continue;
+            RoaringBitmap bitmap = new RoaringBitmap();
+            bitmap.addN(postings[code], 0, postings[code].length);
+            bitmap.runOptimize();
+            index.byCard[code] = bitmap;
+        }
+        return index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public DeckKey key(int ordinal) {
+        return DeckKey.fromBits(his[ordinal], los[ordinal]);
+    }
+
+    public int games(int ordinal) {
+        return games[ordinal];
+    }
+
+    public int wins(int ordinal) {
+        return wins[ordinal];
+    }
+
+    public double wilson(int ordinal) {
+        return wilson[ordinal];
+    }
+
+    /** Elixir médio das cartas com custo conhecido; NaN se nenhuma. */
+    public double averageElixir(int ordinal) {
+        return elixir[ordinal];
+    }
+
+    /** Decks que passam em todos os filtros, página {@code [offset, offset + limit)} na ordem de {@code sort}. */
+    public Result search(Query query, int offset, int limit) {
+        offset = Math.max(offset, 0);
+        int k = (int) Math.min((long) offset + Math.max(limit, 0), Integer.MAX_VALUE);
+
+        RoaringBitmap candidates = candidates(query);
+        boolean elixirFilter = query.minElixir() > 0 || query.maxElixir() < Double.POSITIVE_INFINITY;
+        int total = elixirFilter ? 0 : candidates.getCardinality();
+
+        int[] page;
+        if (query.sort() == Sort.GAMES) {
+            // ordinal crescente = partidas decrescentes: os k primeiros já são a resposta
+            int[] first = new int[Math.min(k, candidates.getCardinality())];
+            int taken = 0;
+            for (IntIterator it = candidates.getIntIterator(); it.hasNext(); ) {
+                int ordinal = it.next();
+                if (elixirFilter && !elixirMatches(ordinal, query)) continue;
+                if (taken < first.length) first[taken++] = ordinal;
+                if (elixirFilter) total++;
+                else if (taken == first.length) break;
+            }
+            page = Arrays.copyOfRange(first, Math.min(offset, taken), taken);
+        } else {
+            TopK top = new TopK(k, query.sort() == Sort.WILSON ? wilson : null);
+            for (IntIterator it = candidates.getIntIterator(); it.hasNext(); ) {
+                int ordinal = it.next();
+                if (elixirFilter && !elixirMatches(ordinal, query)) continue;
+                if (elixirFilter) total++;
+                top.offer(ordinal);
+            }
+            int[] ordered = top.drain();
+            page = Arrays.copyOfRange(ordered, Math.min(offset, ordered.length), ordered.length);
+        }
+        return new Result(total, page);
+    }
+
+    /** AND das cartas pedidas (da menor para a maior), recortado pelo prefixo de minGames, ANDNOT das excluídas. */
+    private RoaringBitmap candidates(Query query) {
+        int prefix = prefix(query.minGames());
+        RoaringBitmap candidates;
+        if (query.include().length == 0) {
+            candidates = RoaringBitmap.bitmapOfRange(0, prefix);
+        } else {
+            RoaringBitmap[] included = new RoaringBitmap[query.include().length];
+            for (int i = 0; i < included.length; i++) included[i] = bitmap(query.include()[i]);
+            Arrays.sort(included, Comparator.comparingInt(RoaringBitmap::getCardinality));
+            candidates = included[0].clone();
+            for (int i = 1; i < included.length && !candidates.isEmpty(); i++) candidates.and(included[i]);
+            if (prefix < size) candidates.remove(prefix, (long) size);
+        }
+        for (int cardId : query.exclude()) {
+            if (candidates.isEmpty()) break;
+            candidates.andNot(bitmap(cardId));
+        }
+        return candidates;
+    }
+
+    private RoaringBitmap bitmap(int cardId) {
+        RoaringBitmap bitmap = byCard[DeckKey.encode(cardId)];
+        return bitmap != null ? bitmap : EMPTY;
+    }
+
+    /** Quantos decks têm pelo menos {@code minGames} partidas (a coluna é decrescente). */
+    private int prefix(int minGames) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (games[mid] >= minGames) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private boolean elixirMatches(int ordinal, Query query) {
+        float value = elixir[ordinal];
+        return value >= query.minElixir() && value <= query.maxElixir(); // NaN nunca passa
+    }
+
+    /** Heap mínimo dos k melhores; empate fica com o ordinal menor (mais partidas). */
+    private final class TopK {
+
+        private final int[] heap;
+        private final double[] scores; // null: winrate calculado na hora
+        private int n;
+
+        TopK(int k, double[] scores) {
+            this.heap = new int[Math.min(k, size)];
+            this.scores = scores;
+        }
+
+        void offer(int ordinal) {
+            if (heap.length == 0) return;
+            if (n < heap.length) {
+                heap[n] = ordinal;
+                siftUp(n++);
+            } else if (before(ordinal, heap[0])) {
+                heap[0] = ordinal;
+                siftDown(0, n);
+            }
+        }
+
+        /** Esvazia o heap do pior para o melhor, preenchendo de trás para frente. */
+        int[] drain() {
+            int[] ordered = new int[n];
+            for (int end = n - 1; end >= 0; end--) {
+                ordered[end] = heap[0];
+                heap[0] = heap[end];
+                siftDown(0, end);
+            }
+            n = 0;
+            return ordered;
+        }
+
+        private double score(int ordinal) {
+            return scores != null ? scores[ordinal] : wins[ordinal] / (double) games[ordinal];
+        }
+
+        private boolean before(int a, int b) {
+            double sa = score(a), sb = score(b);
+            return sa > sb || (sa == sb && a < b);
+        }
+
+        private void siftUp(int i) {
+            int item = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(heap[parent], item)) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = item;
+        }
+
+        private void siftDown(int i, int end) {
+            int item = heap[i];
+            int half = end >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < end && before(heap[child], heap[right])) child = right;
+                if (!before(item, heap[child])) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = item;
+        }
+    }
+}
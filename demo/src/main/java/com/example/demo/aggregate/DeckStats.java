@@ -0,0 +1,204 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro mutável de um deck dentro do {@link DeckAggregate}.
+ * O deck é só a chave (IDs das cartas); nome/ícone vêm do catálogo na hora de montar a resposta.
+ * Os contadores são LongAdder para que várias threads possam incrementar o mesmo deck sem trava.
+ *
+ * Além do total, guarda baldes por hora (da {@code battleTime}) dos últimos 7 dias para as
+ * janelas de 24h/7d. Cada balde é um long {@code [hora:24][games:20][wins:20]}. Enquanto o deck
+ * tem até {@value #RING_AT} horas com partidas, os baldes ficam num array esparso em ordem de
+ * hora (um deck com poucas partidas ocupa poucos bytes, e inserir custa no máximo esse tanto);
+ * passando disso, viram um anel fixo de 168 posições indexado por {@code hora % 168}, em que
+ * registrar é O(1) e avançar a janela é só sobrescrever a posição de uma hora que já expirou.
+ */
+public final class DeckStats {
+
+    static final int BUCKET_HOURS = TimeWindow.WEEK.hours();
+    static final int RING_AT = 24;
+
+    private static final long[] NO_BUCKETS = new long[0];
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final DeckKey key;
+    private final LongAdder games = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+
+    // guardados por this
+    private long[] buckets = NO_BUCKETS; // esparso, enquanto ring == null
+    private int bucketCount;
+    private long[] ring;                 // BUCKET_HOURS posições; uma posição vale se a hora do balde bate
+    private int ringNewest;
+
+    DeckStats(DeckKey key) {
+        this.key = key;
+    }
+
+    void record(boolean win) {
+        games.increment();
+        if (win) wins.increment();
+    }
+
+    void record(boolean win, long battleTime) {
+        record(win);
+        if (battleTime > 0) addBucket(TimeWindow.hour(battleTime), 1, win ? 1 : 0);
+    }
+
+    void add(long games, long wins) {
+        this.games.add(games);
+        this.wins.add(wins);
+    }
+
+    /** Soma baldes já empacotados (ex: delta de região ou checkpoint); não mexe no total. */
+    void addBuckets(long[] packed) {
+        for (long bucket : packed) addBucket(bucketHour(bucket), bucketGames(bucket), bucketWins(bucket));
+    }
+
+    public DeckKey key() {
+        return key;
+    }
+
+    public int games() {
+        return games.intValue();
+    }
+
+    public int wins() {
+        return wins.intValue();
+    }
+
+    /** Cópia dos baldes a partir de {@code sinceHour} (inclusive). */
+    public synchronized long[] buckets(int sinceHour) {
+        if (ring != null) {
+            long[] out = new long[BUCKET_HOURS];
+            int n = 0;
+            for (int hour = Math.max(sinceHour, ringNewest - BUCKET_HOURS + 1); hour <= ringNewest; hour++) {
+                long bucket = ring[Math.floorMod(hour, BUCKET_HOURS)];
+                if (bucket != 0 && bucketHour(bucket) == hour) out[n++] = bucket;
+            }
+            return Arrays.copyOf(out, n);
+        }
+        int from = 0;
+        while (from < bucketCount && bucketHour(buckets[from]) < sinceHour) from++;
+        return Arrays.copyOfRange(buckets, from, bucketCount);
+    }
+
+    /**
+     * Partidas e vitórias nas janelas que terminam em {@code nowHour} (inclusive):
+     * {@code out = [games24h, wins24h, games7d, wins7d]}.
+     */
+    public synchronized void windowCounts(int nowHour, long[] out) {
+        long g24 = 0, w24 = 0, g7 = 0, w7 = 0;
+        int dayStart = nowHour - TimeWindow.DAY.hours() + 1;
+        int weekStart = nowHour - TimeWindow.WEEK.hours() + 1;
+        if (ring != null) {
+            int last = Math.min(nowHour, ringNewest);
+            for (int hour = Math.max(weekStart, ringNewest - BUCKET_HOURS + 1); hour <= last; hour++) {
+                long bucket = ring[Math.floorMod(hour, BUCKET_HOURS)];
+                if (bucket == 0 || bucketHour(bucket) != hour) continue;
+                g7 += bucketGames(bucket);
+                w7 += bucketWins(bucket);
+                if (hour >= dayStart) {
+                    g24 += bucketGames(bucket);
+                    w24 += bucketWins(bucket);
+                }
+            }
+        }
+        for (int i = bucketCount - 1; ring == null && i >= 0; i--) {
+            long bucket = buckets[i];
+            int hour = bucketHour(bucket);
+            if (hour > nowHour) continue;
+            if (hour < weekStart) break;
+            int g = bucketGames(bucket);
+            int w = bucketWins(bucket);
+            g7 += g;
+            w7 += w;
+            if (hour >= dayStart) {
+                g24 += g;
+                w24 += w;
+            }
+        }
+        out[0] = g24;
+        out[1] = w24;
+        out[2] = g7;
+        out[3] = w7;
+    }
+
+    synchronized void addBucket(int hour, int games, int wins) {
+        if (ring != null) {
+            addToRing(hour, games, wins);
+            return;
+        }
+        int newest = bucketCount > 0 ? bucketHour(buckets[bucketCount - 1]) : hour;
+        if (hour <= newest - BUCKET_HOURS) return; // fora da janela de 7 dias deste deck
+
+        // battlelogs chegam do mais novo para o mais antigo: procura de trás para frente
+        int i = bucketCount - 1;
+        while (i >= 0 && bucketHour(buckets[i]) > hour) i--;
+        if (i >= 0 && bucketHour(buckets[i]) == hour) {
+            long bucket = buckets[i];
+            buckets[i] = bucket(hour, bucketGames(bucket) + games, bucketWins(bucket) + wins);
+            return;
+        }
+
+        // hora nova: avança a janela descartando o que passou de 7 dias
+        int expired = 0;
+        if (hour > newest) {
+            while (expired < bucketCount && bucketHour(buckets[expired]) <= hour - BUCKET_HOURS) expired++;
+        }
+        int insertAt = i + 1 - expired;
+        int size = bucketCount - expired;
+        if (size + 1 > RING_AT) {
+            toRing(expired);
+            addToRing(hour, games, wins);
+            return;
+        }
+        long[] target = size + 1 > buckets.length ? new long[Math.min(Math.max(4, buckets.length * 2), BUCKET_HOURS)] : buckets;
+        System.arraycopy(buckets, expired, target, 0, insertAt);
+        System.arraycopy(buckets, expired + insertAt, target, insertAt + 1, size - insertAt);
+        target[insertAt] = bucket(hour, games, wins);
+        buckets = target;
+        bucketCount = size + 1;
+    }
+
+    private void toRing(int expired) {
+        ring = new long[BUCKET_HOURS];
+        ringNewest = bucketHour(buckets[bucketCount - 1]);
+        for (int i = expired; i < bucketCount; i++) ring[Math.floorMod(bucketHour(buckets[i]), BUCKET_HOURS)] = buckets[i];
+        buckets = NO_BUCKETS;
+        bucketCount = 0;
+    }
+
+    private void addToRing(int hour, int games, int wins) {
+        if (hour <= ringNewest - BUCKET_HOURS) return; // fora da janela de 7 dias deste deck
+        if (hour > ringNewest) ringNewest = hour;     // as posições de horas expiradas são reaproveitadas
+        int slot = Math.floorMod(hour, BUCKET_HOURS);
+        long bucket = ring[slot];
+        ring[slot] = bucket != 0 && bucketHour(bucket) == hour
+                ? bucket(hour, bucketGames(bucket) + games, bucketWins(bucket) + wins)
+                : bucket(hour, games, wins);
+    }
+
+    static long bucket(int hour, int games, int wins) {
+        return ((long) hour << (2 * COUNT_BITS))
+                | (Math.min(games, COUNT_MASK) << COUNT_BITS)
+                | Math.min(wins, COUNT_MASK);
+    }
+
+    static int bucketHour(long bucket) {
+        return (int) (bucket >>> (2 * COUNT_BITS));
+    }
+
+    static int bucketGames(long bucket) {
+        return (int) ((bucket >>> COUNT_BITS) & COUNT_MASK);
+    }
+
+    static int bucketWins(long bucket) {
+        return (int) (bucket & COUNT_MASK);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Tabela de decks privada de uma thread: endereçamento aberto sobre colunas primitivas
+ * ({@code hi, lo, hora, games, wins}), sem trava, sem objeto por deck.
+ *
+ * A célula é (deck, hora da batalha); partidas sem horário vão na hora {@link #NO_HOUR}. Cada
+ * worker da coleta escreve só na sua tabela, e no fim da região/coleta as tabelas são somadas
+ * em árvore ({@link #reduce(List)}) e convertidas uma vez em {@link DeckAggregate}, com os
+ * mesmos totais e baldes que o registro direto no agregado daria.
+ */
+public final class DeckTable {
+
+    static final int NO_HOUR = -1;
+
+    private long[] his;
+    private long[] los;
+    private int[] hours;
+    private int[] games; // 0 = célula livre
+    private int[] wins;
+    private int size;
+
+    public DeckTable() {
+        this(64);
+    }
+
+    DeckTable(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+        his = new long[slots];
+        los = new long[slots];
+        hours = new int[slots];
+        games = new int[slots];
+        wins = new int[slots];
+    }
+
+    /** Registra uma partida do deck; {@code battleTime <= 0} conta só no total. */
+    public void record(DeckKey key, boolean win, long battleTime) {
+        add(key.hi(), key.lo(), battleTime > 0 ? TimeWindow.hour(battleTime) : NO_HOUR, 1, win ? 1 : 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Soma {@code other} nesta tabela ({@code other} não muda). */
+    public void addAll(DeckTable other) {
+        for (int i = 0; i < other.games.length; i++) {
+            if (other.games[i] != 0) add(other.his[i], other.los[i], other.hours[i], other.games[i], other.wins[i]);
+        }
+    }
+
+    /** Converte em agregado (totais por deck + baldes por hora). */
+    public DeckAggregate toAggregate() {
+        DeckAggregate aggregate = new DeckAggregate();
+        for (int i = 0; i < games.length; i++) {
+            if (games[i] == 0) continue;
+            DeckKey key = DeckKey.fromBits(his[i], los[i]);
+            aggregate.add(key, games[i], wins[i]);
+            if (hours[i] != NO_HOUR) aggregate.addBucket(key, hours[i], games[i], wins[i]);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Soma as tabelas em árvore no ForkJoinPool comum: cada nível junta pares em paralelo.
+     * As tabelas da lista são reaproveitadas (modificadas) como acumuladores.
+     */
+    public static DeckTable reduce(List<DeckTable> tables) {
+        if (tables.isEmpty()) return new DeckTable();
+        return ForkJoinPool.commonPool().invoke(new Merge(tables, 0, tables.size()));
+    }
+
+    void add(long hi, long lo, int hour, int games, int wins) {
+        if (games == 0) return;
+        if ((size + 1) * 2 > this.games.length) grow();
+        int mask = this.games.length - 1;
+        for (int i = slot(hi, lo, hour, mask); ; i = (i + 1) & mask) {
+            if (this.games[i] == 0) {
+                his[i] = hi;
+                los[i] = lo;
+                hours[i] = hour;
+                this.games[i] = games;
+                this.wins[i] = wins;
+                size++;
+                return;
+            }
+            if (his[i] == hi && los[i] == lo && hours[i] == hour) {
+                this.games[i] += games;
+                this.wins[i] += wins;
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldHis = his;
+        long[] oldLos = los;
+        int[] oldHours = hours;
+        int[] oldGames = games;
+        int[] oldWins = wins;
+        int slots = oldGames.length * 2;
+        his = new long[slots];
+        los = new long[slots];
+        hours = new int[slots];
+        games = new int[slots];
+        wins = new int[slots];
+        size = 0;
+        for (int i = 0; i < oldGames.length; i++) {
+            if (oldGames[i] != 0) add(oldHis[i], oldLos[i], oldHours[i], oldGames[i], oldWins[i]);
+        }
+    }
+
+    private static int slot(long hi, long lo, int hour, int mask) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo * 0xC2B2AE3D27D4EB4FL ^ hour;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static final class Merge extends RecursiveTask<DeckTable> {
+
+        private static final int SEQUENTIAL = 2;
+
+        private final List<DeckTable> tables;
+        private final int from;
+        private final int to;
+
+        Merge(List<DeckTable> tables, int from, int to) {
+            this.tables = tables;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected DeckTable compute() {
+            if (to - from <= SEQUENTIAL) {
+                DeckTable target = largest(from, to);
+                for (int i = from; i < to; i++) if (tables.get(i) != target) target.addAll(tables.get(i));
+                return target;
+            }
+            int mid = (from + to) >>> 1;
+            Merge left = new Merge(tables, from, mid);
+            left.fork();
+            DeckTable right = new Merge(tables, mid, to).compute();
+            DeckTable joined = left.join();
+            // soma a menor na maior: menos inserções e menos rehash
+            if (joined.size < right.size) {
+                right.addAll(joined);
+                return right;
+            }
+            joined.addAll(right);
+            return joined;
+        }
+
+        private DeckTable largest(int from, int to) {
+            DeckTable largest = tables.get(from);
+            for (int i = from + 1; i < to; i++) if (tables.get(i).size > largest.size) largest = tables.get(i);
+            return largest;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Confrontos deck contra deck: partidas e vitórias de cada lado para cada par de decks que se
+ * enfrentou.
+ *
+ * Cada deck ganha um ID denso na primeira vez que aparece, e o par vira uma chave long
+ * {@code (menor << 32) | maior} numa tabela de endereçamento aberto sobre colunas primitivas
+ * ({@code chave, games, vitórias do menor, vitórias do maior}), sem objeto por par. Cada deck
+ * guarda também a lista dos IDs que já enfrentou, então "quem ganha deste deck" percorre só os
+ * adversários dele, não a tabela inteira. Espelhos (o mesmo deck dos dois lados) não entram.
+ *
+ * A memória é limitada por {@code maxPairs}: com a tabela cheia, pares novos são descartados
+ * (contados em {@link #dropped()}) e os já existentes continuam somando. Não é thread-safe,
+ * como a {@link DeckTable}: cada worker escreve na sua e quem compartilha uma tabela sincroniza.
+ */
+public final class MatchupTable {
+
+    /** Confronto visto do lado de um deck: {@code wins}/{@code losses} são dele contra {@code opponent}. */
+    public record Matchup(DeckKey opponent, int games, int wins, int losses) {
+    }
+
+    /** Recebe os pares na ordem da tabela; {@code deck}/{@code opponent} são IDs de {@link #deck(int)}. */
+    public interface CellVisitor {
+        void accept(int deck, int opponent, int games, int wins, int losses);
+    }
+
+    private final int maxPairs;
+
+    // decks: ID denso -> chave, e hash (hi, lo) -> ID + 1
+    private long[] deckHis = new long[16];
+    private long[] deckLos = new long[16];
+    private int[] deckSlots = new int[32];
+    private int[][] opponents = new int[16][];
+    private int[] degrees = new int[16];
+    private int deckCount;
+
+    // pares: chave 0 = célula livre (o maior ID de um par nunca é 0)
+    private long[] keys = new long[64];
+    private int[] games = new int[64];
+    private int[] lowWins = new int[64];
+    private int[] highWins = new int[64];
+    private int pairCount;
+    private long dropped;
+
+    public MatchupTable() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public MatchupTable(int maxPairs) {
+        this.maxPairs = maxPairs;
+    }
+
+    /** Registra uma partida de {@code deck} contra {@code opponent}; empate não soma vitória a ninguém. */
+    public void record(DeckKey deck, DeckKey opponent, boolean win, boolean loss) {
+        add(deck, opponent, 1, win ? 1 : 0, loss ? 1 : 0);
+    }
+
+    /** Soma contadores já agregados, do ponto de vista de {@code deck} (ex: vindos do checkpoint). */
+    public void add(DeckKey deck, DeckKey opponent, int games, int wins, int losses) {
+        if (games == 0 || deck.equals(opponent)) return;
+        int a = find(deck.hi(), deck.lo());
+        int b = find(opponent.hi(), opponent.lo());
+        boolean known = a >= 0 && b >= 0 && slot(key(a, b)) >= 0;
+        if (!known && pairCount >= maxPairs) {
+            dropped += games;
+            return;
+        }
+        if (a < 0) a = intern(deck.hi(), deck.lo());
+        if (b < 0) b = intern(opponent.hi(), opponent.lo());
+        if (a < b) addPair(a, b, games, wins, losses);
+        else addPair(b, a, games, losses, wins);
+    }
+
+    /** Soma todos os pares de {@code other} nesta tabela ({@code other} não muda). */
+    public void addAll(MatchupTable other) {
+        other.forEach((deck, opponent, games, wins, losses) ->
+                add(other.deck(deck), other.deck(opponent), games, wins, losses));
+    }
+
+    public void forEach(CellVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key != 0) visitor.accept((int) (key >>> 32), (int) key, games[i], lowWins[i], highWins[i]);
+        }
+    }
+
+    public DeckKey deck(int id) {
+        return DeckKey.fromBits(deckHis[id], deckLos[id]);
+    }
+
+    public int decks() {
+        return deckCount;
+    }
+
+    public int pairs() {
+        return pairCount;
+    }
+
+    /** Partidas descartadas por pares novos que não couberam em {@code maxPairs}. */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Todos os confrontos de {@code deck} com pelo menos {@code minGames} partidas, do ponto de
+     * vista dele; vazio se o deck nunca apareceu.
+     */
+    public List<Matchup> matchups(DeckKey deck, int minGames) {
+        int id = find(deck.hi(), deck.lo());
+        if (id < 0) return List.of();
+        List<Matchup> matchups = new ArrayList<>(degrees[id]);
+        for (int k = 0; k < degrees[id]; k++) {
+            int other = opponents[id][k];
+            int i = slot(key(id, other));
+            if (games[i] < minGames) continue;
+            boolean low = id < other;
+            matchups.add(new Matchup(deck(other), games[i], low ? lowWins[i] : highWins[i], low ? highWins[i] : lowWins[i]));
+        }
+        return matchups;
+    }
+
+    /**
+     * Melhores respostas a {@code deck}: adversários com pelo menos {@code minGames} partidas contra
+     * ele, pelo limite inferior de Wilson (95%) do winrate do adversário no confronto, e depois por
+     * partidas. Assim um 3-0 não passa na frente de um 60-40.
+     */
+    public List<Matchup> counters(DeckKey deck, int minGames, int limit) {
+        List<Matchup> matchups = matchups(deck, Math.max(minGames, 1));
+        int n = matchups.size();
+        double[] scores = new double[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            Matchup matchup = matchups.get(i);
+            scores[i] = DeckRanking.wilsonLowerBound(matchup.losses(), matchup.games(), DeckRanking.Z95);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> scores[i]).reversed()
+                .thenComparing(Comparator.<Integer>comparingInt(i -> matchups.get(i).games()).reversed()));
+        int k = Math.min(Math.max(limit, 0), n);
+        List<Matchup> counters = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) counters.add(matchups.get(order[i]));
+        return counters;
+    }
+
+    public void clear() {
+        deckHis = new long[16];
+        deckLos = new long[16];
+        deckSlots = new int[32];
+        opponents = new int[16][];
+        degrees = new int[16];
+        deckCount = 0;
+        keys = new long[64];
+        games = new int[64];
+        lowWins = new int[64];
+        highWins = new int[64];
+        pairCount = 0;
+        dropped = 0;
+    }
+
+    // ---------- pares ----------
+
+    private void addPair(int low, int high, int games, int lowWins, int highWins) {
+        long key = key(low, high);
+        if ((pairCount + 1) * 2 > keys.length) growPairs();
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                this.games[i] += games;
+                this.lowWins[i] += lowWins;
+                this.highWins[i] += highWins;
+                return;
+            }
+            if (keys[i] == 0) {
+                keys[i] = key;
+                this.games[i] = games;
+                this.lowWins[i] = lowWins;
+                this.highWins[i] = highWins;
+                pairCount++;
+                link(low, high);
+                link(high, low);
+                return;
+            }
+        }
+    }
+
+    /** Célula do par, ou -1 se ele nunca se enfrentou. */
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == key) return i;
+            if (keys[i] == 0) return -1;
+        }
+    }
+
+    private void growPairs() {
+        long[] oldKeys = keys;
+        int[] oldGames = games;
+        int[] oldLowWins = lowWins;
+        int[] oldHighWins = highWins;
+        int slots = oldKeys.length * 2;
+        keys = new long[slots];
+        games = new int[slots];
+        lowWins = new int[slots];
+        highWins = new int[slots];
+        int mask = slots - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key == 0) continue;
+            int i = hash(key) & mask;
+            while (keys[i] != 0) i = (i + 1) & mask;
+            keys[i] = key;
+            games[i] = oldGames[j];
+            lowWins[i] = oldLowWins[j];
+            highWins[i] = oldHighWins[j];
+        }
+    }
+
+    private void link(int deck, int opponent) {
+        int[] list = opponents[deck];
+        if (list == null) list = opponents[deck] = new int[4];
+        else if (degrees[deck] == list.length) list = opponents[deck] = Arrays.copyOf(list, list.length * 2);
+        list[degrees[deck]++] = opponent;
+    }
+
+    private static long key(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // ---------- decks ----------
+
+    /** ID denso do deck, ou -1 se ele ainda não apareceu. */
+    private int find(long hi, long lo) {
+        int mask = deckSlots.length - 1;
+        for (int i = deckHash(hi, lo) & mask; ; i = (i + 1) & mask) {
+            int slot = deckSlots[i];
+            if (slot == 0) return -1;
+            if (deckHis[slot - 1] == hi && deckLos[slot - 1] == lo) return slot - 1;
+        }
+    }
+
+    private int intern(long hi, long lo) {
+        if (deckCount == deckHis.length) {
+            int capacity = deckHis.length * 2;
+            deckHis = Arrays.copyOf(deckHis, capacity);
+            deckLos = Arrays.copyOf(deckLos, capacity);
+            opponents = Arrays.copyOf(opponents, capacity);
+            degrees = Arrays.copyOf(degrees, capacity);
+        }
+        if ((deckCount + 1) * 2 > deckSlots.length) {
+            deckSlots = new int[deckSlots.length * 2];
+            for (int id = 0; id < deckCount; id++) placeDeck(id);
+        }
+        int id = deckCount++;
+        deckHis[id] = hi;
+        deckLos[id] = lo;
+        placeDeck(id);
+        return id;
+    }
+
+    private void placeDeck(int id) {
+        int mask = deckSlots.length - 1;
+        int i = deckHash(deckHis[id], deckLos[id]) & mask;
+        while (deckSlots[i] != 0) i = (i + 1) & mask;
+        deckSlots[i] = id + 1;
+    }
+
+    private static int deckHash(long hi, long lo) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+}
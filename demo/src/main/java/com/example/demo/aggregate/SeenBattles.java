@@ -0,0 +1,232 @@
+package com.example.demo.aggregate;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto de batalhas já contadas, guardado como impressões digitais de 64 bits
+ * ({@link com.example.demo.model.BattleRecord#battleId()}).
+ *
+ * Tabela de endereçamento aberto em {@code long[]} (16 bytes por batalha: ID e {@code battleTime},
+ * sem objetos), dividida em faixas com trava própria para que as threads da coleta não disputem um
+ * único monitor. O ID 0 significa "sem identidade" e nunca é considerado repetido.
+ *
+ * {@link #prune} esquece as batalhas anteriores a um horizonte e passa a recusar as que chegam com
+ * {@code battleTime} anterior a ele, então uma batalha esquecida não volta a ser contada.
+ *
+ * Os IDs são por lado (o bit mais baixo diz de qual jogador é o log): os dois lados de uma batalha
+ * caem na mesma faixa, e {@link #addSide} diz sob a mesma trava se o outro lado já tinha sido visto.
+ */
+public final class SeenBattles {
+
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public SeenBattles() {
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    /** Resultado de {@link #addSide}. */
+    public enum Sighting {
+        /** Este lado já foi contado (ou é anterior ao horizonte). */
+        SEEN,
+        /** Primeiro lado visto da batalha. */
+        BATTLE,
+        /** Lado novo de uma batalha cujo outro lado já foi contado. */
+        SIDE
+    }
+
+    /** IDs e horários das batalhas, na mesma ordem. */
+    public record Entries(long[] ids, long[] times) {
+    }
+
+    /** Batalha sem horário conhecido: nunca é esquecida por {@link #prune}. */
+    public boolean add(long battleId) {
+        return add(battleId, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return true se a batalha é nova (e passa a ser conhecida); false se já foi vista ou é anterior
+     * ao horizonte de {@link #prune} (pode ter sido vista e esquecida)
+     */
+    public boolean add(long battleId, long battleTime) {
+        if (battleId == 0) return true;
+        Stripe stripe = stripes[(int) (battleId >>> 58) & (STRIPES - 1)];
+        synchronized (stripe) {
+            if (battleTime < stripe.horizon) return false;
+            return stripe.add(battleId, battleTime);
+        }
+    }
+
+    /**
+     * Como {@link #add(long, long)}, dizendo também se o outro lado da batalha ({@code battleId ^ 1})
+     * já era conhecido. Sem identidade (ID 0) conta sempre como {@link Sighting#BATTLE}.
+     */
+    public Sighting addSide(long battleId, long battleTime) {
+        if (battleId == 0) return Sighting.BATTLE;
+        Stripe stripe = stripes[(int) (battleId >>> 58) & (STRIPES - 1)];
+        synchronized (stripe) {
+            if (battleTime < stripe.horizon || !stripe.add(battleId, battleTime)) return Sighting.SEEN;
+            return stripe.contains(battleId ^ 1) ? Sighting.SIDE : Sighting.BATTLE;
+        }
+    }
+
+    /** Esquece uma batalha (ex: a região que a contou falhou antes do commit); false se ela não estava. */
+    public boolean remove(long battleId) {
+        if (battleId == 0) return false;
+        Stripe stripe = stripes[(int) (battleId >>> 58) & (STRIPES - 1)];
+        synchronized (stripe) {
+            return stripe.remove(battleId);
+        }
+    }
+
+    /**
+     * Esquece as batalhas com {@code battleTime} anterior a {@code horizon} e recusa as próximas
+     * nessa condição. O horizonte só avança. Devolve quantas foram esquecidas.
+     */
+    public int prune(long horizon) {
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                removed += stripe.prune(horizon);
+            }
+        }
+        return removed;
+    }
+
+    public boolean contains(long battleId) {
+        if (battleId == 0) return false;
+        Stripe stripe = stripes[(int) (battleId >>> 58) & (STRIPES - 1)];
+        synchronized (stripe) {
+            return stripe.contains(battleId);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    public long[] toArray() {
+        return entries().ids();
+    }
+
+    public Entries entries() {
+        long[] ids = new long[0];
+        long[] times = new long[0];
+        int n = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                ids = Arrays.copyOf(ids, n + stripe.size);
+                times = Arrays.copyOf(times, n + stripe.size);
+                for (int i = 0; i < stripe.table.length; i++) {
+                    if (stripe.table[i] == 0) continue;
+                    ids[n] = stripe.table[i];
+                    times[n++] = stripe.times[i];
+                }
+            }
+        }
+        return new Entries(ids, times);
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.table = new long[16];
+                stripe.times = new long[16];
+                stripe.size = 0;
+                stripe.horizon = Long.MIN_VALUE;
+            }
+        }
+    }
+
+    private static final class Stripe {
+
+        long[] table = new long[16];
+        long[] times = new long[16];
+        int size;
+        long horizon = Long.MIN_VALUE;
+
+        boolean add(long id, long time) {
+            if (size * 2 >= table.length) grow(table.length * 2);
+            if (!insert(table, times, id, time)) return false;
+            size++;
+            return true;
+        }
+
+        // sondagem linear: puxa para o buraco as entradas seguintes cujo slot ideal não fica entre ele e elas
+        boolean remove(long id) {
+            int mask = table.length - 1;
+            int gap = slot(id, mask);
+            while (table[gap] != id) {
+                if (table[gap] == 0) return false;
+                gap = (gap + 1) & mask;
+            }
+            for (int i = (gap + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+                int home = slot(table[i], mask);
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    table[gap] = table[i];
+                    times[gap] = times[i];
+                    gap = i;
+                }
+            }
+            table[gap] = 0;
+            times[gap] = 0;
+            size--;
+            return true;
+        }
+
+        int prune(long before) {
+            horizon = Math.max(horizon, before);
+            int kept = 0;
+            for (int i = 0; i < table.length; i++) if (table[i] != 0 && times[i] >= horizon) kept++;
+            int removed = size - kept;
+            if (removed == 0) return 0;
+            int capacity = 16;
+            while (kept * 2 >= capacity) capacity *= 2;
+            size = kept;
+            grow(capacity); // reinsere só as que ficam
+            return removed;
+        }
+
+        boolean contains(long id) {
+            int mask = table.length - 1;
+            for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+                if (table[i] == id) return true;
+                if (table[i] == 0) return false;
+            }
+        }
+
+        private static boolean insert(long[] target, long[] targetTimes, long id, long time) {
+            int mask = target.length - 1;
+            for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+                if (target[i] == id) return false;
+                if (target[i] == 0) {
+                    target[i] = id;
+                    targetTimes[i] = time;
+                    return true;
+                }
+            }
+        }
+
+        private void grow(int capacity) {
+            long[] bigger = new long[capacity];
+            long[] biggerTimes = new long[capacity];
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] != 0 && times[i] >= horizon) insert(bigger, biggerTimes, table[i], times[i]);
+            }
+            table = bigger;
+            times = biggerTimes;
+        }
+
+        // os bits altos escolhem a faixa; os baixos, a posição
+        private static int slot(long id, int mask) {
+            return (int) (id ^ (id >>> 29)) & mask;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.aggregate;
+
+/** Janela de tempo das estatísticas de deck ({@code ?window=24h|7d|all}). */
+public enum TimeWindow {
+
+    DAY("24h", 24),
+    WEEK("7d", 24 * 7),
+    ALL("all", 0);
+
+    private final String label;
+    private final int hours;
+
+    TimeWindow(String label, int hours) {
+        this.label = label;
+        this.hours = hours;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    /** Tamanho em horas (0 = sem limite). */
+    public int hours() {
+        return hours;
+    }
+
+    public static TimeWindow parse(String value) {
+        for (TimeWindow window : values()) {
+            if (window.label.equalsIgnoreCase(value)) return window;
+        }
+        throw new IllegalArgumentException("Janela inválida: " + value + " (use 24h, 7d ou all)");
+    }
+
+    /** Hora desde a epoch de um instante em millis. */
+    public static int hour(long epochMillis) {
+        return (int) (epochMillis / 3_600_000L);
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.demo.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache de resultados caros (ex: ranking de uma região) com:
+ * <ul>
+ *   <li>TTL: até {@code ttl} o valor é servido direto;</li>
+ *   <li>stale-while-revalidate: até {@code ttl + stale} o valor antigo é servido na hora e
+ *       um único recálculo roda em segundo plano no {@code refreshExecutor};</li>
+ *   <li>single-flight: chamadas simultâneas para a mesma chave esperam o mesmo cálculo;</li>
+ *   <li>LRU limitado a {@code maxEntries} chaves; uma chave com cálculo em andamento não sai do
+ *       cache (senão uma chamada simultânea começaria um segundo cálculo), então o limite pode ser
+ *       passado enquanto houver mais cálculos em andamento do que vagas.</li>
+ * </ul>
+ */
+public final class ResultCache<K, V> {
+
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final int maxEntries;
+    private final Executor refreshExecutor;
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public ResultCache(Duration ttl, Duration stale, int maxEntries, Executor refreshExecutor) {
+        this(ttl, stale, maxEntries, refreshExecutor, System::nanoTime);
+    }
+
+    ResultCache(Duration ttl, Duration stale, int maxEntries, Executor refreshExecutor, LongSupplier clock) {
+        this.ttlNanos = ttl.toNanos();
+        this.staleNanos = stale.toNanos();
+        this.maxEntries = maxEntries;
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Valor da chave, calculando com {@code loader} na thread atual se for preciso.
+     * Exceções do loader são repassadas a todas as chamadas que esperavam pelo mesmo cálculo.
+     */
+    public V get(K key, Function<K, V> loader) {
+        Entry<V> entry;
+        V stale = null;
+        boolean servingStale = false;
+        CompletableFuture<V> refresh = null;
+        CompletableFuture<V> load = null;
+        CompletableFuture<V> wait = null;
+
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.hasValue) {
+                long age = clock.getAsLong() - entry.loadedAt;
+                if (age < ttlNanos) {
+                    hits.increment();
+                    return entry.value;
+                }
+                if (age < ttlNanos + staleNanos) {
+                    staleHits.increment();
+                    if (entry.pending == null) entry.pending = refresh = new CompletableFuture<>();
+                    stale = entry.value;
+                    servingStale = true;
+                }
+            }
+            if (!servingStale) {
+                if (entry != null && entry.pending != null) {
+                    coalesced.increment();
+                    wait = entry.pending;
+                } else {
+                    misses.increment();
+                    if (entry == null) {
+                        entry = new Entry<>();
+                        entries.put(key, entry);
+                        evict();
+                    }
+                    entry.pending = load = wait = new CompletableFuture<>();
+                }
+            }
+        }
+
+        if (servingStale) {
+            if (refresh != null) {
+                refreshes.increment();
+                Entry<V> target = entry;
+                CompletableFuture<V> pending = refresh;
+                refreshExecutor.execute(() -> run(key, target, pending, loader));
+            }
+            return stale;
+        }
+
+        if (load != null) run(key, entry, load, loader);
+        try {
+            return wait.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+
+    /** Descarta todas as entradas (os cálculos em andamento terminam, mas não são guardados). */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** Contadores para o endpoint de estatísticas. */
+    public Map<String, Object> stats() {
+        long hit = hits.sum() + staleHits.sum() + coalesced.sum();
+        long total = hit + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.sum());
+        stats.put("staleHits", staleHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("refreshes", refreshes.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("failures", failures.sum());
+        stats.put("hitRatio", total > 0 ? hit / (double) total : 0.0);
+        return stats;
+    }
+
+    /**
+     * Publica os contadores como {@code royale.cache.gets{cache=name, result=hit|stale|miss|coalesced}},
+     * {@code royale.cache.evictions}, {@code royale.cache.failures} e o gauge {@code royale.cache.size}.
+     */
+    public void bindTo(MeterRegistry registry, String name) {
+        gets(registry, name, "hit", hits);
+        gets(registry, name, "stale", staleHits);
+        gets(registry, name, "miss", misses);
+        gets(registry, name, "coalesced", coalesced);
+        FunctionCounter.builder("royale.cache.evictions", evictions, LongAdder::sum)
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("royale.cache.failures", failures, LongAdder::sum)
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("royale.cache.size", this, ResultCache::size)
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    private static void gets(MeterRegistry registry, String name, String result, LongAdder counter) {
+        FunctionCounter.builder("royale.cache.gets", counter, LongAdder::sum)
+                .tag("cache", name)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private void run(K key, Entry<V> entry, CompletableFuture<V> pending, Function<K, V> loader) {
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException e) {
+            failures.increment();
+            synchronized (entries) {
+                entry.pending = null;
+                // sem valor antigo não há o que servir: remove para a próxima chamada tentar de novo
+                if (!entry.hasValue && entries.get(key) == entry) entries.remove(key);
+            }
+            pending.completeExceptionally(e);
+            return;
+        }
+        synchronized (entries) {
+            entry.value = value;
+            entry.hasValue = true;
+            entry.loadedAt = clock.getAsLong();
+            entry.pending = null;
+            evict(); // o limite pode ter ficado estourado enquanto esta chave calculava
+        }
+        pending.complete(value);
+    }
+
+    // LRU: do menos para o mais usado, pulando as chaves com cálculo em andamento (chamar com o lock)
+    private void evict() {
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            if (eldest.next().pending == null) {
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        V value;
+        boolean hasValue;
+        long loadedAt;
+        CompletableFuture<V> pending;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.demo.client;
+
+import com.example.demo.model.BattleRecord;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Battlelogs já decodificados, por tag de jogador.
+ *
+ * A validade acompanha a atividade do jogador: o log fica em cache por {@code ttl}, estendido para
+ * metade do tempo desde a última batalha (até {@code max-ttl}), já que quem não joga há horas
+ * dificilmente terá batalhas novas. Chamadas simultâneas para a mesma tag compartilham uma única
+ * requisição, e o total de logs guardados é limitado (LRU).
+ *
+ * Métricas: {@code royale.cache.gets{cache=battlelog, result=hit|miss|coalesced}} e {@code royale.cache.size}.
+ */
+@Component
+public class BattleLogCache implements MeterBinder {
+
+    private final RoyaleApiClient client;
+    private final long ttlMillis;
+    private final long maxTtlMillis;
+    private final int maxEntries;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public BattleLogCache(RoyaleApiClient client,
+                          @Value("${royale.battlelog-cache.ttl:2m}") Duration ttl,
+                          @Value("${royale.battlelog-cache.max-ttl:30m}") Duration maxTtl,
+                          @Value("${royale.battlelog-cache.max-entries:20000}") int maxEntries) {
+        this.client = client;
+        this.ttlMillis = ttl.toMillis();
+        this.maxTtlMillis = Math.max(ttl.toMillis(), maxTtl.toMillis());
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > BattleLogCache.this.maxEntries;
+            }
+        };
+    }
+
+    public Mono<List<BattleRecord>> get(String playerTag) {
+        return Mono.defer(() -> {
+            long now = System.currentTimeMillis();
+            synchronized (entries) {
+                Entry entry = entries.get(playerTag);
+                if (entry != null && entry.expiresAt == 0) {
+                    coalesced.increment();
+                    return entry.battles;
+                }
+                if (entry != null && now < entry.expiresAt) {
+                    hits.increment();
+                    return entry.battles;
+                }
+                misses.increment();
+                Entry loading = new Entry();
+                // o Mono é preguiçoso: a requisição só sai quando o primeiro chamador se inscreve
+                loading.battles = client.getBattles(playerTag)
+                        .collectList()
+                        .doOnSuccess(battles -> {
+                            synchronized (entries) {
+                                loading.expiresAt = expiry(battles, System.currentTimeMillis());
+                            }
+                        })
+                        .doOnError(e -> {
+                            synchronized (entries) {
+                                if (entries.get(playerTag) == loading) entries.remove(playerTag);
+                            }
+                        })
+                        .cache();
+                entries.put(playerTag, loading);
+                return loading.battles;
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("coalesced", coalesced.sum());
+        return stats;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        gets(registry, "hit", hits);
+        gets(registry, "miss", misses);
+        gets(registry, "coalesced", coalesced);
+        Gauge.builder("royale.cache.size", this, BattleLogCache::size)
+                .tag("cache", "battlelog")
+                .register(registry);
+    }
+
+    private static void gets(MeterRegistry registry, String result, LongAdder counter) {
+        FunctionCounter.builder("royale.cache.gets", counter, LongAdder::sum)
+                .tag("cache", "battlelog")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private long expiry(List<BattleRecord> battles, long now) {
+        long newest = 0;
+        for (BattleRecord battle : battles) newest = Math.max(newest, battle.battleTime());
+        long idle = newest > 0 ? now - newest : 0;
+        return now + Math.min(maxTtlMillis, Math.max(ttlMillis, idle / 2));
+    }
+
+    private static final class Entry {
+        Mono<List<BattleRecord>> battles;
+        long expiresAt; // 0 enquanto a requisição está em andamento
+    }
+}
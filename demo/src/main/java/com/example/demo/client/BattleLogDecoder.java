@@ -0,0 +1,363 @@
+package com.example.demo.client;
+
+import com.example.demo.model.BattleRecord;
+import com.example.demo.model.CardInfo;
+import com.example.demo.model.DeckKey;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodificador incremental do battlelog ({@code players/{tag}/battlelog}).
+ *
+ * Usa o parser não-bloqueante do Jackson: os bytes chegam em pedaços (DataBuffers do
+ * WebClient), os tokens são consumidos assim que ficam disponíveis e cada batalha vira
+ * um {@link BattleRecord} ao fechar o objeto. Nenhuma árvore JsonNode nem a String da
+ * resposta inteira é criada; só os campos usados pelos agregadores são lidos:
+ * {@code battleTime}, {@code gameMode.id}, {@code tag}, {@code crowns} e
+ * {@code cards[].id/name/elixirCost/iconUrls.medium} dos dois lados.
+ *
+ * Não é thread-safe: uma instância por resposta.
+ */
+public final class BattleLogDecoder {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Tipos de nível na pilha de contexto
+    private static final int OTHER = 0;
+    private static final int ROOT = 1;
+    private static final int BATTLE = 2;
+    private static final int GAME_MODE = 3;
+    private static final int TEAM_ARRAY = 4;
+    private static final int OPPONENT_ARRAY = 5;
+    private static final int TEAM = 6;
+    private static final int OPPONENT = 7;
+    private static final int CARDS = 8;
+    private static final int CARD = 9;
+    private static final int ICON_URLS = 10;
+    private static final int OPPONENT_CARDS = 11;
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private final CardDictionary cards;
+
+    private int[] kinds = new int[32];
+    private int[] elements = new int[32];
+    private int depth;
+    private String field;
+
+    // Estado da batalha atual
+    private long battleTime;
+    private int gameModeId;
+    private long teamTag;
+    private long opponentTag;
+    private int teamCrowns;
+    private int opponentCrowns;
+    private boolean hasTeam;
+    private boolean hasOpponent;
+    private final Side team = new Side();
+    private final Side opponent = new Side();
+
+    // Estado da carta atual (nome/ícone copiados para buffers reutilizáveis)
+    private Side cardSide;
+    private int cardId;
+    private int cardElixir;
+    private final StringBuilder cardName = new StringBuilder(32);
+    private final StringBuilder cardIcon = new StringBuilder(128);
+
+    private List<BattleRecord> out = new ArrayList<>();
+
+    public BattleLogDecoder(CardDictionary cards) {
+        try {
+            this.parser = JSON.createNonBlockingByteBufferParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        this.cards = cards;
+    }
+
+    /** Decodifica uma resposta completa já em memória. */
+    public static List<BattleRecord> decode(byte[] json, CardDictionary cards) {
+        BattleLogDecoder decoder = new BattleLogDecoder(cards);
+        List<BattleRecord> battles = new ArrayList<>(decoder.feed(ByteBuffer.wrap(json)));
+        battles.addAll(decoder.finish());
+        return battles;
+    }
+
+    /**
+     * Consome um pedaço da resposta e devolve as batalhas que ficaram completas.
+     * O buffer é totalmente lido antes do retorno, então pode ser liberado em seguida.
+     */
+    public List<BattleRecord> feed(ByteBuffer chunk) {
+        try {
+            feeder.feedInput(chunk);
+            drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao parsear battlelog: " + e.getMessage(), e);
+        }
+        return take();
+    }
+
+    /** Sinaliza o fim da resposta e devolve as batalhas restantes. */
+    public List<BattleRecord> finish() {
+        try {
+            feeder.endOfInput();
+            drain();
+            parser.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao parsear battlelog: " + e.getMessage(), e);
+        }
+        return take();
+    }
+
+    private List<BattleRecord> take() {
+        if (out.isEmpty()) return List.of();
+        List<BattleRecord> ready = out;
+        out = new ArrayList<>();
+        return ready;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case FIELD_NAME -> field = parser.currentName();
+                case START_OBJECT -> push(childKind(true));
+                case START_ARRAY -> push(childKind(false));
+                case END_OBJECT, END_ARRAY -> pop();
+                case VALUE_NUMBER_INT -> onInt();
+                case VALUE_STRING -> onString();
+                default -> { }
+            }
+        }
+    }
+
+    private int childKind(boolean object) {
+        if (depth == 0) return object ? OTHER : ROOT;
+        int parent = kinds[depth - 1];
+        int index = elements[depth - 1]++;
+        switch (parent) {
+            case ROOT:
+                if (object) startBattle();
+                return object ? BATTLE : OTHER;
+            case BATTLE:
+                if (object && "gameMode".equals(field)) return GAME_MODE;
+                if (!object && "team".equals(field)) return TEAM_ARRAY;
+                if (!object && "opponent".equals(field)) return OPPONENT_ARRAY;
+                return OTHER;
+            case TEAM_ARRAY:
+                // Só o primeiro jogador de cada lado (1v1)
+                if (object && index == 0) {
+                    hasTeam = true;
+                    return TEAM;
+                }
+                return OTHER;
+            case OPPONENT_ARRAY:
+                if (object && index == 0) {
+                    hasOpponent = true;
+                    return OPPONENT;
+                }
+                return OTHER;
+            case TEAM:
+                return !object && "cards".equals(field) ? CARDS : OTHER;
+            case OPPONENT:
+                return !object && "cards".equals(field) ? OPPONENT_CARDS : OTHER;
+            case CARDS:
+            case OPPONENT_CARDS:
+                if (object) {
+                    cardSide = parent == CARDS ? team : opponent;
+                    cardId = 0;
+                    cardElixir = 0;
+                    cardName.setLength(0);
+                    cardIcon.setLength(0);
+                    return CARD;
+                }
+                return OTHER;
+            case CARD:
+                return object && "iconUrls".equals(field) ? ICON_URLS : OTHER;
+            default:
+                return OTHER;
+        }
+    }
+
+    private void push(int kind) {
+        if (depth == kinds.length) {
+            kinds = Arrays.copyOf(kinds, depth * 2);
+            elements = Arrays.copyOf(elements, depth * 2);
+        }
+        kinds[depth] = kind;
+        elements[depth] = 0;
+        depth++;
+    }
+
+    private void pop() {
+        int kind = kinds[--depth];
+        if (kind == CARD) endCard();
+        else if (kind == BATTLE) endBattle();
+    }
+
+    private void onInt() throws IOException {
+        if (depth == 0) return;
+        switch (kinds[depth - 1]) {
+            case GAME_MODE -> {
+                if ("id".equals(field)) gameModeId = parser.getIntValue();
+            }
+            case TEAM -> {
+                if ("crowns".equals(field)) teamCrowns = parser.getIntValue();
+            }
+            case OPPONENT -> {
+                if ("crowns".equals(field)) opponentCrowns = parser.getIntValue();
+            }
+            case CARD -> {
+                if ("id".equals(field)) cardId = parser.getIntValue();
+                else if ("elixirCost".equals(field)) cardElixir = parser.getIntValue();
+            }
+            default -> { }
+        }
+    }
+
+    private void onString() throws IOException {
+        if (depth == 0) return;
+        int kind = kinds[depth - 1];
+        if (kind == BATTLE && "battleTime".equals(field)) {
+            battleTime = parseBattleTime(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } else if ((kind == TEAM || kind == OPPONENT) && "tag".equals(field)) {
+            long tag = hash(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            if (kind == TEAM) teamTag = tag;
+            else opponentTag = tag;
+        } else if (kind == CARD && "name".equals(field)) {
+            cardName.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } else if (kind == ICON_URLS && "medium".equals(field)) {
+            cardIcon.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+    }
+
+    private void startBattle() {
+        battleTime = 0;
+        gameModeId = 0;
+        teamTag = 0;
+        opponentTag = 0;
+        teamCrowns = 0;
+        opponentCrowns = 0;
+        hasTeam = false;
+        hasOpponent = false;
+        team.reset();
+        opponent.reset();
+    }
+
+    private void endCard() {
+        cardSide.add(cardId);
+        if (!cards.contains(cardId)) {
+            cards.putIfAbsent(new CardInfo(cardId, cardName.toString(), cardElixir, cardIcon.toString()));
+        }
+    }
+
+    private void endBattle() {
+        if (!hasTeam || !hasOpponent) return;
+        out.add(new BattleRecord(battleId(), battleTime, gameModeId, teamCrowns, opponentCrowns,
+                team.deck(), opponent.deck()));
+    }
+
+    /**
+     * Identidade do lado da batalha: (battleTime, tags ordenadas) reduzidos a 64 bits, com o bit mais
+     * baixo dizendo se o dono do log é o jogador de menor tag (0) ou o outro (1). O log do adversário
+     * traz a mesma batalha com o ID {@code ^ 1}. 0 quando faltam os dados.
+     */
+    private long battleId() {
+        if (battleTime == 0 || teamTag == 0 || opponentTag == 0) return 0;
+        long low = Math.min(teamTag, opponentTag);
+        long high = Math.max(teamTag, opponentTag);
+        long id = mix(battleTime ^ mix(low) ^ Long.rotateLeft(mix(high), 31)) & ~1L;
+        if (id == 0) id = 2;
+        return teamTag == low ? id : id | 1;
+    }
+
+    /** {@code yyyyMMdd'T'HHmmss.SSS'Z'} em epoch millis, sem criar String; 0 se o formato não bater. */
+    static long parseBattleTime(char[] text, int offset, int length) {
+        if (length < 15 || text[offset + 8] != 'T') return 0;
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 4, 2);
+        int day = digits(text, offset + 6, 2);
+        int hour = digits(text, offset + 9, 2);
+        int minute = digits(text, offset + 11, 2);
+        int second = digits(text, offset + 13, 2);
+        int millis = length >= 19 && text[offset + 15] == '.' ? digits(text, offset + 16, 3) : 0;
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || minute < 0 || second < 0 || millis < 0) return 0;
+
+        // dias desde 1970-01-01 (algoritmo "days from civil")
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        long days = era * 146097L + doe - 719468;
+        return ((days * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+    }
+
+    private static int digits(char[] text, int offset, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int digit = text[offset + i] - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static long hash(char[] text, int offset, int length) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (int i = 0; i < length; i++) {
+            h ^= text[offset + i];
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /** Cartas de um lado da batalha (só o primeiro jogador). */
+    private static final class Side {
+
+        private final int[] ids = new int[DeckKey.SLOTS];
+        private int size;
+        private boolean overflow;
+
+        void reset() {
+            size = 0;
+            overflow = false;
+        }
+
+        void add(int cardId) {
+            if (size == DeckKey.SLOTS) {
+                overflow = true;
+                return;
+            }
+            ids[size++] = cardId;
+        }
+
+        /** null quando o modo não usa um deck de até 8 cartas válidas. */
+        DeckKey deck() {
+            if (size == 0 || overflow) return null;
+            try {
+                return DeckKey.of(ids, size);
+            } catch (IllegalArgumentException ignored) {
+                // carta fora do intervalo de IDs conhecido: batalha fica sem deck
+                return null;
+            }
+        }
+    }
+}
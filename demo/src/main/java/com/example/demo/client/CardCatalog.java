@@ -0,0 +1,83 @@
+package com.example.demo.client;
+
+import com.example.demo.model.CardInfo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Catálogo de cartas do {@code /cards} da API oficial.
+ *
+ * Carregado logo na subida e atualizado periodicamente ({@code royale.cards.refresh}). O corpo é
+ * guardado já em bytes com um ETag (MD5), então {@code GET /cards} não chama a API nem
+ * serializa nada, e clientes com {@code If-None-Match} recebem 304. Os metadados de cada carta
+ * vão para o {@link CardDictionary}, usado para montar as respostas a partir dos IDs dos decks.
+ */
+@Component
+public class CardCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(CardCatalog.class);
+
+    /** Corpo pronto para resposta + ETag. */
+    public record Cards(byte[] json, String etag, int size) {
+    }
+
+    private final RoyaleApiClient client;
+    private final CardDictionary dictionary;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private volatile Cards current;
+
+    public CardCatalog(RoyaleApiClient client, CardDictionary dictionary) {
+        this.client = client;
+        this.dictionary = dictionary;
+    }
+
+    /** Catálogo em memória; na primeira chamada sem catálogo carregado, busca na API. */
+    public Cards get() {
+        Cards cards = current;
+        return cards != null ? cards : refresh();
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${royale.cards.refresh:6h}")
+    public void scheduledRefresh() {
+        try {
+            Cards cards = refresh();
+            log.info("🃏 Catálogo de cartas carregado ({} cartas)", cards.size());
+        } catch (RuntimeException e) {
+            log.warn("🃏 Erro ao atualizar catálogo de cartas: {}", e.getMessage());
+        }
+    }
+
+    public synchronized Cards refresh() {
+        byte[] json = client.getCards().getBytes(StandardCharsets.UTF_8);
+        Cards previous = current;
+        String etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+        if (previous != null && previous.etag().equals(etag)) return previous;
+
+        int size = 0;
+        try {
+            JsonNode root = mapper.readTree(json);
+            for (String section : new String[]{"items", "supportItems"}) {
+                for (JsonNode card : root.path(section)) {
+                    dictionary.put(new CardInfo(card.path("id").asInt(), card.path("name").asText(),
+                            card.path("elixirCost").asInt(0), card.path("iconUrls").path("medium").asText("")));
+                    size++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao ler catálogo de cartas: " + e.getMessage(), e);
+        }
+        Cards cards = new Cards(json, etag, size);
+        current = cards;
+        return cards;
+    }
+}
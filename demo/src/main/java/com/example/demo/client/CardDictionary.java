@@ -0,0 +1,81 @@
+package com.example.demo.client;
+
+import com.example.demo.model.CardInfo;
+import com.example.demo.model.DeckKey;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cartas vistas nos battlelogs, indexadas pelo ID.
+ *
+ * O parser só cria as Strings de nome/ícone na primeira vez que encontra uma carta;
+ * nas demais batalhas a carta é referenciada apenas pelo ID. O mapa de resposta de cada
+ * carta também é montado uma vez só e compartilhado (somente leitura) entre os decks.
+ */
+@Component
+public class CardDictionary {
+
+    private final Map<Integer, CardInfo> cards = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<String, Object>> rendered = new ConcurrentHashMap<>();
+
+    public boolean contains(int cardId) {
+        return cards.containsKey(cardId);
+    }
+
+    public CardInfo get(int cardId) {
+        return cards.get(cardId);
+    }
+
+    /** Carta pelo nome (sem diferenciar maiúsculas), ou null; percorre o dicionário (~120 cartas). */
+    public CardInfo findByName(String name) {
+        for (CardInfo card : cards.values()) {
+            if (card.name().equalsIgnoreCase(name)) return card;
+        }
+        return null;
+    }
+
+    public Collection<CardInfo> cards() {
+        return cards.values();
+    }
+
+    public void putIfAbsent(CardInfo card) {
+        cards.putIfAbsent(card.id(), card);
+    }
+
+    /** Substitui os metadados da carta (ex: catálogo atualizado) e descarta o mapa já montado. */
+    public void put(CardInfo card) {
+        CardInfo previous = cards.put(card.id(), card);
+        if (!card.equals(previous)) rendered.remove(card.id());
+    }
+
+    /** Cartas do deck no formato de resposta, na ordem canônica da chave. */
+    public List<Map<String, Object>> render(DeckKey deck) {
+        int[] ids = deck.cardIds();
+        List<Map<String, Object>> list = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            list.add(renderCard(id));
+        }
+        return list;
+    }
+
+    /** Carta no formato de resposta (compartilhado, somente leitura). */
+    public Map<String, Object> renderCard(int id) {
+        Map<String, Object> map = rendered.get(id);
+        return map != null ? map : render(id);
+    }
+
+    private Map<String, Object> render(int id) {
+        CardInfo card = cards.get(id);
+        // carta desconhecida não entra no cache: pode aparecer no dicionário depois
+        if (card == null) return new CardInfo(id, String.valueOf(id), 0, "").toMap();
+        Map<String, Object> map = Collections.unmodifiableMap(card.toMap());
+        rendered.putIfAbsent(id, map);
+        return map;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.demo.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Executor das buscas bloqueantes em leque (ex: um battlelog por jogador no ranking de uma região).
+ *
+ * Com {@code spring.threads.virtual.enabled=true} (Java 21+) cada tarefa ganha a sua virtual thread,
+ * como as requisições do Tomcat; sem isso, ou em Java 17, usa um pool fixo de
+ * {@code royale.executor.platform-threads}. Nos dois modos as tarefas em andamento acompanham o
+ * limite adaptativo (AIMD) atual do {@link RequestThrottle}: milhares de buscas podem ser
+ * enfileiradas, mas só esse número fica de fato esperando resposta, e depois de um 429 menos
+ * threads ficam presas na fila do throttle.
+ */
+@Component
+public class FetchExecutor implements MeterBinder, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(FetchExecutor.class);
+
+    // o limite cresce com as respostas do throttle, sem aviso: quem espera confere de tempos em tempos
+    private static final long LIMIT_POLL_MILLIS = 50;
+
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final RequestThrottle throttle;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition released = lock.newCondition();
+    private int active;  // guardados por lock
+    private int waiting;
+
+    public FetchExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                         @Value("${royale.executor.platform-threads:20}") int platformThreads,
+                         RequestThrottle throttle) {
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+        if (virtualThreads && virtualExecutor == null) {
+            log.warn("🧵 Virtual threads indisponíveis (Java {}); usando pool de {} threads",
+                    Runtime.version().feature(), platformThreads);
+        }
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : Executors.newFixedThreadPool(platformThreads);
+        this.throttle = throttle;
+    }
+
+    /** Roda {@code task} assim que houver vaga; exceções completam o future. */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return task.get();
+            } finally {
+                release();
+            }
+        }, executor);
+    }
+
+    public CompletableFuture<Void> run(Runnable task) {
+        return submit(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public boolean virtual() {
+        return virtual;
+    }
+
+    /** Tarefas em andamento (com vaga). */
+    public int active() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Tarefas esperando vaga. */
+    public int waiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("royale.fetch.active", this, FetchExecutor::active)
+                .description("Buscas bloqueantes em andamento")
+                .tag("threads", virtual ? "virtual" : "platform")
+                .register(registry);
+        Gauge.builder("royale.fetch.waiting", this, FetchExecutor::waiting)
+                .description("Buscas bloqueantes esperando vaga")
+                .tag("threads", virtual ? "virtual" : "platform")
+                .register(registry);
+    }
+
+    private void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            waiting++;
+            try {
+                while (active >= Math.max(1, throttle.concurrencyLimit())) {
+                    released.await(LIMIT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                waiting--;
+            }
+            active++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            active--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    // Compilado para Java 17: a fábrica de virtual threads (Java 21) é resolvida por reflexão
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
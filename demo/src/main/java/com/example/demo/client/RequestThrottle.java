@@ -0,0 +1,277 @@
+package com.example.demo.client;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limitador central de todas as chamadas à Royale API.
+ *
+ * Combina dois controles:
+ * <ul>
+ *   <li>token bucket ({@code rate-per-second} + {@code burst}) que define o ritmo de novas requisições
+ *       e pode ser pausado por um {@code Retry-After};</li>
+ *   <li>limite adaptativo de requisições em andamento (AIMD): cresce ~1 a cada janela de respostas
+ *       bem-sucedidas e cai pela metade a cada 429.</li>
+ * </ul>
+ * Assim a coleta converge para a maior taxa sustentável do tier do token, em vez de sleeps fixos.
+ * Durante uma pausa nenhuma vaga é entregue, nem às requisições que já estavam na fila: elas
+ * seguem quando a pausa acaba.
+ *
+ * Métricas: {@code royale.api.in.flight}, {@code royale.api.waiting}, {@code royale.api.concurrency.limit}
+ * e os contadores {@code royale.api.throttled} (429) e {@code royale.api.quota.pauses}.
+ */
+@Component
+public class RequestThrottle implements MeterBinder {
+
+    private static final int WAITING = 0;
+    private static final int GRANTED = 1;
+    private static final int DONE = 2;
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final double ratePerNano;
+    private final double burst;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+
+    // Token bucket
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long pausedUntil = lastRefill;
+    private boolean resumeScheduled;
+
+    // AIMD
+    private double limit;
+    private int inFlight;
+    private final ArrayDeque<Permit> waiters = new ArrayDeque<>();
+
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder quotaPauses = new LongAdder();
+
+    public RequestThrottle(@Value("${royale.api.rate-per-second:10}") double ratePerSecond,
+                           @Value("${royale.api.burst:20}") int burst,
+                           @Value("${royale.api.min-concurrency:2}") int minConcurrency,
+                           @Value("${royale.api.max-concurrency:64}") int maxConcurrency) {
+        this.ratePerNano = ratePerSecond / 1e9;
+        this.burst = burst;
+        this.tokens = burst;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.limit = minConcurrency;
+    }
+
+    /**
+     * Executa {@code call} respeitando o ritmo e o limite de concorrência.
+     * A vaga fica ocupada até a resposta terminar (inclusive streaming) ou ser cancelada.
+     */
+    public <T> Flux<T> throttle(Flux<T> call) {
+        return Flux.defer(() -> {
+            Permit permit = new Permit();
+            long delay = reserve();
+            Mono<Void> ready = delay > 0
+                    ? Mono.delay(Duration.ofNanos(delay)).then(Mono.create(permit::enqueue))
+                    : Mono.create(permit::enqueue);
+            return ready.thenMany(call)
+                    .doOnComplete(this::onSuccess)
+                    .doFinally(signal -> permit.finish());
+        });
+    }
+
+    public <T> Mono<T> throttle(Mono<T> call) {
+        return throttle(call.flux()).singleOrEmpty();
+    }
+
+    /**
+     * Filtro do WebClient que lê os cabeçalhos de limite de cada resposta:
+     * 429 aciona {@link #onThrottled} com o {@code Retry-After}; cota restante zerada
+     * ({@code X-RateLimit-Remaining: 0}) pausa o bucket até {@code X-RateLimit-Reset}.
+     */
+    public ExchangeFilterFunction responseFilter() {
+        return ExchangeFilterFunction.ofResponseProcessor(response -> {
+            HttpHeaders headers = response.headers().asHttpHeaders();
+            if (response.statusCode().value() == 429) {
+                onThrottled(seconds(headers.getFirst(HttpHeaders.RETRY_AFTER), DEFAULT_RETRY_AFTER));
+            } else if ("0".equals(headers.getFirst("X-RateLimit-Remaining"))) {
+                quotaPauses.increment();
+                pauseFor(seconds(headers.getFirst("X-RateLimit-Reset"), Duration.ZERO));
+            }
+            return Mono.just(response);
+        });
+    }
+
+    /** Resposta 429: reduz o limite pela metade e pausa o bucket pelo {@code Retry-After}. */
+    public void onThrottled(Duration retryAfter) {
+        throttled.increment();
+        synchronized (this) {
+            limit = Math.max(minConcurrency, limit / 2);
+            long until = System.nanoTime() + retryAfter.toNanos();
+            if (until - pausedUntil > 0) pausedUntil = until;
+            // zera o que sobrou, mas mantém a dívida das reservas já agendadas
+            tokens = Math.min(tokens, 0);
+        }
+    }
+
+    /** Pausa novas requisições sem mexer na concorrência (ex: cota restante zerada). */
+    public synchronized void pauseFor(Duration duration) {
+        long until = System.nanoTime() + duration.toNanos();
+        if (until - pausedUntil > 0) pausedUntil = until;
+    }
+
+    public synchronized int concurrencyLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int waiting() {
+        return waiters.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("royale.api.in.flight", this, RequestThrottle::inFlight)
+                .description("Requisições à Royale API em andamento")
+                .register(registry);
+        Gauge.builder("royale.api.waiting", this, RequestThrottle::waiting)
+                .description("Requisições esperando uma vaga de concorrência")
+                .register(registry);
+        Gauge.builder("royale.api.concurrency.limit", this, RequestThrottle::concurrencyLimit)
+                .description("Limite adaptativo (AIMD) de requisições em andamento")
+                .register(registry);
+        FunctionCounter.builder("royale.api.throttled", throttled, LongAdder::sum)
+                .description("Respostas 429 da Royale API")
+                .register(registry);
+        FunctionCounter.builder("royale.api.quota.pauses", quotaPauses, LongAdder::sum)
+                .description("Pausas por cota restante zerada (X-RateLimit-Remaining: 0)")
+                .register(registry);
+    }
+
+    private static Duration seconds(String header, Duration fallback) {
+        if (header == null) return fallback;
+        try {
+            return Duration.ofMillis((long) (Double.parseDouble(header.trim()) * 1000));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private void onSuccess() {
+        List<Permit> granted;
+        synchronized (this) {
+            limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+            granted = grantWaiters();
+        }
+        granted.forEach(Permit::signal);
+    }
+
+    /** Reserva um token e devolve quantos nanos esperar até poder usá-lo. */
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+        tokens -= 1;
+        long wait = tokens >= 0 ? 0 : (long) (-tokens / ratePerNano);
+        long paused = pausedUntil - now;
+        return Math.max(wait, paused);
+    }
+
+    private List<Permit> grantWaiters() {
+        List<Permit> granted = new ArrayList<>();
+        if (waiters.isEmpty() || paused()) return granted;
+        while (inFlight < (int) limit && !waiters.isEmpty()) {
+            Permit next = waiters.poll();
+            if (next.state.compareAndSet(WAITING, GRANTED)) {
+                inFlight++;
+                granted.add(next);
+            }
+        }
+        return granted;
+    }
+
+    // Em pausa (Retry-After/cota): agenda a entrega das vagas para quando ela acabar
+    private boolean paused() {
+        long remaining = pausedUntil - System.nanoTime();
+        if (remaining <= 0) return false;
+        if (!resumeScheduled) {
+            resumeScheduled = true;
+            Schedulers.parallel().schedule(this::resume, remaining, TimeUnit.NANOSECONDS);
+        }
+        return true;
+    }
+
+    private void resume() {
+        List<Permit> granted;
+        synchronized (this) {
+            resumeScheduled = false;
+            granted = grantWaiters(); // pausa estendida nesse meio tempo: agenda de novo
+        }
+        granted.forEach(Permit::signal);
+    }
+
+    private void release() {
+        List<Permit> granted;
+        synchronized (this) {
+            inFlight--;
+            granted = grantWaiters();
+        }
+        granted.forEach(Permit::signal);
+    }
+
+    /** Vaga de uma requisição: WAITING -> GRANTED -> DONE (ou WAITING -> DONE se cancelada na fila). */
+    private final class Permit {
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private MonoSink<Void> sink;
+
+        void enqueue(MonoSink<Void> sink) {
+            this.sink = sink;
+            boolean now = false;
+            synchronized (RequestThrottle.this) {
+                if (inFlight < (int) limit && waiters.isEmpty() && !paused()) {
+                    if (state.compareAndSet(WAITING, GRANTED)) {
+                        inFlight++;
+                        now = true;
+                    }
+                } else if (state.get() == WAITING) {
+                    waiters.add(this);
+                    paused(); // garante a entrega quando a pausa acabar, mesmo sem ninguém em andamento
+                }
+            }
+            if (now) sink.success();
+        }
+
+        void signal() {
+            sink.success();
+        }
+
+        void finish() {
+            int previous = state.getAndSet(DONE);
+            if (previous == GRANTED) {
+                release();
+            } else if (previous == WAITING) {
+                synchronized (RequestThrottle.this) {
+                    waiters.remove(this);
+                }
+            }
+        }
+    }
+}
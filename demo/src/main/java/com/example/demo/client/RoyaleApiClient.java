@@ -1,64 +1,118 @@
 package com.example.demo.client;
 
+import com.example.demo.model.BattleRecord;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 @Service
 public class RoyaleApiClient {
 
     private final WebClient webClient;
+    private final CardDictionary cardDictionary;
+    private final RequestThrottle throttle;
+    private final int maxRetries;
 
-    public RoyaleApiClient(WebClient royaleWebClient) {
+    public RoyaleApiClient(WebClient royaleWebClient,
+                           CardDictionary cardDictionary,
+                           RequestThrottle throttle,
+                           @Value("${royale.api.max-retries:5}") int maxRetries) {
         this.webClient = royaleWebClient;
+        this.cardDictionary = cardDictionary;
+        this.throttle = throttle;
+        this.maxRetries = maxRetries;
     }
 
     public String getCards() {
-        return webClient.get()
+        return limited(webClient.get()
                 .uri("cards")
                 .retrieve()
-                .bodyToMono(String.class)
+                .bodyToMono(String.class))
                 .block();
     }
 
-    public JsonNode getBattleLog(String playerTag) {
-        String response = webClient.get()
-                .uri("players/{playerTag}/battlelog", playerTag)
-                .retrieve()
-                .bodyToMono(String.class)
-                .block();
-        try {
-            return new ObjectMapper().readTree(response);
-        } catch (Exception e) {
-            throw new RuntimeException("Erro ao parsear JSON: " + e.getMessage());
-        }
+    /**
+     * Battlelog decodificado em streaming: cada DataBuffer da resposta é entregue ao
+     * {@link BattleLogDecoder} e liberado em seguida, sem guardar o corpo inteiro.
+     */
+    public Flux<BattleRecord> getBattles(String playerTag) {
+        return limited(Flux.defer(() -> {
+            BattleLogDecoder decoder = new BattleLogDecoder(cardDictionary);
+            return webClient.get()
+                    .uri("players/{playerTag}/battlelog", playerTag)
+                    .retrieve()
+                    .bodyToFlux(DataBuffer.class)
+                    .concatMapIterable(buffer -> decode(decoder, buffer))
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(decoder.finish())));
+        }));
     }
 
+    public List<BattleRecord> getBattleLog(String playerTag) {
+        return getBattles(playerTag).collectList().block();
+    }
+
+    public CompletableFuture<List<BattleRecord>> getBattleLogAsync(String playerTag) {
+        return getBattles(playerTag).collectList().toFuture();
+    }
 
     public String getTopPlayersByLocation(String locationId) {
-        return webClient.get()
+        return limited(webClient.get()
                 .uri("locations/{locationId}/pathoflegend/players", locationId)
                 .retrieve()
-                .bodyToMono(String.class)
+                .bodyToMono(String.class))
                 .block();
     }
 
-    public CompletableFuture<JsonNode> getBattleLogAsync(String playerTag) {
-    return webClient.get()
-            .uri("players/{playerTag}/battlelog", playerTag)
-            .retrieve()
-            .bodyToMono(String.class)
-            .map(body -> {
-                try {
-                    return new ObjectMapper().readTree(body);
-                } catch (Exception e) {
-                    throw new RuntimeException("Erro parseando JSON do jogador " + playerTag, e);
-                }
-            })
-            .toFuture();
+    /** Tags dos top jogadores da região, sem bloquear ({@code items[].tag}). */
+    public Mono<List<String>> getTopPlayerTags(String locationId) {
+        return limited(webClient.get()
+                .uri("locations/{locationId}/pathoflegend/players", locationId)
+                .retrieve()
+                .bodyToMono(JsonNode.class))
+                .map(json -> {
+                    List<String> tags = new ArrayList<>();
+                    json.path("items").forEach(player -> tags.add(player.get("tag").asText()));
+                    return tags;
+                });
+    }
+
+    // Toda chamada passa pelo limitador compartilhado; 429 volta para a fila (após o Retry-After)
+    private <T> Mono<T> limited(Mono<T> call) {
+        return throttle.throttle(call).retryWhen(retryOn429());
+    }
+
+    private <T> Flux<T> limited(Flux<T> call) {
+        return throttle.throttle(call).retryWhen(retryOn429());
     }
 
+    private Retry retryOn429() {
+        return Retry.max(maxRetries)
+                .filter(WebClientResponseException.TooManyRequests.class::isInstance)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    private static List<BattleRecord> decode(BattleLogDecoder decoder, DataBuffer buffer) {
+        try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+            List<BattleRecord> battles = new ArrayList<>();
+            while (it.hasNext()) {
+                ByteBuffer chunk = it.next();
+                battles.addAll(decoder.feed(chunk));
+            }
+            return battles;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
 }
@@ -0,0 +1,10 @@
+package com.example.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Habilita tarefas @Scheduled (ex: atualização incremental da coleta global)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,5 +1,6 @@
 package com.example.demo.config;
 
+import com.example.demo.client.RequestThrottle;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,11 +14,18 @@ public class WebClientConfig {
     @Value("${royale.api.token}")
     private String apiToken;
 
+    // ex: http://localhost:8090/v1/ para a API falsa do teste de carga
+    @Value("${royale.api.base-url:https://proxy.royaleapi.dev/v1/}")
+    private String baseUrl;
+
+    // builder do Spring Boot: já vem com a observação http.client.requests (timer por URI e status)
     @Bean
-    public WebClient royaleWebClient() {
-    return WebClient.builder()
-            .baseUrl("https://proxy.royaleapi.dev/v1/")
+    public WebClient royaleWebClient(WebClient.Builder builder, RequestThrottle requestThrottle) {
+    return builder
+            .baseUrl(baseUrl)
             .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiToken)
+            // ✅ 429 / cota zerada alimentam o limitador compartilhado
+            .filter(requestThrottle.responseFilter())
             // ✅ aumenta o buffer de resposta para 5 MB
             .exchangeStrategies(ExchangeStrategies.builder()
                 .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(5 * 1024 * 1024))
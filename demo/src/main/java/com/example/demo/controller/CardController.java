@@ -1,11 +1,17 @@
 package com.example.demo.controller;
 
+import com.example.demo.client.CardCatalog;
 import com.example.demo.service.CardService;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.http.ResponseEntity;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/cards")
 public class CardController {
@@ -16,9 +22,42 @@ public class CardController {
         this.cardService = cardService;
     }
 
+    // 🔹 Corpo pré-serializado; If-None-Match com o ETag atual responde 304 sem corpo
     @GetMapping
-    public ResponseEntity<String> getCards() {
-        String cards = cardService.fetchAllCards();
-        return ResponseEntity.ok(cards);
+    public ResponseEntity<byte[]> getCards() {
+        CardCatalog.Cards cards = cardService.fetchAllCards();
+        return ResponseEntity.ok()
+                .eTag(cards.etag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(cards.json());
+    }
+
+    // 🔹 Partidas, vitórias e uso de uma carta na coleta global
+    @GetMapping("/{cardId}/stats")
+    public ResponseEntity<Map<String, Object>> getCardStats(@PathVariable int cardId) {
+        try {
+            return found(cardId, cardService.getCardStats(cardId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // 🔹 Cartas que mais rendem junto com esta (winrate do par acima da média das duas)
+    @GetMapping("/{cardId}/synergies")
+    public ResponseEntity<Map<String, Object>> getCardSynergies(@PathVariable int cardId,
+                                                                @RequestParam(defaultValue = "50") int minGames,
+                                                                @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return found(cardId, cardService.getCardSynergies(cardId, minGames, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private static ResponseEntity<Map<String, Object>> found(int cardId, Map<String, Object> body) {
+        if (body == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Carta " + cardId + " ainda não apareceu na coleta global."));
+        }
+        return ResponseEntity.ok(body);
     }
 }
@@ -1,13 +1,12 @@
 package com.example.demo.controller;
 
+import com.example.demo.aggregate.TimeWindow;
 import com.example.demo.service.GlobalRegionService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.File;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 @RestController
@@ -31,29 +30,99 @@ public class GlobalRegionController {
         }
     }
 
+    // 🔄 Atualização incremental (recoleta regiões antigas, só batalhas novas)
+    @GetMapping("/refresh")
+    public ResponseEntity<String> startRefresh() {
+        try {
+            globalRegionService.startRefresh();
+            return ResponseEntity.ok("🔄 Atualização global iniciada com sucesso!");
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("❌ Erro: " + e.getMessage());
+        }
+    }
+
     // 🔹 Consulta status da coleta
     @GetMapping("/status")
     public ResponseEntity<Map<String, Object>> getGlobalStatus() {
         return ResponseEntity.ok(globalRegionService.getStatus());
     }
-    @GetMapping("/data")
-    public ResponseEntity<?> getGlobalDecks() {
-        Map<String, Object> allData = globalRegionService.getAggregatedData();
 
-        // só envia os top 20 de cada categoria
-        List<Map<String, Object>> stable = ((List<Map<String, Object>>) allData.get("stable"))
-                .stream().limit(20).toList();
-        List<Map<String, Object>> trending = ((List<Map<String, Object>>) allData.get("trending"))
-                .stream().limit(20).toList();
+    // 🔹 Top decks de cada categoria (lidos do snapshot ranqueado da janela: 24h, 7d ou all)
+    @GetMapping("/data")
+    public ResponseEntity<byte[]> getGlobalDecks(@RequestParam(defaultValue = "20") int limit,
+                                                 @RequestParam(defaultValue = "all") String window) {
+        TimeWindow timeWindow;
+        try {
+            timeWindow = TimeWindow.parse(window);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(("❌ Erro: " + e.getMessage()).getBytes(StandardCharsets.UTF_8));
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(globalRegionService.getTopDecksJson(limit, timeWindow));
+    }
 
-        Map<String, Object> trimmed = Map.of(
-            "summary", allData.get("summary"),
-            "stable", stable,
-            "trending", trending
-        );
+    // 🔎 Busca de decks por cartas (com/sem), elixir médio e partidas mínimas
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> searchDecks(@RequestParam(required = false) String include,
+                                                           @RequestParam(required = false) String exclude,
+                                                           @RequestParam(defaultValue = "0") int minGames,
+                                                           @RequestParam(defaultValue = "0") double minElixir,
+                                                           @RequestParam(defaultValue = "Infinity") double maxElixir,
+                                                           @RequestParam(defaultValue = "wilson") String sort,
+                                                           @RequestParam(defaultValue = "0") int offset,
+                                                           @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(globalRegionService.searchDecks(include, exclude, minGames, minElixir, maxElixir,
+                    sort, offset, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-        return ResponseEntity.ok(trimmed);
+    // 🧬 Ranking de arquétipos (decks quase iguais somados)
+    @GetMapping("/archetypes")
+    public ResponseEntity<Map<String, Object>> getArchetypes(@RequestParam(defaultValue = "20") int limit,
+                                                             @RequestParam(defaultValue = "all") String window) {
+        try {
+            return ResponseEntity.ok(globalRegionService.getArchetypes(limit, TimeWindow.parse(window)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
+    // 🧬 Arquétipo de um deck e suas variantes mais jogadas
+    @GetMapping("/archetypes/{deck}")
+    public ResponseEntity<Map<String, Object>> getArchetype(@PathVariable String deck,
+                                                            @RequestParam(defaultValue = "20") int limit) {
+        Map<String, Object> archetype;
+        try {
+            archetype = globalRegionService.getArchetype(deck, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        if (archetype == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Deck ainda não apareceu na coleta global."));
+        }
+        return ResponseEntity.ok(archetype);
+    }
 
+    // ⚔️ Decks que mais ganham de um deck (confrontos da coleta global)
+    @GetMapping("/counters")
+    public ResponseEntity<Map<String, Object>> getDeckCounters(@RequestParam String deck,
+                                                               @RequestParam(defaultValue = "20") int minGames,
+                                                               @RequestParam(defaultValue = "20") int limit) {
+        Map<String, Object> counters;
+        try {
+            counters = globalRegionService.getDeckCounters(deck, minGames, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        if (counters == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Deck ainda sem confrontos na coleta global."));
+        }
+        return ResponseEntity.ok(counters);
+    }
 }
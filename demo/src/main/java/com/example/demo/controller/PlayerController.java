@@ -2,8 +2,11 @@ package com.example.demo.controller;
 
 import com.example.demo.service.PlayerService;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,4 +24,19 @@ public class PlayerController {
         Map<String, Object> stats = playerService.getPlayerStats(playerTag);
         return ResponseEntity.ok(stats);
     }
+
+    // 🔹 Vários jogadores de uma vez (ex: clã, página do ranking); corpo: ["#TAG1", "#TAG2", ...]
+    // Resposta em NDJSON: uma linha por jogador assim que o battlelog dele fica pronto
+    @PostMapping(value = "/battlelog:batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<Map<String, Object>>> getPlayerBattleStatsBatch(@RequestBody List<String> playerTags) {
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(playerService.getPlayerStatsBatch(playerTags));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(Flux.just(Map.of("error", e.getMessage())));
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.example.demo.controller;
 
+import com.example.demo.aggregate.TimeWindow;
 import com.example.demo.service.RegionService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,9 +18,24 @@ public class RegionController {
     }
 
     @GetMapping("/{locationId}/topdecks")
-    public ResponseEntity<Map<String, Object>> getTopDecks(@PathVariable String locationId) {
-        Map<String, Object> data = regionService.getTopDecksByRegion(locationId);
+    public ResponseEntity<Map<String, Object>> getTopDecks(@PathVariable String locationId,
+                                                           @RequestParam(defaultValue = "0") int offset,
+                                                           @RequestParam(defaultValue = "20") int limit,
+                                                           @RequestParam(defaultValue = "all") String window) {
+        TimeWindow timeWindow;
+        try {
+            timeWindow = TimeWindow.parse(window);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        Map<String, Object> data = regionService.getTopDecksByRegion(locationId, timeWindow, offset, limit);
         return ResponseEntity.ok(data);
     }
+
+    // 🔹 Contadores do cache de regiões (hits, misses, coalescidas, recálculos...)
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(regionService.getCacheStats());
+    }
     
 }
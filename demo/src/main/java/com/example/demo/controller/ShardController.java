@@ -0,0 +1,58 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.GlobalRegionService;
+import com.example.demo.service.ShardCoordinator;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/global/shards")
+public class ShardController {
+
+    private final GlobalRegionService globalRegionService;
+    private final ShardCoordinator shardCoordinator;
+
+    public ShardController(GlobalRegionService globalRegionService, ShardCoordinator shardCoordinator) {
+        this.globalRegionService = globalRegionService;
+        this.shardCoordinator = shardCoordinator;
+    }
+
+    // 🧩 Nó da coleta particionada: estado da partição dele, para o coordenador juntar
+    @GetMapping(value = "/snapshot", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getSnapshot() {
+        return ResponseEntity.ok(globalRegionService.exportShard());
+    }
+
+    // 🧩 Coordenador: junta um snapshot enviado por um nó
+    @PostMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> merge(@RequestBody byte[] snapshot) {
+        try {
+            return ResponseEntity.ok(shardCoordinator.merge(snapshot));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // 🧩 Coordenador: busca e junta os snapshots de todos os nós de royale.shard.workers
+    @PostMapping("/pull")
+    public ResponseEntity<Map<String, Object>> pull() {
+        try {
+            return ResponseEntity.ok(shardCoordinator.pull());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // 🧩 Coordenador: partições já juntadas
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> getShards() {
+        return ResponseEntity.ok(shardCoordinator.shards());
+    }
+}
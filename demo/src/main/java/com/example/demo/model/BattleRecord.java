@@ -0,0 +1,26 @@
+package com.example.demo.model;
+
+/**
+ * Batalha já reduzida aos campos usados pelos agregadores.
+ *
+ * @param battleId       impressão digital de 64 bits de (battleTime, tags dos dois jogadores) com o lado
+ *                       do dono do log no bit mais baixo: no battlelog do adversário a mesma batalha
+ *                       vem com {@code battleId ^ 1}; 0 quando o battlelog não traz esses campos
+ * @param battleTime     {@code battleTime} em epoch millis (0 quando ausente)
+ * @param gameModeId     {@code gameMode.id} (0 quando ausente)
+ * @param teamCrowns     coroas do lado "team"
+ * @param opponentCrowns coroas do lado "opponent"
+ * @param teamDeck       deck do lado "team"; null quando o modo não usa um deck de até 8 cartas
+ * @param opponentDeck   deck do lado "opponent", com a mesma regra
+ */
+public record BattleRecord(long battleId, long battleTime, int gameModeId, int teamCrowns, int opponentCrowns,
+                           DeckKey teamDeck, DeckKey opponentDeck) {
+
+    public boolean win() {
+        return teamCrowns > opponentCrowns;
+    }
+
+    public boolean opponentWin() {
+        return opponentCrowns > teamCrowns;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metadados de exibição de uma carta.
+ */
+public record CardInfo(int id, String name, int elixirCost, String iconUrl) {
+
+    /** Formato usado nas respostas da API ({@code name}, {@code elixirCost}, {@code iconUrl}). */
+    public Map<String, Object> toMap() {
+        Map<String, Object> cardInfo = new LinkedHashMap<>();
+        cardInfo.put("name", name);
+        cardInfo.put("elixirCost", elixirCost);
+        cardInfo.put("iconUrl", iconUrl);
+        return cardInfo;
+    }
+}
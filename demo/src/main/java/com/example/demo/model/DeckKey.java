@@ -0,0 +1,149 @@
+package com.example.demo.model;
+
+import java.util.Arrays;
+
+/**
+ * Identidade canônica de um deck, montada a partir dos IDs numéricos das cartas do battlelog.
+ *
+ * Cada carta vira um código de 16 bits (categoria + índice, ex: 26000021 -> 0x1015) e os
+ * até 8 códigos ficam ordenados e empacotados em dois longs. Assim hash/equals são O(1)
+ * e não alocamos nenhuma String/List por batalha; os nomes das cartas só são resolvidos
+ * quando a resposta é montada.
+ */
+public final class DeckKey implements Comparable<DeckKey> {
+
+    public static final int SLOTS = 8;
+
+    private static final int CATEGORY_SIZE = 1_000_000;
+    private static final int MIN_CATEGORY = 26;   // 26xxxxxx tropas, 27xxxxxx construções, 28xxxxxx feitiços
+    private static final int MAX_CATEGORY = 40;
+    private static final int INDEX_BITS = 12;
+
+    private final long hi; // slots 0-3
+    private final long lo; // slots 4-7
+
+    private DeckKey(long hi, long lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    /**
+     * Cria a chave a partir dos {@code count} primeiros IDs de {@code cardIds}.
+     * O array é ordenado no lugar, então o chamador pode reutilizá-lo entre batalhas.
+     */
+    public static DeckKey of(int[] cardIds, int count) {
+        if (count < 1 || count > SLOTS) {
+            throw new IllegalArgumentException("Deck precisa ter entre 1 e " + SLOTS + " cartas: " + count);
+        }
+        Arrays.sort(cardIds, 0, count);
+        long hi = 0, lo = 0;
+        for (int i = 0; i < count; i++) {
+            long code = encode(cardIds[i]);
+            if (i < 4) hi |= code << (48 - 16 * i);
+            else lo |= code << (48 - 16 * (i - 4));
+        }
+        return new DeckKey(hi, lo);
+    }
+
+    public static DeckKey of(int... cardIds) {
+        return of(cardIds.clone(), cardIds.length);
+    }
+
+    public static DeckKey fromBits(long hi, long lo) {
+        return new DeckKey(hi, lo);
+    }
+
+    /** Converte o ID da API (ex: 26000021) no código compacto de 16 bits. */
+    public static int encode(int cardId) {
+        int category = cardId / CATEGORY_SIZE;
+        int index = cardId % CATEGORY_SIZE;
+        if (category < MIN_CATEGORY || category > MAX_CATEGORY || index >= (1 << INDEX_BITS)) {
+            throw new IllegalArgumentException("ID de carta fora do intervalo suportado: " + cardId);
+        }
+        return ((category - MIN_CATEGORY + 1) << INDEX_BITS) | index;
+    }
+
+    public static int decode(int code) {
+        int category = (code >>> INDEX_BITS) + MIN_CATEGORY - 1;
+        return category * CATEGORY_SIZE + (code & ((1 << INDEX_BITS) - 1));
+    }
+
+    public long hi() {
+        return hi;
+    }
+
+    public long lo() {
+        return lo;
+    }
+
+    /** Código compacto do slot {@code i} (0 = slot vazio). */
+    public int code(int i) {
+        return code(hi, lo, i);
+    }
+
+    /** Igual a {@link #code(int)}, direto dos bits (ex: colunas {@code hi}/{@code lo} sem objeto por deck). */
+    public static int code(long hi, long lo, int i) {
+        long word = i < 4 ? hi : lo;
+        return (int) (word >>> (48 - 16 * (i & 3))) & 0xFFFF;
+    }
+
+    public int size() {
+        int n = 0;
+        while (n < SLOTS && code(n) != 0) n++;
+        return n;
+    }
+
+    /** IDs das cartas na ordem canônica (crescente). */
+    public int[] cardIds() {
+        int n = size();
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) ids[i] = decode(code(i));
+        return ids;
+    }
+
+    public boolean contains(int cardId) {
+        int code = encode(cardId);
+        for (int i = 0; i < SLOTS; i++) {
+            if (code(i) == code) return true;
+        }
+        return false;
+    }
+
+    /** Inverso de {@link #toString()}: 32 dígitos hexadecimais. */
+    public static DeckKey parse(String id) {
+        if (id == null || id.length() != 32) {
+            throw new IllegalArgumentException("ID de deck inválido: " + id);
+        }
+        try {
+            return new DeckKey(Long.parseUnsignedLong(id, 0, 16, 16), Long.parseUnsignedLong(id, 16, 32, 16));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("ID de deck inválido: " + id, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DeckKey other)) return false;
+        return hi == other.hi && lo == other.lo;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public int compareTo(DeckKey o) {
+        int c = Long.compareUnsigned(hi, o.hi);
+        return c != 0 ? c : Long.compareUnsigned(lo, o.lo);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", hi, lo);
+    }
+}
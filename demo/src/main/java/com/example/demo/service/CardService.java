@@ -1,18 +1,32 @@
 package com.example.demo.service;
 
-import com.example.demo.client.RoyaleApiClient;
+import com.example.demo.client.CardCatalog;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+
 @Service
 public class CardService {
 
-    private final RoyaleApiClient royaleApiClient;
+    private final CardCatalog cardCatalog;
+    private final GlobalRegionService globalRegionService;
+
+    public CardService(CardCatalog cardCatalog, GlobalRegionService globalRegionService) {
+        this.cardCatalog = cardCatalog;
+        this.globalRegionService = globalRegionService;
+    }
+
+    // Servido do catálogo em memória (atualizado em segundo plano), não da API a cada chamada
+    public CardCatalog.Cards fetchAllCards() {
+        return cardCatalog.get();
+    }
 
-    public CardService(RoyaleApiClient royaleApiClient) {
-        this.royaleApiClient = royaleApiClient;
+    // Estatísticas por carta vêm do índice de cartas da coleta global
+    public Map<String, Object> getCardStats(int cardId) {
+        return globalRegionService.getCardStats(cardId);
     }
 
-    public String fetchAllCards() {
-        return royaleApiClient.getCards();
+    public Map<String, Object> getCardSynergies(int cardId, int minGames, int limit) {
+        return globalRegionService.getCardSynergies(cardId, minGames, limit);
     }
 }
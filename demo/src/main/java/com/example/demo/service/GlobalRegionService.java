@@ -1,346 +1,909 @@
 package com.example.demo.service;
 
+import com.example.demo.aggregate.ArchetypeIndex;
+import com.example.demo.aggregate.BattleRows;
+import com.example.demo.aggregate.CardIndex;
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.DeckPartials;
+import com.example.demo.aggregate.DeckRanking;
+import com.example.demo.aggregate.DeckSearchIndex;
+import com.example.demo.aggregate.DeckStats;
+import com.example.demo.aggregate.MatchupTable;
+import com.example.demo.aggregate.SeenBattles;
+import com.example.demo.aggregate.TimeWindow;
+import com.example.demo.client.BattleLogCache;
+import com.example.demo.client.CardDictionary;
 import com.example.demo.client.RoyaleApiClient;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.demo.model.BattleRecord;
+import com.example.demo.model.CardInfo;
+import com.example.demo.model.DeckKey;
+import com.example.demo.store.CheckpointStore;
+import com.example.demo.store.RankedSnapshot;
+import com.example.demo.store.ShardSnapshot;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.*;
-import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
 
 @Service
 public class GlobalRegionService {
 
+    private static final Logger log = LoggerFactory.getLogger(GlobalRegionService.class);
+
     private final RoyaleApiClient royaleApiClient;
+    private final BattleLogCache battleLogs;
+    private final CardDictionary cardDictionary;
+    private final CheckpointStore checkpoint;
     private final ObjectMapper mapper = new ObjectMapper();
 
-    private final ExecutorService playerExecutor = Executors.newFixedThreadPool(100); // controla jogadores
+    private static final int FIRST_REGION = 57000007;
+    private static final int TOTAL_REGIONS = 57000260 - FIRST_REGION + 1;
+
+    private final int shard;   // partição deste nó na coleta particionada (royale.shard.index de royale.shard.count)
+    private final int shards;
+    private final int shardRegions;
+    private final int regionConcurrency;
+    private final int playerConcurrency;
 
     // Cache e progresso
-    private final Map<String, Integer> deckWins = new ConcurrentHashMap<>();
-    private final Map<String, Integer> deckGames = new ConcurrentHashMap<>();
-    private final Map<String, List<Map<String, Object>>> deckCards = new ConcurrentHashMap<>();
-    private final Set<Integer> processedRegions = ConcurrentHashMap.newKeySet();
+    private final DeckAggregate decks;
+    private final CardIndex cardIndex = new CardIndex(); // cartas e pares, somados a cada região
+    private final MatchupTable matchups;                  // deck contra deck; guardado por ele mesmo
+    private final ArchetypeIndex archetypes;              // decks quase iguais agrupados (MinHash/LSH)
+    private final DeckAggregate archetypeDecks = new DeckAggregate(); // contadores por representante
+    private final Map<Integer, Long> regionCrawledAt = new ConcurrentHashMap<>();  // locationId -> epoch millis
+    private final Map<String, Long> playerWatermarks = new ConcurrentHashMap<>(); // tag -> última battleTime ingerida
+    private final SeenBattles seenBattles = new SeenBattles();
+    private final BattleRows battleRows = new BattleRows(); // o que cada batalha somou; só com royale.shard.count > 1
+
+    // Busca de decks: índice montado sob demanda e refeito quando o agregado muda
+    private final AtomicLong decksVersion = new AtomicLong();
+    private volatile SearchIndex searchIndex;
+
+    // 📈 Métricas da coleta (Actuator: /actuator/metrics e /actuator/prometheus)
+    private final Counter countedBattles;
+    private final Counter duplicateBattles;
+    private final Counter olderBattles;
+    private final Counter ignoredBattles;
+    private final Timer regionTimer;
+    private final Timer reduceTimer;
+    private final Timer mergeTimer;
+    private final Timer appendTimer;
+    private final Timer compactTimer;
+    private final Timer searchBuildTimer;
+    private final Timer searchTimer;
+    private final DistributionSummary appendBytes;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger regionsInFlight = new AtomicInteger();
+
+    // Atualização incremental
+    private final Duration refreshAge;
+    private final Duration battleRetention; // batalhas mais antigas não são contadas nem lembradas
+    private volatile long battleHorizon = Long.MIN_VALUE;
+
+    // Rankings publicados para /data, um por janela (refeitos no máximo a cada snapshot.interval
+    // durante a coleta e sempre no fim dela)
+    private final Path snapshotPath;
+    private final Map<TimeWindow, RankedSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<TimeWindow, Timer> rankingTimers = new EnumMap<>(TimeWindow.class);
+    private final int snapshotEntries;
+    private final Duration snapshotInterval;
+    private volatile long snapshotBuiltAt;
 
     private volatile boolean running = false;
+    private volatile boolean refreshing = false;
     private volatile Instant startTime;
-
-    public GlobalRegionService(RoyaleApiClient royaleApiClient) {
+    private final AtomicInteger regionsThisRun = new AtomicInteger();
+
+    public GlobalRegionService(RoyaleApiClient royaleApiClient,
+                               BattleLogCache battleLogs,
+                               CardDictionary cardDictionary,
+                               CheckpointStore checkpoint,
+                               @Value("${royale.crawl.region-concurrency:4}") int regionConcurrency,
+                               @Value("${royale.crawl.player-concurrency:64}") int playerConcurrency,
+                               @Value("${royale.snapshot.path:globalSnapshot.bin}") String snapshotPath,
+                               @Value("${royale.snapshot.max-entries:500}") int snapshotEntries,
+                               @Value("${royale.snapshot.interval:1m}") Duration snapshotInterval,
+                               @Value("${royale.refresh.min-age:20h}") Duration refreshAge,
+                               @Value("${royale.crawl.battle-retention:14d}") Duration battleRetention,
+                               @Value("${royale.matchups.max-pairs:1000000}") int matchupPairs,
+                               @Value("${royale.archetypes.min-similarity:0.75}") double archetypeSimilarity,
+                               @Value("${royale.shard.index:0}") int shard,
+                               @Value("${royale.shard.count:1}") int shards,
+                               MeterRegistry meterRegistry) {
         this.royaleApiClient = royaleApiClient;
+        this.battleLogs = battleLogs;
+        this.cardDictionary = cardDictionary;
+        this.checkpoint = checkpoint;
+        this.decks = new DeckAggregate();
+        this.matchups = new MatchupTable(matchupPairs);
+        this.archetypes = new ArchetypeIndex(archetypeSimilarity);
+        if (shards < 1 || shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("Partição inválida: royale.shard.index=" + shard + ", royale.shard.count=" + shards);
+        }
+        this.shard = shard;
+        this.shards = shards;
+        this.shardRegions = (int) IntStream.range(FIRST_REGION, FIRST_REGION + TOTAL_REGIONS).filter(this::inShard).count();
+        this.regionConcurrency = regionConcurrency;
+        this.playerConcurrency = playerConcurrency;
+        this.snapshotPath = Path.of(snapshotPath);
+        this.snapshotEntries = snapshotEntries;
+        this.snapshotInterval = snapshotInterval;
+        this.refreshAge = refreshAge;
+        this.battleRetention = battleRetention;
+        this.meterRegistry = meterRegistry;
+
+        countedBattles = battles(meterRegistry, "counted");
+        duplicateBattles = battles(meterRegistry, "duplicate");
+        olderBattles = battles(meterRegistry, "older");
+        ignoredBattles = battles(meterRegistry, "ignored");
+        regionTimer = Timer.builder("royale.crawl.region")
+                .description("Coleta de uma região (ranking + battlelogs + redução)")
+                .register(meterRegistry);
+        reduceTimer = Timer.builder("royale.aggregate.reduce")
+                .description("Redução das tabelas por thread de uma região")
+                .register(meterRegistry);
+        mergeTimer = Timer.builder("royale.aggregate.merge")
+                .description("Merge do delta de uma região no agregado global")
+                .register(meterRegistry);
+        appendTimer = Timer.builder("royale.checkpoint.write").tag("op", "append").register(meterRegistry);
+        compactTimer = Timer.builder("royale.checkpoint.write").tag("op", "compact").register(meterRegistry);
+        searchBuildTimer = Timer.builder("royale.search.index.build")
+                .description("Montagem do índice de busca de decks (bitmaps por carta + colunas)")
+                .register(meterRegistry);
+        searchTimer = Timer.builder("royale.search.query")
+                .description("Filtros e ranking de uma busca de decks")
+                .register(meterRegistry);
+        for (TimeWindow window : TimeWindow.values()) {
+            rankingTimers.put(window, Timer.builder("royale.ranking.build")
+                    .description("Scores e categorias do ranking global de uma janela")
+                    .tag("window", window.label())
+                    .register(meterRegistry));
+        }
+        appendBytes = DistributionSummary.builder("royale.checkpoint.append.size")
+                .description("Bytes gravados no checkpoint por região")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("royale.crawl.running", this, service -> service.running ? 1 : 0).register(meterRegistry);
+        Gauge.builder("royale.crawl.regions.in.flight", regionsInFlight, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("royale.crawl.decks", decks, DeckAggregate::size).register(meterRegistry);
+        Gauge.builder("royale.crawl.games", decks, DeckAggregate::totalGames).register(meterRegistry);
+        Gauge.builder("royale.crawl.battles.unique", seenBattles, SeenBattles::size).register(meterRegistry);
+        Gauge.builder("royale.archetypes", archetypes, ArchetypeIndex::size)
+                .description("Arquétipos (grupos de decks quase iguais)")
+                .register(meterRegistry);
+        Gauge.builder("royale.matchups.pairs", matchups, MatchupTable::pairs)
+                .description("Pares de decks com confronto registrado")
+                .register(meterRegistry);
+        Gauge.builder("royale.matchups.dropped", matchups, MatchupTable::dropped)
+                .description("Partidas de pares novos descartadas com a tabela de confrontos cheia")
+                .register(meterRegistry);
+
+        for (TimeWindow window : TimeWindow.values()) {
+            RankedSnapshot mapped = RankedSnapshot.map(snapshotPath(window));
+            if (mapped != null) snapshots.put(window, mapped);
+        }
     }
 
+    // Reconstrói o estado reaplicando o log de checkpoint (snapshot compactado + deltas por região)
     private void loadProgress() {
         try {
-            File file = new File("globalCache.json");
-            if (file.exists()) {
-                JsonNode json = mapper.readTree(file);
-                json.get("processedRegions").forEach(r -> processedRegions.add(r.asInt()));
-
-                json.get("deckWins").fields().forEachRemaining(e ->
-                    deckWins.put(e.getKey(), e.getValue().asInt())
-                );
-                json.get("deckGames").fields().forEachRemaining(e ->
-                    deckGames.put(e.getKey(), e.getValue().asInt())
-                );
-
-                json.get("deckCards").fields().forEachRemaining(e -> {
-                    try {
-                        List<Map<String, Object>> cards =
-                            mapper.convertValue(e.getValue(), List.class);
-                        deckCards.put(e.getKey(), cards);
-                    } catch (Exception ignored) {}
-                });
-
-                System.out.println("📂 Cache carregado com sucesso (" + processedRegions.size() + " regiões)");
+            decks.clear();
+            cardIndex.clear();
+            synchronized (matchups) {
+                matchups.clear();
             }
-        } catch (Exception e) {
-            System.err.println("Erro ao carregar cache: " + e.getMessage());
-        }
-    }
+            regionCrawledAt.clear();
+            playerWatermarks.clear();
+            seenBattles.clear();
+            battleRows.clear();
+            decksVersion.incrementAndGet();
+            long loadedAt = System.currentTimeMillis();
+            checkpoint.open(new CheckpointStore.Listener() {
+                private long recordNewest = Long.MIN_VALUE; // battleTime mais recente do registro em leitura
+
+                @Override
+                public void card(CardInfo card) {
+                    cardDictionary.putIfAbsent(card);
+                }
 
+                @Override
+                public void region(int locationId) {
+                    regionCrawledAt.putIfAbsent(locationId, 0L);
+                }
 
-    // 🔹 Inicia ou reinicia a coleta global
-    public synchronized void startGlobalCollection() {
-        if (running) {
-            throw new RuntimeException("Já existe uma coleta em andamento!");
-        }
-        loadProgress();
-        running = true;
-        startTime = Instant.now();
+                @Override
+                public void deck(DeckKey key, int games, int wins) {
+                    decks.add(key, games, wins);
+                    cardIndex.add(key, games, wins);
+                }
 
-        CompletableFuture.runAsync(() -> {
-            try {
-                runGlobalCollection();
-            } finally {
-                running = false;
-            }
-        });
-    }
+                @Override
+                public void buckets(DeckKey key, long[] buckets) {
+                    decks.addBuckets(key, buckets);
+                }
 
-    private void runGlobalCollection() {
-        int regionCount = 0;
+                @Override
+                public void matchup(DeckKey deck, DeckKey opponent, int games, int wins, int losses) {
+                    synchronized (matchups) {
+                        matchups.add(deck, opponent, games, wins, losses);
+                    }
+                }
 
-        for (int locationId = 57000007; locationId <= 57000260; locationId++) {
-            if (processedRegions.contains(locationId)) continue;
+                // sem horário (gravado antes deles): vale a partir de agora, então só sai depois da retenção
+                @Override
+                public void battle(long battleId, long battleTime) {
+                    long time = battleTime > 0 ? battleTime : loadedAt;
+                    seenBattles.add(battleId, time);
+                    recordNewest = Math.max(recordNewest, time);
+                }
 
-            try {
-                processRegion(locationId);
-                processedRegions.add(locationId);
-                regionCount++;
+                @Override
+                public void battleRow(long battleId, long battleTime, DeckKey team, DeckKey opponent,
+                                      boolean win, boolean opponentWin) {
+                    if (shards > 1) battleRows.add(battleId, battleTime, team, opponent, win, opponentWin);
+                }
 
-                // ✅ salva a cada 10 regiões
-                if (regionCount % 10 == 0) saveProgress();
+                // registro sem linhas (não particionado ou anterior a elas): as batalhas dele ficam sem
+                // linha até saírem da retenção, e até lá o coordenador usa os contadores deste nó
+                @Override
+                public void rowsComplete(boolean complete) {
+                    if (!complete && recordNewest != Long.MIN_VALUE) battleRows.markMissing(recordNewest);
+                    recordNewest = Long.MIN_VALUE;
+                }
 
-                // ✅ aguarda um pouco entre regiões para não sobrecarregar a API
-                Thread.sleep(1500);
+                @Override
+                public void regionCrawled(int locationId, long crawledAt) {
+                    regionCrawledAt.put(locationId, crawledAt);
+                }
 
-            } catch (Exception e) {
-                if (e.getMessage() != null && e.getMessage().contains("429")) {
-                    System.err.println("⚠️ Limite atingido, aguardando 30 segundos...");
-                    try { Thread.sleep(30000); } catch (InterruptedException ignored) {}
-                } else {
-                    System.err.println("❌ Erro na região " + locationId + ": " + e.getMessage());
+                @Override
+                public void watermark(String playerTag, long battleTime) {
+                    playerWatermarks.merge(playerTag, battleTime, Math::max);
                 }
+            });
+            pruneBattles();
+            // depois do replay: agrupa do deck mais jogado para o menos jogado (melhores representantes)
+            archetypes.clear();
+            archetypeDecks.clear();
+            addToArchetypes(decks);
+            if (!regionCrawledAt.isEmpty()) {
+                log.info("📂 Cache carregado com sucesso ({} regiões)", regionCrawledAt.size());
             }
+        } catch (Exception e) {
+            log.error("Erro ao carregar cache: {}", e.getMessage(), e);
         }
+    }
 
-        saveProgress();
-        System.out.println("✅ Coleta global concluída!");
+    // 🔹 Inicia ou reinicia a coleta global (só regiões ainda não coletadas)
+    public synchronized void startGlobalCollection() {
+        start(false);
     }
 
+    // 🔄 Atualização incremental: recoleta regiões mais antigas que refresh.min-age,
+    // ingerindo só batalhas posteriores à última já vista de cada jogador
+    public synchronized void startRefresh() {
+        start(true);
+    }
 
-    private void saveProgress() {
+    @Scheduled(cron = "${royale.refresh.cron:-}")
+    public void scheduledRefresh() {
         try {
-            Map<String, Object> snapshot = Map.of(
-                "processedRegions", processedRegions,
-                "deckWins", deckWins,
-                "deckGames", deckGames,
-                "deckCards", deckCards
-            );
-            mapper.writeValue(new File("globalCache.json"), snapshot);
-            System.out.println("💾 Progresso salvo.");
-        } catch (Exception e) {
-            System.err.println("Erro ao salvar cache: " + e.getMessage());
+            startRefresh();
+        } catch (RuntimeException e) {
+            log.warn("⏰ Atualização agendada ignorada: {}", e.getMessage());
+        }
+    }
+
+    private void start(boolean refresh) {
+        if (running) {
+            throw new RuntimeException("Já existe uma coleta em andamento!");
         }
+        loadProgress();
+        running = true;
+        refreshing = refresh;
+        startTime = Instant.now();
+        regionsThisRun.set(0);
+
+        long cutoff = System.currentTimeMillis() - refreshAge.toMillis();
+        IntPredicate due = refresh
+                ? locationId -> regionCrawledAt.getOrDefault(locationId, 0L) <= cutoff
+                : locationId -> !regionCrawledAt.containsKey(locationId);
+
+        crawlRegions(due)
+                .doFinally(signal -> running = false)
+                .subscribe(
+                        v -> { },
+                        e -> log.error("❌ Coleta global interrompida: {}", e.getMessage(), e),
+                        () -> log.info(refresh ? "✅ Atualização global concluída!" : "✅ Coleta global concluída!"));
     }
 
+    /**
+     * Pipeline da coleta: regiões -> top jogadores -> battlelogs -> batalhas -> agregado.
+     * As duas etapas de fan-out usam flatMap com concorrência limitada (backpressure), e o
+     * ritmo real das chamadas é definido pelo RequestThrottle do cliente; nenhuma thread
+     * fica bloqueada esperando resposta.
+     */
+    private Mono<Void> crawlRegions(IntPredicate due) {
+        return Flux.range(FIRST_REGION, TOTAL_REGIONS)
+                .filter(this::inShard)
+                .filter(due::test)
+                .flatMap(this::processRegion, regionConcurrency)
+                // commits serializados: merge no agregado global + append do delta no checkpoint
+                .concatMap(region -> Mono.fromRunnable(() -> commitRegion(region))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .then(Mono.fromRunnable(() -> {
+                    compactCheckpoint();
+                    rebuildSnapshot();
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .then();
+    }
 
+    private boolean inShard(int locationId) {
+        return ShardSnapshot.shardOf(locationId, shards) == shard;
+    }
 
-    // 🔹 Processa uma única região
-    private void processRegion(int locationId) {
+    private void commitRegion(RegionResult region) {
+        long crawledAt = System.currentTimeMillis();
+        mergeTimer.record(() -> {
+            decks.merge(region.decks());
+            cardIndex.addAll(region.decks());
+            synchronized (matchups) {
+                matchups.addAll(region.matchups());
+            }
+            addToArchetypes(region.decks());
+            battleRows.addAll(region.rows());
+        });
+        decksVersion.incrementAndGet();
+        region.watermarks().forEach((tag, battleTime) -> playerWatermarks.merge(tag, battleTime, Math::max));
+        regionCrawledAt.put(region.locationId(), crawledAt);
+        regionsThisRun.incrementAndGet();
         try {
-            String response = royaleApiClient.getTopPlayersByLocation(String.valueOf(locationId));
-            JsonNode playersNode = mapper.readTree(response).get("items");
+            long written = appendTimer.record(() -> checkpoint.appendRegion(region.locationId(), cardDictionary.cards(),
+                    region.decks(), region.matchups(), shards > 1 ? region.rows() : null, region.battles(), crawledAt,
+                    region.watermarks()));
+            appendBytes.record(written);
+            if (checkpoint.needsCompaction()) compactCheckpoint();
+        } catch (Exception e) {
+            log.error("Erro ao salvar cache: {}", e.getMessage(), e);
+        }
+        // re-ranquear tudo a cada região custaria O(regiões × decks) na coleta: no máximo um por intervalo
+        if (System.currentTimeMillis() - snapshotBuiltAt >= snapshotInterval.toMillis()) rebuildSnapshot();
+    }
 
-            if (playersNode == null || !playersNode.isArray() || playersNode.isEmpty()) {
-                System.out.println("📭 Região " + locationId + " sem jogadores.");
-                return;
+    private void compactCheckpoint() {
+        try {
+            pruneBattles();
+            long size;
+            synchronized (matchups) {
+                size = compactTimer.record(() -> checkpoint.compact(cardDictionary.cards(), regionCrawledAt, decks,
+                        matchups, shards > 1 ? battleRows : null, seenBattles, playerWatermarks));
             }
+            log.info("💾 Progresso compactado ({} KB).", size / 1024);
+        } catch (Exception e) {
+            log.error("Erro ao compactar cache: {}", e.getMessage(), e);
+        }
+    }
 
-            System.out.println("🌍 Processando região " + locationId + " (" + playersNode.size() + " jogadores)");
+    // ✂️ Esquece IDs, linhas e watermarks anteriores ao horizonte (agora - royale.crawl.battle-retention), para a
+    // compactação não regravar para sempre toda batalha já vista. Uma batalha assim que reaparecer é
+    // descartada como antiga (filtro da coleta e SeenBattles), então não volta a ser contada.
+    private void pruneBattles() {
+        long horizon = System.currentTimeMillis() - battleRetention.toMillis();
+        battleHorizon = horizon;
+        int pruned = seenBattles.prune(horizon);
+        battleRows.prune(horizon);
+        int players = playerWatermarks.size();
+        playerWatermarks.values().removeIf(battleTime -> battleTime < horizon);
+        if (pruned > 0 || players > playerWatermarks.size()) {
+            log.info("✂️ {} batalhas e {} watermarks anteriores a {} esquecidos", pruned,
+                    players - playerWatermarks.size(), Instant.ofEpochMilli(horizon));
+        }
+    }
 
-            ExecutorService playerExecutor = Executors.newFixedThreadPool(20);
-            List<CompletableFuture<Void>> tasks = new ArrayList<>();
+    // Atribui os decks (novos) a arquétipos e soma os contadores no representante
+    private void addToArchetypes(DeckAggregate delta) {
+        archetypes.addAll(delta);
+        for (DeckStats deck : delta.decks()) {
+            DeckKey archetype = archetypes.representative(archetypes.archetypeOf(deck.key()));
+            archetypeDecks.add(archetype, deck.games(), deck.wins());
+            archetypeDecks.addBuckets(archetype, deck.buckets(Integer.MIN_VALUE));
+        }
+    }
 
-            for (JsonNode player : playersNode) {
-                String tag = player.get("tag").asText();
+    private record SearchIndex(long version, DeckSearchIndex index) {
+    }
 
-                CompletableFuture<Void> task = CompletableFuture.runAsync(() -> {
-                    try {
-                        JsonNode battles = royaleApiClient.getBattleLog(tag);
-                        handlePlayerBattles(battles);
-                        Thread.sleep(100); // leve pausa entre jogadores (~10/s)
-                    } catch (WebClientResponseException.TooManyRequests e) {
-                        System.err.println("429 em jogador " + tag + " (região " + locationId + ")");
-                        try { Thread.sleep(30000); } catch (InterruptedException ignored) {}
-                    } catch (Exception e) {
-                        System.err.println("Erro jogador " + tag + ": " + e.getMessage());
+    private record RegionResult(int locationId, DeckAggregate decks, MatchupTable matchups, SeenBattles battles,
+                                BattleRows rows, Map<String, Long> watermarks) {
+    }
+
+    // 🔹 Processa uma única região; emite o delta dela quando todos os jogadores terminam
+    private Mono<RegionResult> processRegion(int locationId) {
+        // cada jogador em processamento soma numa parcial; a redução acontece uma vez, quando a região termina
+        DeckPartials regionDecks = new DeckPartials();
+        SeenBattles regionBattles = new SeenBattles();
+        BattleRows regionRows = new BattleRows();
+        Map<String, Long> regionWatermarks = new ConcurrentHashMap<>();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        regionsInFlight.incrementAndGet();
+        return royaleApiClient.getTopPlayerTags(String.valueOf(locationId))
+                // IDs sem ranking de região respondem 404: contam como região vazia
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.just(List.of()))
+                .flatMapMany(tags -> {
+                    if (tags.isEmpty()) {
+                        log.debug("📭 Região {} sem jogadores.", locationId);
+                    } else {
+                        log.info("🌍 Processando região {} ({} jogadores)", locationId, tags.size());
                     }
-                }, playerExecutor);
+                    return Flux.fromIterable(tags);
+                })
+                // jogadores presentes em mais de um ranking reaproveitam o log em cache
+                .flatMap(tag -> {
+                    long watermark = Math.max(playerWatermarks.getOrDefault(tag, 0L), battleHorizon);
+                    return battleLogs.get(tag)
+                            .doOnNext(battles -> {
+                                // o log inteiro do jogador entra na mesma parcial
+                                try (DeckPartials.Slot slot = regionDecks.acquire()) {
+                                    for (BattleRecord battle : battles) {
+                                        // ⏩ só o que é posterior à última batalha já ingerida deste jogador (e ao horizonte)
+                                        if (battle.battleTime() <= watermark) {
+                                            olderBattles.increment();
+                                            continue;
+                                        }
+                                        regionWatermarks.merge(tag, battle.battleTime(), Math::max);
+                                        handleBattle(slot, regionBattles, regionRows, battle);
+                                    }
+                                }
+                            })
+                            .then()
+                            .onErrorResume(e -> {
+                                log.warn("Erro jogador {} (região {}): {}", tag, locationId, e.getMessage());
+                                return Mono.empty();
+                            });
+                }, playerConcurrency)
+                // a redução usa o ForkJoinPool e espera por ele: fora da thread do Netty que completou o Flux
+                .then(Mono.fromSupplier(() -> new RegionResult(locationId, reduceTimer.record(regionDecks::reduce),
+                        regionDecks.reduceMatchups(), regionBattles, regionRows, regionWatermarks))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .doOnNext(region -> log.info("✅ Região {} concluída!", locationId))
+                .onErrorResume(e -> {
+                    // região não é marcada como coletada e é refeita na próxima coleta; as batalhas que
+                    // ela marcou como vistas são esquecidas, senão as outras regiões as descartariam
+                    // como repetidas e elas não seriam contadas por ninguém
+                    log.error("Erro processando região {}: {}", locationId, e.getMessage());
+                    for (long battleId : regionBattles.toArray()) seenBattles.remove(battleId);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    regionsInFlight.decrementAndGet();
+                    sample.stop(regionTimer);
+                });
+    }
 
-                tasks.add(task);
-            }
 
-            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
-            playerExecutor.shutdown();
+    // 🔹 Processa uma batalha de um jogador
+    private void handleBattle(DeckPartials.Slot target, SeenBattles regionBattles, BattleRows regionRows, BattleRecord battle) {
+        // 🎯 Filtra apenas modos competitivos válidos (Ladder e Ranked1v1)
+        int modeId = battle.gameModeId();
+        if (modeId != 72000006 && modeId != 72000464) {
+            ignoredBattles.increment();
+            return; // ignora outros modos (ex: desafios, torneios, amistosos)
+        }
 
-            System.out.println("✅ Região " + locationId + " concluída!");
+        // 🔁 O ID é por lado: o jogador visto em vários rankings conta a batalha uma vez só, e entre
+        // dois top jogadores cada um conta o seu deck
+        SeenBattles.Sighting sighting = seenBattles.addSide(battle.battleId(), battle.battleTime());
+        if (sighting == SeenBattles.Sighting.SEEN) {
+            duplicateBattles.increment();
+            return;
+        }
+        regionBattles.add(battle.battleId(), battle.battleTime());
+        countedBattles.increment();
+        // 🧩 coleta particionada: guarda a batalha para o coordenador não contá-la duas vezes
+        if (shards > 1) {
+            regionRows.add(battle.battleId(), battle.battleTime(), battle.teamDeck(), battle.opponentDeck(),
+                    battle.win(), battle.opponentWin());
+        }
 
-        } catch (Exception e) {
-            System.err.println("Erro processando região " + locationId + ": " + e.getMessage());
+        // 🔑 Deck do jogador dono do log (IDs das cartas), no balde da hora da batalha
+        if (battle.teamDeck() != null) target.record(battle.teamDeck(), battle.win(), battle.battleTime());
+
+        // ⚔️ Confronto dos dois decks: um por batalha, no primeiro lado visto
+        if (sighting == SeenBattles.Sighting.BATTLE && battle.teamDeck() != null && battle.opponentDeck() != null) {
+            target.recordMatchup(battle.teamDeck(), battle.opponentDeck(), battle.win(), battle.opponentWin());
         }
     }
 
 
-    // 🔹 Processa todas as batalhas de um jogador
-    private void handlePlayerBattles(JsonNode battles) {
-        for (JsonNode battle : battles) {
-            if (!battle.has("team") || !battle.has("opponent") || !battle.has("gameMode")) continue;
-
-            // 🎯 Filtra apenas modos competitivos válidos (Ladder e Ranked1v1)
-            int modeId = battle.get("gameMode").get("id").asInt();
-            if (modeId != 72000006 && modeId != 72000464) {
-                continue; // ignora outros modos (ex: desafios, torneios, amistosos)
-            }
+    // 🔹 Retorna status atual (para /status)
+    public Map<String, Object> getStatus() {
+        int totalRegions = shardRegions;
+        int processed = regionCrawledAt.size();
+        double progress = (processed / (double) totalRegions) * 100.0;
 
-            JsonNode team = battle.get("team").get(0);
-            JsonNode opponent = battle.get("opponent").get(0);
+        long totalGames = decks.totalGames();
+        long totalWins = decks.totalWins();
 
-            int crownsTeam = team.get("crowns").asInt();
-            int crownsOpponent = opponent.get("crowns").asInt();
-            boolean win = crownsTeam > crownsOpponent;
+        Duration elapsed = startTime != null ? Duration.between(startTime, Instant.now()) : Duration.ZERO;
 
-            List<Map<String, Object>> cards = new ArrayList<>();
-            List<String> cardNames = new ArrayList<>();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running);
+        status.put("progressPercent", progress);
+        status.put("regionsProcessed", processed);
+        status.put("totalRegions", totalRegions);
+        status.put("totalGames", totalGames);
+        status.put("totalWins", totalWins);
+        status.put("uniqueBattles", seenBattles.size());
+        status.put("duplicateBattles", (long) duplicateBattles.count());
+        status.put("olderBattles", (long) olderBattles.count());
+        status.put("mode", refreshing ? "refresh" : "full");
+        status.put("regionsThisRun", regionsThisRun.get());
+        status.put("elapsedSeconds", elapsed.toSeconds());
+        if (shards > 1) {
+            status.put("shard", shard);
+            status.put("shards", shards);
+        }
+        return status;
+    }
 
-            for (JsonNode card : team.get("cards")) {
-                Map<String, Object> cardInfo = new LinkedHashMap<>();
-                cardInfo.put("name", card.get("name").asText());
-                cardInfo.put("elixirCost", card.has("elixirCost") ? card.get("elixirCost").asInt() : 0);
-                cardInfo.put("iconUrl", card.get("iconUrls").get("medium").asText());
-                cards.add(cardInfo);
-                cardNames.add(card.get("name").asText());
-            }
+    public boolean isRunning() {
+        return running;
+    }
 
-            // 🔑 Cria identificador único do deck
-            Collections.sort(cardNames);
-            String deckKey = String.join(",", cardNames);
+    /** Estado desta partição já gravado no checkpoint, para o coordenador juntar ({@link ShardSnapshot}). */
+    public byte[] exportShard() {
+        return checkpoint.exportShard(shard, shards);
+    }
 
-            synchronized (deckGames) {
-                deckCards.putIfAbsent(deckKey, cards);
-                deckGames.put(deckKey, deckGames.getOrDefault(deckKey, 0) + 1);
-                if (win) deckWins.put(deckKey, deckWins.getOrDefault(deckKey, 0) + 1);
-            }
+    /**
+     * Troca o estado inteiro: {@code writeCheckpoint} regrava o checkpoint (ex: merge das partições
+     * no coordenador) e tudo é recarregado dele. Recusado durante uma coleta neste nó.
+     */
+    public synchronized void replaceState(Runnable writeCheckpoint) {
+        if (running) {
+            throw new IllegalStateException("Já existe uma coleta em andamento!");
         }
+        writeCheckpoint.run();
+        loadProgress();
+        rebuildSnapshot();
     }
 
+    /** Partidas, vitórias e uso de uma carta (todo o período); {@code null} se ela nunca apareceu. */
+    public Map<String, Object> getCardStats(int cardId) {
+        ensureLoaded();
+        if (!cardIndex.contains(cardId)) return null;
+        long games = cardIndex.games(cardId);
+        long wins = cardIndex.wins(cardId);
+        long total = cardIndex.totalGames();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("card", cardDictionary.renderCard(cardId));
+        stats.put("games", games);
+        stats.put("wins", wins);
+        stats.put("winrate", games > 0 ? wins * 100.0 / games : 0.0);
+        stats.put("usageRate", total > 0 ? games * 100.0 / total : 0.0); // % das partidas de deck com a carta
+        stats.put("totalGames", total);
+        return stats;
+    }
 
-    // 🔹 Retorna status atual (para /status)
-    public Map<String, Object> getStatus() {
-        int totalRegions = 57000260 - 57000007 + 1;
-        int processed = processedRegions.size();
-        double progress = (processed / (double) totalRegions) * 100.0;
+    /** Melhores parceiros de uma carta (ver {@link CardIndex#synergies}); {@code null} se ela nunca apareceu. */
+    public Map<String, Object> getCardSynergies(int cardId, int minGames, int limit) {
+        ensureLoaded();
+        if (!cardIndex.contains(cardId)) return null;
+        long games = cardIndex.games(cardId);
+
+        List<Map<String, Object>> partners = new ArrayList<>();
+        for (CardIndex.Pair pair : cardIndex.synergies(cardId, minGames, limit)) {
+            Map<String, Object> partner = new LinkedHashMap<>();
+            partner.put("card", cardDictionary.renderCard(pair.cardId()));
+            partner.put("games", pair.games());
+            partner.put("wins", pair.wins());
+            partner.put("winrate", pair.wins() * 100.0 / pair.games());
+            partner.put("coOccurrence", pair.games() * 100.0 / games); // % das partidas da carta com o parceiro
+            partner.put("synergy", pair.synergy());
+            partners.add(partner);
+        }
 
-        int totalGames = deckGames.values().stream().mapToInt(Integer::intValue).sum();
-        int totalWins = deckWins.values().stream().mapToInt(Integer::intValue).sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("card", cardDictionary.renderCard(cardId));
+        result.put("games", games);
+        result.put("minGames", minGames);
+        result.put("synergies", partners);
+        return result;
+    }
 
-        Duration elapsed = startTime != null ? Duration.between(startTime, Instant.now()) : Duration.ZERO;
+    /**
+     * Melhores respostas a um deck (ver {@link MatchupTable#counters}); {@code deck} é o ID do deck
+     * (32 hex, campo {@code id} do /data) ou os IDs das cartas separados por vírgula.
+     */
+    public Map<String, Object> getDeckCounters(String deck, int minGames, int limit) {
+        DeckKey key = parseDeck(deck);
+        ensureLoaded();
+        List<MatchupTable.Matchup> all;
+        List<MatchupTable.Matchup> counters;
+        synchronized (matchups) {
+            all = matchups.matchups(key, 1);
+            counters = matchups.counters(key, minGames, limit);
+        }
+        if (all.isEmpty()) return null;
+        long games = 0;
+        for (MatchupTable.Matchup matchup : all) games += matchup.games();
+
+        List<Map<String, Object>> entries = new ArrayList<>(counters.size());
+        for (MatchupTable.Matchup matchup : counters) {
+            // visto do lado do counter: as derrotas do deck pedido são as vitórias dele
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", matchup.opponent().toString());
+            entry.put("cards", cardDictionary.render(matchup.opponent()));
+            entry.put("games", matchup.games());
+            entry.put("wins", matchup.losses());
+            entry.put("losses", matchup.wins());
+            entry.put("winrate", matchup.losses() * 100.0 / matchup.games());
+            entry.put("wilsonLB", DeckRanking.wilsonLowerBound(matchup.losses(), matchup.games(), DeckRanking.Z95) * 100.0);
+            entries.add(entry);
+        }
 
-        return Map.of(
-                "running", running,
-                "progressPercent", progress,
-                "regionsProcessed", processed,
-                "totalRegions", totalRegions,
-                "totalGames", totalGames,
-                "totalWins", totalWins,
-                "elapsedSeconds", elapsed.toSeconds()
-        );
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", key.toString());
+        result.put("cards", cardDictionary.render(key));
+        result.put("games", games);
+        result.put("opponents", all.size());
+        result.put("minGames", minGames);
+        result.put("counters", entries);
+        return result;
     }
 
-    public Map<String, Object> getAggregatedData() {
+    private static DeckKey parseDeck(String deck) {
+        if (deck == null || !deck.contains(",")) return DeckKey.parse(deck);
+        String[] parts = deck.split(",");
+        int[] cardIds = new int[parts.length];
         try {
-            File file = new File("globalCache.json");
-            if (!file.exists()) {
-                throw new RuntimeException("Cache global não encontrado. Execute a coleta primeiro.");
+            for (int i = 0; i < parts.length; i++) cardIds[i] = Integer.parseInt(parts[i].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("ID de carta inválido em: " + deck, e);
+        }
+        return DeckKey.of(cardIds, cardIds.length);
+    }
+
+    /**
+     * Busca de decks por cartas ({@code include}/{@code exclude}: IDs ou nomes separados por vírgula),
+     * elixir médio e partidas mínimas, na ordem de {@code sort} (ver {@link DeckSearchIndex}).
+     */
+    public Map<String, Object> searchDecks(String include, String exclude, int minGames, double minElixir,
+                                           double maxElixir, String sort, int offset, int limit) {
+        DeckSearchIndex.Query query = new DeckSearchIndex.Query(resolveCards(include), resolveCards(exclude),
+                minGames, minElixir, maxElixir, DeckSearchIndex.Sort.parse(sort));
+        ensureLoaded();
+        DeckSearchIndex index = searchIndex();
+        long started = System.nanoTime();
+        DeckSearchIndex.Result result = index.search(query, offset, limit);
+        long took = System.nanoTime() - started;
+        searchTimer.record(Duration.ofNanos(took));
+
+        List<Map<String, Object>> entries = new ArrayList<>(result.ordinals().length);
+        for (int ordinal : result.ordinals()) {
+            DeckKey key = index.key(ordinal);
+            int games = index.games(ordinal);
+            int wins = index.wins(ordinal);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", key.toString());
+            entry.put("cards", cardDictionary.render(key));
+            entry.put("games", games);
+            entry.put("wins", wins);
+            entry.put("winrate", wins * 100.0 / games);
+            entry.put("wilsonLB", index.wilson(ordinal) * 100.0);
+            double elixir = index.averageElixir(ordinal);
+            entry.put("averageElixir", Double.isNaN(elixir) ? null : elixir);
+            entries.add(entry);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("total", result.total());
+        response.put("indexedDecks", index.size());
+        response.put("tookMicros", took / 1_000);
+        response.put("decks", entries);
+        return response;
+    }
+
+    private int[] resolveCards(String cards) {
+        if (cards == null || cards.isBlank()) return new int[0];
+        String[] parts = cards.split(",");
+        int[] ids = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i].trim();
+            if (!part.isEmpty() && part.chars().allMatch(Character::isDigit)) {
+                ids[i] = Integer.parseInt(part);
+                DeckKey.encode(ids[i]); // valida o intervalo
+                continue;
+            }
+            CardInfo card = cardDictionary.findByName(part);
+            if (card == null) throw new IllegalArgumentException("Carta desconhecida: " + part);
+            ids[i] = card.id();
+        }
+        return ids;
+    }
+
+    private DeckSearchIndex searchIndex() {
+        long version = decksVersion.get();
+        SearchIndex current = searchIndex;
+        if (current != null && current.version() == version) return current.index();
+        synchronized (decksVersion) {
+            version = decksVersion.get();
+            current = searchIndex;
+            if (current == null || current.version() != version) {
+                // versão lida antes de montar: um merge no meio deixa o índice velho e a próxima busca refaz
+                current = new SearchIndex(version, searchBuildTimer.record(() -> DeckSearchIndex.of(decks, cardId -> {
+                    CardInfo card = cardDictionary.get(cardId);
+                    return card != null ? card.elixirCost() : -1;
+                })));
+                searchIndex = current;
             }
+            return current.index();
+        }
+    }
 
-            JsonNode json = mapper.readTree(file);
+    /**
+     * Ranking de arquétipos (mesmas regras do /data, com as partidas de todas as variantes somadas no
+     * representante); cada entrada traz também quantas variantes o arquétipo tem.
+     */
+    public Map<String, Object> getArchetypes(int limit, TimeWindow window) {
+        ensureLoaded();
+        DeckRanking ranking = DeckRanking.of(archetypeDecks, window, System.currentTimeMillis(), cardDictionary::render);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("window", window.label());
+        summary.put("globalMeanWinrate", ranking.globalMean() * 100.0);
+        summary.put("totalGames", ranking.totalGames());
+        summary.put("archetypes", archetypes.size());
+        summary.put("decks", archetypes.decks());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("summary", summary);
+        result.put("stable", withVariants(ranking.stable(0, limit)));
+        result.put("trending", withVariants(ranking.trending(0, limit)));
+        return result;
+    }
 
-            Map<String, Integer> deckWins = new HashMap<>();
-            Map<String, Integer> deckGames = new HashMap<>();
-            Map<String, List<Map<String, Object>>> deckCards = new HashMap<>();
+    private List<Map<String, Object>> withVariants(List<Map<String, Object>> entries) {
+        for (Map<String, Object> entry : entries) {
+            int archetype = archetypes.archetypeOf(DeckKey.parse((String) entry.get("id")));
+            entry.put("variants", archetypes.variants(archetype));
+        }
+        return entries;
+    }
 
-            json.get("deckWins").fields().forEachRemaining(e ->
-                deckWins.put(e.getKey(), e.getValue().asInt())
-            );
+    /** Arquétipo de um deck: totais somados e as variantes mais jogadas; {@code null} se o deck nunca apareceu. */
+    public Map<String, Object> getArchetype(String deck, int limit) {
+        DeckKey key = parseDeck(deck);
+        ensureLoaded();
+        int archetype = archetypes.archetypeOf(key);
+        if (archetype < 0) return null;
+        DeckKey representative = archetypes.representative(archetype);
+        DeckStats total = archetypeDecks.get(representative);
+
+        List<DeckStats> members = new ArrayList<>();
+        for (DeckKey member : archetypes.members(archetype)) {
+            DeckStats stats = decks.get(member);
+            if (stats != null) members.add(stats);
+        }
+        members.sort(Comparator.comparingInt(DeckStats::games).reversed());
+        List<Map<String, Object>> variants = new ArrayList<>();
+        for (DeckStats member : members.subList(0, Math.min(Math.max(limit, 0), members.size()))) {
+            Map<String, Object> variant = new LinkedHashMap<>();
+            variant.put("id", member.key().toString());
+            variant.put("cards", cardDictionary.render(member.key()));
+            variant.put("games", member.games());
+            variant.put("wins", member.wins());
+            variant.put("winrate", member.games() > 0 ? member.wins() * 100.0 / member.games() : 0.0);
+            variant.put("similarity", ArchetypeIndex.similarity(member.key(), representative));
+            variants.add(variant);
+        }
 
-            json.get("deckGames").fields().forEachRemaining(e ->
-                deckGames.put(e.getKey(), e.getValue().asInt())
-            );
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", representative.toString());
+        result.put("cards", cardDictionary.render(representative));
+        int games = total != null ? total.games() : 0;
+        int wins = total != null ? total.wins() : 0;
+        result.put("games", games);
+        result.put("wins", wins);
+        result.put("winrate", games > 0 ? wins * 100.0 / games : 0.0);
+        result.put("wilsonLB", DeckRanking.wilsonLowerBound(wins, games, DeckRanking.Z95) * 100.0);
+        result.put("variantCount", members.size());
+        result.put("variants", variants);
+        return result;
+    }
 
-            json.get("deckCards").fields().forEachRemaining(e -> {
-                try {
-                    List<Map<String, Object>> cards =
-                        mapper.convertValue(e.getValue(), List.class);
-                    deckCards.put(e.getKey(), cards);
-                } catch (Exception ignored) {}
-            });
+    // Sem coleta neste processo: carrega o índice a partir do checkpoint uma vez
+    private synchronized void ensureLoaded() {
+        if (cardIndex.size() == 0 && !running && checkpoint.exists()) loadProgress();
+    }
 
-            // 📊 Recalcula estatísticas agregadas
-            int totalWins = deckWins.values().stream().mapToInt(Integer::intValue).sum();
-            int totalGames = deckGames.values().stream().mapToInt(Integer::intValue).sum();
-            double p0 = totalGames > 0 ? totalWins / (double) totalGames : 0.5;
-
-            int MIN_TRENDING = 50;
-            int MIN_STABLE = 200;
-            double Z95 = 1.96;
-            int W_PRIOR = 200;
-
-            List<Map<String, Object>> stable = new ArrayList<>();
-            List<Map<String, Object>> trending = new ArrayList<>();
-
-            for (String deckKey : deckGames.keySet()) {
-                int games = deckGames.get(deckKey);
-                int wins = deckWins.getOrDefault(deckKey, 0);
-                double winrate = games > 0 ? (wins * 100.0) / games : 0.0;
-                double wilsonLB = wilsonLowerBound(wins, games, Z95) * 100.0;
-                double eb = empiricalBayesRate(wins, games, p0, W_PRIOR) * 100.0;
-
-                Map<String, Object> deckData = new LinkedHashMap<>();
-                deckData.put("cards", deckCards.get(deckKey));
-                deckData.put("games", games);
-                deckData.put("wins", wins);
-                deckData.put("winrate", winrate);
-                deckData.put("wilsonLB", wilsonLB);
-                deckData.put("empiricalBayes", eb);
-
-                if (games >= MIN_STABLE) {
-                    stable.add(deckData);
-                } else if (games >= MIN_TRENDING) {
-                    trending.add(deckData);
-                }
-            }
+    /** Top decks já ranqueados; leitura O(k) do snapshot mapeado, sem recalcular nada. */
+    public byte[] getTopDecksJson(int limit, TimeWindow window) {
+        RankedSnapshot current = snapshots.get(window);
+        if (current == null && checkpoint.exists()) current = snapshotFromCheckpoint(window);
+        if (current == null) {
+            throw new RuntimeException("Cache global não encontrado. Execute a coleta primeiro.");
+        }
+        return current.toJson(limit);
+    }
 
-            Comparator<Map<String, Object>> byWilsonDesc =
-                    (a,b) -> Double.compare((double)b.get("wilsonLB"), (double)a.get("wilsonLB"));
+    // Checkpoint sem snapshot (ex: gravado por versão anterior): gera uma vez a partir do log
+    private synchronized RankedSnapshot snapshotFromCheckpoint(TimeWindow window) {
+        if (!snapshots.containsKey(window)) {
+            if (!running) loadProgress();
+            rebuildSnapshot();
+        }
+        return snapshots.get(window);
+    }
 
-            stable.sort(byWilsonDesc);
-            trending.sort(byWilsonDesc);
+    // 📊 Recalcula os rankings (todo o período, 24h e 7d) e troca os snapshots publicados
+    private void rebuildSnapshot() {
+        long now = System.currentTimeMillis();
+        snapshotBuiltAt = now;
+        for (TimeWindow window : TimeWindow.values()) {
+            try {
+                DeckRanking ranking = rankingTimers.get(window).recordCallable(() -> DeckRanking.of(decks, window, now, cardDictionary::render));
 
-            Map<String, Object> result = new LinkedHashMap<>();
-            result.put("summary", Map.of(
-                    "globalMeanWinrate", p0 * 100.0,
-                    "totalGames", totalGames
-            ));
-            result.put("stable", stable);
-            result.put("trending", trending);
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("window", window.label());
+                summary.put("globalMeanWinrate", ranking.globalMean() * 100.0);
+                summary.put("totalGames", ranking.totalGames());
 
-            return result;
+                List<Map<String, Object>> stable = ranking.stable(0, snapshotEntries);
+                List<Map<String, Object>> trending = ranking.trending(0, snapshotEntries);
 
-        } catch (Exception e) {
-            throw new RuntimeException("Erro ao processar cache global: " + e.getMessage(), e);
+                snapshots.put(window, RankedSnapshot.write(snapshotPath(window), mapper.writeValueAsBytes(summary),
+                        serialize(stable), serialize(trending)));
+            } catch (Exception e) {
+                log.error("Erro ao gerar snapshot global ({}): {}", window.label(), e.getMessage(), e);
+            }
         }
     }
 
+    // globalSnapshot.bin (todo o período), globalSnapshot.24h.bin, globalSnapshot.7d.bin
+    private Path snapshotPath(TimeWindow window) {
+        if (window == TimeWindow.ALL) return snapshotPath;
+        String name = snapshotPath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String windowed = dot > 0
+                ? name.substring(0, dot) + "." + window.label() + name.substring(dot)
+                : name + "." + window.label();
+        return snapshotPath.resolveSibling(windowed);
+    }
 
-    // =============================
-    // 🔹 Estatísticas (opcional)
-    // =============================
-    private static double wilsonLowerBound(int wins, int games, double z) {
-        if (games == 0) return 0.0;
-        double p = wins / (double) games;
-        double z2 = z * z;
-        double denom = 1.0 + z2 / games;
-        double center = p + z2 / (2.0 * games);
-        double margin = z * Math.sqrt((p * (1 - p) + z2 / (4.0 * games)) / games);
-        return (center - margin) / denom;
+    private static Counter battles(MeterRegistry registry, String result) {
+        return Counter.builder("royale.crawl.battles")
+                .description("Batalhas lidas dos battlelogs, por destino")
+                .tag("result", result)
+                .register(registry);
     }
 
-    private static double empiricalBayesRate(int wins, int games, double p0, int w) {
-        return (wins + p0 * w) / (games + w);
+    private List<byte[]> serialize(List<Map<String, Object>> entries) throws Exception {
+        List<byte[]> bytes = new ArrayList<>(entries.size());
+        for (Map<String, Object> entry : entries) bytes.add(mapper.writeValueAsBytes(entry));
+        return bytes;
     }
 }
@@ -1,75 +1,93 @@
 package com.example.demo.service;
 
-import com.example.demo.client.RoyaleApiClient;
+import com.example.demo.client.BattleLogCache;
+import com.example.demo.client.CardDictionary;
+import com.example.demo.model.BattleRecord;
+import com.example.demo.model.DeckKey;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import com.fasterxml.jackson.databind.JsonNode;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
 
 @Service
 public class PlayerService {
 
-    private final RoyaleApiClient royaleApiClient;
-
-    public PlayerService(RoyaleApiClient royaleApiClient) {
-        this.royaleApiClient = royaleApiClient;
+    private final BattleLogCache battleLogs;
+    private final CardDictionary cardDictionary;
+
+    // Lote: battlelogs buscados em paralelo (o ritmo real é do RequestThrottle do cliente)
+    private final int batchConcurrency;
+    private final int batchMaxTags;
+
+    public PlayerService(BattleLogCache battleLogs,
+                         CardDictionary cardDictionary,
+                         @Value("${royale.players.batch-concurrency:16}") int batchConcurrency,
+                         @Value("${royale.players.batch-max-tags:100}") int batchMaxTags) {
+        this.battleLogs = battleLogs;
+        this.cardDictionary = cardDictionary;
+        this.batchConcurrency = batchConcurrency;
+        this.batchMaxTags = batchMaxTags;
     }
 
     public Map<String, Object> getPlayerStats(String playerTag) {
-        JsonNode root = royaleApiClient.getBattleLog(playerTag); // ✅ Agora retorna JsonNode direto
+        // Log reaproveitado enquanto estiver fresco (ver BattleLogCache)
+        return stats(playerTag, battleLogs.get(playerTag).block());
+    }
 
+    /**
+     * Estatísticas de vários jogadores, emitidas na ordem em que cada battlelog fica pronto
+     * (não na ordem pedida). Tags repetidas são buscadas uma vez; a falha de um jogador vira
+     * um item com {@code error} e não interrompe os demais.
+     */
+    public Flux<Map<String, Object>> getPlayerStatsBatch(List<String> playerTags) {
+        if (playerTags == null || playerTags.isEmpty()) {
+            throw new IllegalArgumentException("Informe ao menos uma tag de jogador.");
+        }
+        if (playerTags.size() > batchMaxTags) {
+            throw new IllegalArgumentException("Máximo de " + batchMaxTags + " jogadores por lote.");
+        }
+        return Flux.fromIterable(new LinkedHashSet<>(playerTags))
+                .flatMap(tag -> battleLogs.get(tag)
+                        .map(battles -> stats(tag, battles))
+                        .onErrorResume(e -> {
+                            Map<String, Object> failed = new LinkedHashMap<>();
+                            failed.put("playerTag", tag);
+                            failed.put("error", e.getMessage());
+                            return Mono.just(failed);
+                        }), batchConcurrency);
+    }
+
+    private Map<String, Object> stats(String playerTag, List<BattleRecord> battles) {
         int wins = 0;
         int total = 0;
 
         try {
-            Map<String, Integer> deckWins = new HashMap<>();
-            Map<String, Integer> deckTotal = new HashMap<>();
-            Map<String, List<Map<String, Object>>> deckCards = new HashMap<>();
-
-            for (JsonNode battle : root) {
-                if (!battle.has("team") || !battle.has("opponent")) continue;
-
-                JsonNode team = battle.get("team").get(0);
-                JsonNode opponent = battle.get("opponent").get(0);
-
-                int crownsTeam = team.get("crowns").asInt();
-                int crownsOpponent = opponent.get("crowns").asInt();
-
-                List<Map<String, Object>> cards = new ArrayList<>();
-                List<String> cardNames = new ArrayList<>();
-
-                for (JsonNode card : team.get("cards")) {
-                    Map<String, Object> cardData = new LinkedHashMap<>();
-                    cardData.put("name", card.get("name").asText());
-                    cardData.put("elixirCost", card.has("elixirCost") ? card.get("elixirCost").asInt() : 0);
-                    cardData.put("iconUrl", card.get("iconUrls").get("medium").asText());
-                    cards.add(cardData);
-                    cardNames.add(card.get("name").asText());
-                }
-
-                Collections.sort(cardNames);
-                String deckKey = String.join(",", cardNames);
-
-                boolean win = crownsTeam > crownsOpponent;
-
-                deckCards.putIfAbsent(deckKey, cards);
-                deckTotal.put(deckKey, deckTotal.getOrDefault(deckKey, 0) + 1);
-                if (win) {
-                    deckWins.put(deckKey, deckWins.getOrDefault(deckKey, 0) + 1);
-                    wins++;
-                }
+            Map<DeckKey, Integer> deckWins = new HashMap<>();
+            Map<DeckKey, Integer> deckTotal = new HashMap<>();
+
+            for (BattleRecord battle : battles) {
+                boolean win = battle.win();
+                if (win) wins++;
                 total++;
+
+                DeckKey deckKey = battle.teamDeck();
+                if (deckKey == null) continue;
+
+                deckTotal.merge(deckKey, 1, Integer::sum);
+                if (win) deckWins.merge(deckKey, 1, Integer::sum);
             }
 
             // ✅ Calcula winrate por deck
             List<Map<String, Object>> deckStats = new ArrayList<>();
-            for (String deckKey : deckTotal.keySet()) {
+            for (DeckKey deckKey : deckTotal.keySet()) {
                 int deckWin = deckWins.getOrDefault(deckKey, 0);
                 int deckGames = deckTotal.get(deckKey);
                 double winrate = (deckWin * 100.0) / deckGames;
 
                 Map<String, Object> deckInfo = new LinkedHashMap<>();
-                deckInfo.put("cards", deckCards.get(deckKey));
+                deckInfo.put("cards", cardDictionary.render(deckKey));
                 deckInfo.put("games", deckGames);
                 deckInfo.put("wins", deckWin);
                 deckInfo.put("winrate", winrate);
@@ -1,36 +1,99 @@
 package com.example.demo.service;
 
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.DeckPartials;
+import com.example.demo.aggregate.DeckRanking;
+import com.example.demo.aggregate.SeenBattles;
+import com.example.demo.aggregate.TimeWindow;
+import com.example.demo.cache.ResultCache;
+import com.example.demo.client.BattleLogCache;
+import com.example.demo.client.CardDictionary;
+import com.example.demo.client.FetchExecutor;
 import com.example.demo.client.RoyaleApiClient;
+import com.example.demo.model.BattleRecord;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
 
 @Service
 public class RegionService {
 
+    private static final Logger log = LoggerFactory.getLogger(RegionService.class);
+
     private final RoyaleApiClient royaleApiClient;
+    private final BattleLogCache battleLogs;
+    private final CardDictionary cardDictionary;
     private final ObjectMapper mapper = new ObjectMapper();
 
-    // Controla a quantidade de requisições simultâneas (ajuste conforme necessário)
-    private final ExecutorService executor = Executors.newFixedThreadPool(20);
-
-    public RegionService(RoyaleApiClient royaleApiClient) {
+    // Uma tarefa bloqueante por jogador (virtual threads com spring.threads.virtual.enabled)
+    private final FetchExecutor fetches;
+
+    // Ranking por região: TTL + stale-while-revalidate; recálculos em segundo plano usam este pool
+    private final ExecutorService refreshExecutor = Executors.newFixedThreadPool(2);
+    private final ResultCache<String, Map<TimeWindow, DeckRanking>> cache;
+    private final Timer rankTimer;
+
+    public RegionService(RoyaleApiClient royaleApiClient,
+                         BattleLogCache battleLogs,
+                         CardDictionary cardDictionary,
+                         FetchExecutor fetches,
+                         @Value("${royale.region-cache.ttl:5m}") Duration ttl,
+                         @Value("${royale.region-cache.stale:30m}") Duration stale,
+                         @Value("${royale.region-cache.max-entries:64}") int maxEntries,
+                         MeterRegistry meterRegistry) {
         this.royaleApiClient = royaleApiClient;
+        this.battleLogs = battleLogs;
+        this.cardDictionary = cardDictionary;
+        this.fetches = fetches;
+        this.cache = new ResultCache<>(ttl, stale, maxEntries, refreshExecutor);
+        this.cache.bindTo(meterRegistry, "region");
+        this.rankTimer = Timer.builder("royale.region.rank")
+                .description("Ranking de uma região (top jogadores + battlelogs + redução + scores das três janelas)")
+                .register(meterRegistry);
+    }
+
+    public Map<String, Object> getTopDecksByRegion(String locationId, TimeWindow window, int offset, int limit) {
+        // Pedidos simultâneos da mesma região compartilham um único cálculo (as três janelas de uma vez)
+        DeckRanking ranking = cache.get(locationId, id -> rankTimer.record(() -> rankRegion(id))).get(window);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("locationId", locationId);
+        result.put("window", window.label());
+        result.put("summary", Map.of(
+                "globalMeanWinrate", ranking.globalMean() * 100.0,
+                "totalGames", ranking.totalGames(),
+                "totalDecks", ranking.totalDecks(),
+                "stableCount", ranking.stableCount(),
+                "trendingCount", ranking.trendingCount()
+        ));
+        result.put("stable", ranking.stable(offset, limit));
+        result.put("trending", ranking.trending(offset, limit));
+
+        return result;
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return cache.stats();
     }
 
-    public Map<String, Object> getTopDecksByRegion(String locationId) {
+    private Map<TimeWindow, DeckRanking> rankRegion(String locationId) {
         try {
             // Busca os top players da região
             String topPlayersJson = royaleApiClient.getTopPlayersByLocation(locationId);
             JsonNode players = mapper.readTree(topPlayersJson).get("items");
 
-            Map<String, Integer> deckWins = new ConcurrentHashMap<>();
-            Map<String, Integer> deckGames = new ConcurrentHashMap<>();
-            Map<String, List<Map<String, Object>>> deckCards = new ConcurrentHashMap<>();
+            // parcial por tarefa em execução, somadas no fim (sem disputa entre os workers)
+            DeckPartials partials = new DeckPartials();
+            SeenBattles seen = new SeenBattles();
 
             List<CompletableFuture<Void>> tasks = new ArrayList<>();
 
@@ -38,43 +101,20 @@ public class RegionService {
             for (JsonNode player : players) {
                 String tag = player.get("tag").asText();
 
-                CompletableFuture<Void> task = royaleApiClient.getBattleLogAsync(tag)
-                        .thenAcceptAsync(battles -> {
-                            for (JsonNode battle : battles) {
-                                if (!battle.has("team") || !battle.has("opponent")) continue;
-
-                                JsonNode team = battle.get("team").get(0);
-                                JsonNode opponent = battle.get("opponent").get(0);
-
-                                int crownsTeam = team.get("crowns").asInt();
-                                int crownsOpponent = opponent.get("crowns").asInt();
-                                boolean win = crownsTeam > crownsOpponent;
-
-                                List<Map<String, Object>> cards = new ArrayList<>();
-                                List<String> cardNames = new ArrayList<>();
-
-                                for (JsonNode card : team.get("cards")) {
-                                    Map<String, Object> cardInfo = new LinkedHashMap<>();
-                                    cardInfo.put("name", card.get("name").asText());
-                                    cardInfo.put("elixirCost", card.has("elixirCost") ? card.get("elixirCost").asInt() : 0);
-                                    cardInfo.put("iconUrl", card.get("iconUrls").get("medium").asText());
-                                    cards.add(cardInfo);
-                                    cardNames.add(card.get("name").asText());
-                                }
-
-                                // Ordena alfabeticamente para gerar chave única do deck
-                                Collections.sort(cardNames);
-                                String deckKey = String.join(",", cardNames);
-
-                                synchronized (deckGames) {
-                                    deckCards.putIfAbsent(deckKey, cards);
-                                    deckGames.put(deckKey, deckGames.getOrDefault(deckKey, 0) + 1);
-                                    if (win) deckWins.put(deckKey, deckWins.getOrDefault(deckKey, 0) + 1);
+                CompletableFuture<Void> task = fetches.run(() -> {
+                            // espera bloqueante: em virtual thread não prende thread de plataforma
+                            List<BattleRecord> battles = battleLogs.get(tag).block();
+                            try (DeckPartials.Slot slot = partials.acquire()) {
+                                for (BattleRecord battle : battles) {
+                                    // só o deck do jogador do ranking, uma vez por batalha (o ID é por lado:
+                                    // entre dois top jogadores, cada um conta o seu)
+                                    if (!seen.add(battle.battleId())) continue;
+                                    if (battle.teamDeck() != null) slot.record(battle.teamDeck(), battle.win(), battle.battleTime());
                                 }
                             }
-                        }, executor)
+                        })
                         .exceptionally(ex -> {
-                            System.err.println("Erro ao processar jogador " + tag + ": " + ex.getMessage());
+                            log.warn("Erro ao processar jogador {}: {}", tag, ex.getMessage());
                             return null;
                         });
 
@@ -83,90 +123,15 @@ public class RegionService {
 
             // Aguarda todas as requisições terminarem
             CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+            DeckAggregate decks = partials.reduce();
 
-            // ================================
-            // 🔹 Cálculos estatísticos
-            // ================================
-
-            int MIN_TRENDING = 50;
-            int MIN_STABLE = 200;
-            double Z95 = 1.96;
-
-            // média global (para empirical bayes)
-            int totalWins = deckWins.values().stream().mapToInt(Integer::intValue).sum();
-            int totalGames = deckGames.values().stream().mapToInt(Integer::intValue).sum();
-            double p0 = totalGames > 0 ? totalWins / (double) totalGames : 0.5; // fallback 50%
-            int W_PRIOR = 200; // “peso” do prior
-
-            List<Map<String, Object>> stable = new ArrayList<>();
-            List<Map<String, Object>> trending = new ArrayList<>();
-
-            for (String deckKey : deckGames.keySet()) {
-                int games = deckGames.get(deckKey);
-                int wins = deckWins.getOrDefault(deckKey, 0);
-                double winrate = games > 0 ? (wins * 100.0) / games : 0.0;
-                double wilsonLB = wilsonLowerBound(wins, games, Z95) * 100.0;
-                double eb = empiricalBayesRate(wins, games, p0, W_PRIOR) * 100.0;
-
-                Map<String, Object> deckData = new LinkedHashMap<>();
-                deckData.put("cards", deckCards.get(deckKey));
-                deckData.put("games", games);
-                deckData.put("wins", wins);
-                deckData.put("winrate", winrate);
-                deckData.put("wilsonLB", wilsonLB);
-                deckData.put("empiricalBayes", eb);
-
-                if (games >= MIN_STABLE) {
-                    stable.add(deckData);
-                } else if (games >= MIN_TRENDING) {
-                    trending.add(deckData);
-                }
-            }
-
-            Comparator<Map<String, Object>> byWilsonDesc =
-                    (a, b) -> Double.compare((double) b.get("wilsonLB"), (double) a.get("wilsonLB"));
-
-            stable.sort(byWilsonDesc);
-            trending.sort(byWilsonDesc);
-
-            // ================================
-            // 🔹 Resultado final
-            // ================================
-
-            Map<String, Object> result = new LinkedHashMap<>();
-            result.put("locationId", locationId);
-            result.put("summary", Map.of(
-                    "globalMeanWinrate", p0 * 100.0,
-                    "totalGames", totalGames,
-                    "totalDecks", deckGames.size(),
-                    "stableCount", stable.size(),
-                    "trendingCount", trending.size()
-            ));
-            result.put("stable", stable);
-            result.put("trending", trending);
-
-            return result;
+            long now = System.currentTimeMillis();
+            Map<TimeWindow, DeckRanking> rankings = new EnumMap<>(TimeWindow.class);
+            for (TimeWindow window : TimeWindow.values()) rankings.put(window, DeckRanking.of(decks, window, now, cardDictionary::render));
+            return rankings;
 
         } catch (Exception e) {
             throw new RuntimeException("Erro ao calcular decks por região: " + e.getMessage(), e);
         }
     }
-
-    // ================================
-    // 📈 Funções auxiliares estatísticas
-    // ================================
-
-    private static double wilsonLowerBound(int wins, int games, double z) {
-        if (games == 0) return 0.0;
-        double p = wins / (double) games;
-        double z2 = z * z;
-        double denom = 1.0 + z2 / games;
-        double center = p + z2 / (2.0 * games);
-        double margin = z * Math.sqrt((p * (1 - p) + z2 / (4.0 * games)) / games);
-        return (center - margin) / denom;
-    }
-
-    private static double empiricalBayesRate(int wins, int games, double p0, int w) {
-        return (wins + p0 * w) / (games + w);
-    }
 }
@@ -0,0 +1,304 @@
+package com.example.demo.service;
+
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.MatchupTable;
+import com.example.demo.aggregate.SeenBattles;
+import com.example.demo.model.CardInfo;
+import com.example.demo.model.DeckKey;
+import com.example.demo.store.CheckpointStore;
+import com.example.demo.store.ShardSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Coordenador da coleta particionada: junta os snapshots das partições ({@link ShardSnapshot})
+ * num agregado só e o publica como o estado deste nó (checkpoint + rankings), então todos os
+ * endpoints de leitura respondem sobre a soma das partições.
+ *
+ * Guarda o snapshot vencedor de cada partição num arquivo ao lado do checkpoint
+ * ({@code <checkpoint>.shard-N}) e, a cada mudança, refaz o agregado a partir de todos eles.
+ */
+@Service
+public class ShardCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardCoordinator.class);
+
+    static final String SNAPSHOT_PATH = "/global/shards/snapshot";
+
+    private final CheckpointStore checkpoint;
+    private final GlobalRegionService globalRegionService;
+    private final WebClient webClient;
+    private final List<String> workers;
+    private final Duration pullTimeout;
+    private final int matchupPairs;
+    private final Timer mergeTimer;
+
+    // partição -> snapshot vencedor; guardado por this
+    private final Map<Integer, ShardSnapshot> shards = new TreeMap<>();
+    private boolean loaded;
+
+    public ShardCoordinator(CheckpointStore checkpoint,
+                            GlobalRegionService globalRegionService,
+                            WebClient.Builder webClientBuilder,
+                            @Value("${royale.shard.workers:}") List<String> workers,
+                            @Value("${royale.shard.pull-timeout:2m}") Duration pullTimeout,
+                            @Value("${royale.shard.max-snapshot-size:256MB}") DataSize maxSnapshotSize,
+                            @Value("${royale.matchups.max-pairs:1000000}") int matchupPairs,
+                            MeterRegistry meterRegistry) {
+        this.checkpoint = checkpoint;
+        this.globalRegionService = globalRegionService;
+        this.webClient = webClientBuilder
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize((int) maxSnapshotSize.toBytes()))
+                .build();
+        this.workers = workers.stream().map(String::trim).filter(worker -> !worker.isEmpty()).toList();
+        this.pullTimeout = pullTimeout;
+        this.matchupPairs = matchupPairs;
+        this.mergeTimer = Timer.builder("royale.shard.merge")
+                .description("Merge das partições e recarga do estado no coordenador")
+                .register(meterRegistry);
+    }
+
+    /** Junta um snapshot enviado por um nó; se ele perde para o que já existe, nada muda. */
+    public synchronized Map<String, Object> merge(byte[] bytes) {
+        ShardSnapshot snapshot = ShardSnapshot.parse(bytes);
+        boolean accepted = offer(snapshot);
+        if (accepted) rebuild();
+        Map<String, Object> result = describe(snapshot);
+        result.put("accepted", accepted);
+        return result;
+    }
+
+    /** Busca o snapshot de cada nó de {@code royale.shard.workers} (em paralelo) e junta todos de uma vez. */
+    public Map<String, Object> pull() {
+        if (workers.isEmpty()) {
+            throw new IllegalStateException("Nenhum nó configurado em royale.shard.workers");
+        }
+        List<Map.Entry<String, Object>> fetched = Flux.fromIterable(workers)
+                .flatMap(worker -> webClient.get()
+                        .uri(worker + SNAPSHOT_PATH)
+                        .retrieve()
+                        .bodyToMono(byte[].class)
+                        .<Map.Entry<String, Object>>map(bytes -> Map.entry(worker, bytes))
+                        .onErrorResume(e -> Mono.just(Map.entry(worker, e))), workers.size())
+                .collectList()
+                .block(pullTimeout);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        synchronized (this) {
+            boolean changed = false;
+            for (Map.Entry<String, Object> entry : fetched) {
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("worker", entry.getKey());
+                try {
+                    if (entry.getValue() instanceof Throwable e) throw e;
+                    ShardSnapshot snapshot = ShardSnapshot.parse((byte[]) entry.getValue());
+                    boolean accepted = offer(snapshot);
+                    changed |= accepted;
+                    result.putAll(describe(snapshot));
+                    result.put("accepted", accepted);
+                } catch (Throwable e) {
+                    log.warn("⚠️ Snapshot de {} ignorado: {}", entry.getKey(), e.getMessage());
+                    result.put("error", e.getMessage());
+                }
+                results.add(result);
+            }
+            if (changed) rebuild();
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("workers", results);
+        response.put("shards", shards());
+        return response;
+    }
+
+    /** Partições já juntadas, em ordem. */
+    public synchronized List<Map<String, Object>> shards() {
+        load();
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (ShardSnapshot snapshot : shards.values()) list.add(describe(snapshot));
+        return list;
+    }
+
+    // LWW por partição: fica o snapshot maior na ordem de ShardSnapshot#newerThan
+    private boolean offer(ShardSnapshot snapshot) {
+        load();
+        if (globalRegionService.isRunning()) {
+            throw new IllegalStateException("Já existe uma coleta em andamento neste nó!");
+        }
+        for (ShardSnapshot other : shards.values()) {
+            if (other.shards() != snapshot.shards()) {
+                throw new IllegalStateException("Partições divergentes: já há snapshots de " + other.shards()
+                        + " partições, recebido " + snapshot.shard() + "/" + snapshot.shards());
+            }
+        }
+        ShardSnapshot current = shards.get(snapshot.shard());
+        if (current != null && !snapshot.newerThan(current)) return false;
+        write(snapshot);
+        shards.put(snapshot.shard(), snapshot);
+        return true;
+    }
+
+    // Soma as partições num agregado novo e troca o estado publicado por ele
+    private void rebuild() {
+        mergeTimer.record(() -> {
+            Merged merged = fold(shards.values(), matchupPairs);
+            globalRegionService.replaceState(() -> checkpoint.compact(merged.cards(), merged.regions(), merged.decks(),
+                    merged.matchups(), null, merged.battles(), merged.watermarks()));
+            log.info("🧩 {} partições juntadas ({} regiões, {} batalhas, {} partidas)", shards.size(),
+                    merged.regions().size(), merged.battles().size(), merged.decks().totalGames());
+        });
+    }
+
+    record Merged(Collection<CardInfo> cards, Map<Integer, Long> regions, DeckAggregate decks, MatchupTable matchups,
+                  SeenBattles battles, Map<String, Long> watermarks) {
+    }
+
+    /**
+     * Agregado das partições. Batalhas vêm das linhas, uma vez por ID de lado; partições sem linhas (log
+     * gravado antes delas) entram com os contadores já somados, antes das outras, para que uma
+     * batalha delas também vista por outra partição não seja contada de novo.
+     */
+    static Merged fold(Collection<ShardSnapshot> snapshots, int matchupPairs) {
+        DeckAggregate decks = new DeckAggregate();
+        MatchupTable matchups = new MatchupTable(matchupPairs);
+        SeenBattles battles = new SeenBattles();
+        Map<Integer, Long> regions = new HashMap<>();
+        Map<String, Long> watermarks = new HashMap<>();
+        Map<Integer, CardInfo> cards = new LinkedHashMap<>();
+        List<ShardSnapshot> ordered = new ArrayList<>(snapshots);
+        ordered.sort(Comparator.comparing(ShardSnapshot::hasRows)); // sem linhas primeiro
+        for (ShardSnapshot snapshot : ordered) {
+            boolean fromRows = snapshot.hasRows();
+            if (!fromRows) {
+                log.warn("⚠️ Partição {} sem linhas por batalha: batalhas vistas também por outra partição podem contar duas vezes",
+                        snapshot.shard());
+            }
+            CheckpointStore.read(snapshot.bytes(), new CheckpointStore.Listener() {
+                @Override
+                public void card(CardInfo card) {
+                    cards.putIfAbsent(card.id(), card);
+                }
+
+                @Override
+                public void region(int locationId) {
+                    regions.putIfAbsent(locationId, 0L);
+                }
+
+                @Override
+                public void deck(DeckKey key, int games, int wins) {
+                    if (!fromRows) decks.add(key, games, wins);
+                }
+
+                @Override
+                public void buckets(DeckKey key, long[] buckets) {
+                    if (!fromRows) decks.addBuckets(key, buckets);
+                }
+
+                @Override
+                public void matchup(DeckKey deck, DeckKey opponent, int games, int wins, int losses) {
+                    if (!fromRows) matchups.add(deck, opponent, games, wins, losses);
+                }
+
+                @Override
+                public void battle(long battleId, long battleTime) {
+                    if (!fromRows) battles.add(battleId, battleTime);
+                }
+
+                // mesma conta do handleBattle da coleta: deck do dono do log uma vez por lado,
+                // confronto uma vez por batalha
+                @Override
+                public void battleRow(long battleId, long battleTime, DeckKey team, DeckKey opponent,
+                                      boolean win, boolean opponentWin) {
+                    if (!fromRows) return;
+                    SeenBattles.Sighting sighting = battles.addSide(battleId, battleTime);
+                    if (sighting == SeenBattles.Sighting.SEEN) return;
+                    if (team != null) decks.record(team, win, battleTime);
+                    if (sighting == SeenBattles.Sighting.BATTLE && team != null && opponent != null) {
+                        matchups.record(team, opponent, win, opponentWin);
+                    }
+                }
+
+                @Override
+                public void regionCrawled(int locationId, long crawledAt) {
+                    regions.merge(locationId, crawledAt, Math::max);
+                }
+
+                @Override
+                public void watermark(String playerTag, long battleTime) {
+                    watermarks.merge(playerTag, battleTime, Math::max);
+                }
+            });
+        }
+        return new Merged(cards.values(), regions, decks, matchups, battles, watermarks);
+    }
+
+    // Snapshots guardados por uma execução anterior do coordenador
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+        Path dir = checkpoint.path().toAbsolutePath().getParent();
+        String prefix = checkpoint.path().getFileName() + ".shard-";
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> stored = files.filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                    .toList();
+            for (Path file : stored) {
+                try {
+                    ShardSnapshot snapshot = ShardSnapshot.parse(Files.readAllBytes(file));
+                    shards.merge(snapshot.shard(), snapshot, (a, b) -> b.newerThan(a) ? b : a);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("⚠️ Snapshot de partição ilegível ({}): {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.error("Erro ao listar snapshots de partição: {}", e.getMessage(), e);
+        }
+    }
+
+    private void write(ShardSnapshot snapshot) {
+        Path file = checkpoint.path().resolveSibling(checkpoint.path().getFileName() + ".shard-" + snapshot.shard());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(tmp, snapshot.bytes());
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao gravar snapshot da partição: " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<String, Object> describe(ShardSnapshot snapshot) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("shard", snapshot.shard());
+        result.put("shards", snapshot.shards());
+        result.put("version", snapshot.version());
+        result.put("regions", snapshot.regions());
+        result.put("games", snapshot.games());
+        result.put("battles", snapshot.battles());
+        result.put("bytes", snapshot.bytes().length);
+        return result;
+    }
+}
@@ -0,0 +1,797 @@
+package com.example.demo.store;
+
+import com.example.demo.aggregate.BattleRows;
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.DeckStats;
+import com.example.demo.aggregate.MatchupTable;
+import com.example.demo.aggregate.SeenBattles;
+import com.example.demo.aggregate.TimeWindow;
+import com.example.demo.model.CardInfo;
+import com.example.demo.model.DeckKey;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint da coleta global em log binário só de append.
+ *
+ * Cada registro é {@code [int tamanho][byte tipo][payload][int crc32]}. Ao fim de cada
+ * região gravamos só o delta dela (chaves compactas + contadores + IDs das batalhas contadas,
+ * para não recontá-las depois de um restart) e as cartas novas, então
+ * o custo de salvar é proporcional ao dado novo. Periodicamente o log é compactado em um
+ * único SNAPSHOT escrito num arquivo temporário e trocado por rename atômico, e um registro
+ * truncado por queda no meio da escrita é descartado (junto com o que vier depois) no replay.
+ *
+ * O registro PROGRESS (horário da coleta de cada região + última {@code battleTime} ingerida por
+ * jogador) vem logo depois do REGION/SNAPSHOT correspondente. Se ele se perder, a atualização
+ * seguinte só relê batalhas que o conjunto de IDs já descarta.
+ *
+ * REGION e SNAPSHOT terminam com os baldes por hora de cada deck (janelas de 24h/7d); na
+ * compactação só os baldes dos últimos 7 dias são regravados.
+ *
+ * A compactação grava o estado em colunas (registro COLUMNS, ver {@link #writeColumns}): um
+ * dicionário dos códigos de carta, 8 colunas de largura fixa com o índice de cada slot do deck
+ * (1 byte enquanto houver até 256 códigos) e as colunas de partidas e vitórias com a menor largura
+ * (1, 2 ou 4 bytes) que comporta o maior valor. A leitura é uma passada sobre o buffer mapeado,
+ * com offsets calculados a partir do cabeçalho. SNAPSHOT (por linha) continua sendo lido.
+ *
+ * REGION e COLUMNS terminam, opcionalmente, com os confrontos deck contra deck ({@link MatchupTable}):
+ * um dicionário das chaves dos decks e, por par, {@code [deck, adversário, games, vitórias, derrotas]}
+ * com os índices desse dicionário. Registros gravados antes disso simplesmente não têm a seção.
+ *
+ * Depois dos confrontos vêm, também opcionais, as linhas por batalha ({@link BattleRows}: ID, horário,
+ * os dois decks e o resultado), que só a coleta particionada preenche.
+ *
+ * Depois, opcional, a {@code battleTime} de cada ID da lista de batalhas (mesma ordem), para que a
+ * compactação regrave só as batalhas dentro do horizonte (ver {@link SeenBattles#prune}).
+ *
+ * Por último, opcional, {@code [byte]} 1 se toda batalha do registro tem a sua linha
+ * ({@link BattleRows#complete()}); registros sem o byte contam como sem linhas.
+ *
+ * Na coleta particionada, cada nó exporta o próprio log precedido de um registro SHARD
+ * ({@code [int shard][int total]}, ver {@link #exportShard}); o coordenador relê esses bytes com
+ * {@link #read(byte[], Listener)}, o mesmo replay do arquivo.
+ */
+@Component
+public class CheckpointStore implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(CheckpointStore.class);
+
+    static final byte CARD = 1;
+    static final byte REGION = 2;
+    static final byte SNAPSHOT = 3;
+    static final byte PROGRESS = 4;
+    static final byte COLUMNS = 5;
+    static final byte SHARD = 6;
+
+    private static final byte COLUMNS_VERSION = 1;
+
+    private static final int HEADER = 4 + 1;
+    private static final int TRAILER = 4;
+    private static final int DECK_BYTES = 8 + 8 + 4 + 4;
+
+    /** Recebe os registros durante o replay. */
+    public interface Listener {
+        void card(CardInfo card);
+
+        void region(int locationId);
+
+        void deck(DeckKey key, int games, int wins);
+
+        /**
+         * Batalha já contada (registros sem essa lista, gravados antes dela existir, não chamam);
+         * {@code battleTime} 0 quando o registro não traz os horários.
+         */
+        default void battle(long battleId, long battleTime) {
+        }
+
+        /** Horário (epoch millis) em que a região foi coletada pela última vez. */
+        default void regionCrawled(int locationId, long crawledAt) {
+        }
+
+        /** Última {@code battleTime} já ingerida do jogador. */
+        default void watermark(String playerTag, long battleTime) {
+        }
+
+        /** Baldes por hora de um deck ({@link DeckStats#buckets(int)}). */
+        default void buckets(DeckKey key, long[] buckets) {
+        }
+
+        /** Confronto já agregado, do ponto de vista de {@code deck}. */
+        default void matchup(DeckKey deck, DeckKey opponent, int games, int wins, int losses) {
+        }
+
+        /** Batalha contada, com o que ela somou (só na coleta particionada); deck ausente vem {@code null}. */
+        default void battleRow(long battleId, long battleTime, DeckKey team, DeckKey opponent,
+                               boolean win, boolean opponentWin) {
+        }
+
+        /**
+         * Fim de um registro com batalhas (depois de {@link #battle} e {@link #battleRow}):
+         * {@code true} se toda batalha dele veio com a sua linha.
+         */
+        default void rowsComplete(boolean complete) {
+        }
+
+        /** Partição que gerou o snapshot (só em {@link #exportShard}). */
+        default void shard(int shard, int shards) {
+        }
+    }
+
+    private static final Listener SKIP = new Listener() {
+        @Override
+        public void card(CardInfo card) {
+        }
+
+        @Override
+        public void region(int locationId) {
+        }
+
+        @Override
+        public void deck(DeckKey key, int games, int wins) {
+        }
+    };
+
+    private final Path path;
+    private final double compactRatio;
+    private final Set<Integer> persistedCards = new HashSet<>();
+
+    private FileChannel channel;
+    private long baseBytes;     // tamanho logo após a última compactação
+    private long appendedBytes; // bytes gravados desde então
+
+    public CheckpointStore(@Value("${royale.checkpoint.path:globalCache.log}") String path,
+                           @Value("${royale.checkpoint.compact-ratio:1.0}") double compactRatio) {
+        this.path = Path.of(path);
+        this.compactRatio = compactRatio;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Relê o log inteiro e descarta um final corrompido. Depois disso o store fica
+     * aberto para append.
+     */
+    public synchronized void open(Listener listener) {
+        try {
+            closeChannel();
+            persistedCards.clear();
+            long valid = exists() ? replay(listener, persistedCards) : 0;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (channel.size() > valid) {
+                log.warn("⚠️ Checkpoint com final inválido, descartando {} bytes", channel.size() - valid);
+                channel.truncate(valid);
+            }
+            channel.position(valid);
+            baseBytes = valid;
+            appendedBytes = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao abrir checkpoint: " + e.getMessage(), e);
+        }
+    }
+
+    /** Leitura sem abrir para escrita (ex: consultas enquanto não há coleta rodando). */
+    public synchronized void read(Listener listener) {
+        if (!exists()) return;
+        try {
+            replay(listener, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao ler checkpoint: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Estado da partição {@code shard} de {@code shards} para o coordenador: registro SHARD seguido
+     * dos registros válidos do log (o que já foi gravado; o replay é o mesmo do arquivo).
+     */
+    public synchronized byte[] exportShard(int shard, int shards) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeRecord(bytes, SHARD, ByteBuffer.allocate(8).putInt(shard).putInt(shards).array());
+            if (exists()) {
+                // aberto: o tamanho já é o do último registro válido; senão o replay acha o final
+                long valid = channel != null ? sizeBytes() : replay(SKIP, null);
+                byte[] log = Files.readAllBytes(path);
+                bytes.write(log, 0, (int) Math.min(valid, log.length));
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao exportar checkpoint: " + e.getMessage(), e);
+        }
+    }
+
+    /** Replay de um snapshot em memória (ex: exportado por outro nó); recusa bytes truncados ou corrompidos. */
+    public static void read(byte[] data, Listener listener) {
+        long valid;
+        try {
+            valid = replay(ByteBuffer.wrap(data), listener, null);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Snapshot inválido: " + e.getMessage(), e);
+        }
+        if (valid != data.length) {
+            throw new IllegalArgumentException("Snapshot truncado ou corrompido (" + valid + " de " + data.length + " bytes válidos)");
+        }
+    }
+
+    /**
+     * Grava as cartas ainda não persistidas e o delta de uma região concluída; devolve os bytes gravados.
+     * {@code rows} é {@code null} quando o nó não guarda linhas por batalha (coleta não particionada).
+     */
+    public synchronized long appendRegion(int locationId, Collection<CardInfo> cards, DeckAggregate delta,
+                                          MatchupTable matchups, BattleRows rows, SeenBattles battles, long crawledAt,
+                                          Map<String, Long> watermarks) {
+        if (channel == null) {
+            throw new IllegalStateException("Checkpoint não está aberto para escrita (open() falhou ou não foi chamado)");
+        }
+        try {
+            // cópia única: o dicionário pode ganhar cartas entre gravar e marcar como persistidas
+            List<CardInfo> newCards = new ArrayList<>();
+            for (CardInfo card : cards) {
+                if (!persistedCards.contains(card.id())) newCards.add(card);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + delta.size() * DECK_BYTES);
+            for (CardInfo card : newCards) writeRecord(bytes, CARD, cardPayload(card));
+            SeenBattles.Entries battleEntries = battles.entries();
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(
+                    12 + delta.size() * DECK_BYTES + battleEntries.ids().length * 16);
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeInt(locationId);
+            writeDecks(out, delta);
+            writeBattles(out, battleEntries.ids());
+            writeBuckets(out, delta, Integer.MIN_VALUE);
+            writeMatchups(out, matchups);
+            writeRows(out, rows);
+            writeBattles(out, battleEntries.times());
+            out.writeBoolean(rows != null && rows.complete());
+            writeRecord(bytes, REGION, payload.toByteArray());
+            writeRecord(bytes, PROGRESS, progressPayload(Map.of(locationId, crawledAt), watermarks));
+
+            long start = channel.position();
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(false);
+            } catch (IOException e) {
+                rollback(start);
+                throw e;
+            }
+            appendedBytes += bytes.size();
+            for (CardInfo card : newCards) persistedCards.add(card.id());
+            return bytes.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao gravar checkpoint: " + e.getMessage(), e);
+        }
+    }
+
+    /** Compactação amortizada: só quando o log cresceu {@code compact-ratio} vezes o último snapshot. */
+    public synchronized boolean needsCompaction() {
+        return appendedBytes > Math.max(64 * 1024, baseBytes * compactRatio);
+    }
+
+    /**
+     * Reescreve o estado inteiro num único snapshot (arquivo temporário + rename atômico); devolve o novo
+     * tamanho. {@code rows} segue a regra de {@link #appendRegion}.
+     */
+    public synchronized long compact(Collection<CardInfo> cards, Map<Integer, Long> regions, DeckAggregate decks,
+                                     MatchupTable matchups, BattleRows rows, SeenBattles battles,
+                                     Map<String, Long> watermarks) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + decks.size() * DECK_BYTES);
+            List<CardInfo> snapshotCards = List.copyOf(cards); // mesma lista para gravar e marcar
+            for (CardInfo card : snapshotCards) writeRecord(bytes, CARD, cardPayload(card));
+            SeenBattles.Entries battleEntries = battles.entries();
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(
+                    12 + regions.size() * 4 + decks.size() * DECK_BYTES + battleEntries.ids().length * 16);
+            DataOutputStream out = new DataOutputStream(payload);
+            Map<Integer, Long> snapshotRegions = new HashMap<>(regions);
+            out.writeInt(snapshotRegions.size());
+            for (int region : snapshotRegions.keySet()) out.writeInt(region);
+            List<DeckStats> deckRows = writeColumns(out, decks);
+            writeBattles(out, battleEntries.ids());
+            writeRowBuckets(out, deckRows, TimeWindow.hour(System.currentTimeMillis()) - TimeWindow.WEEK.hours() + 1);
+            writeMatchups(out, matchups);
+            writeRows(out, rows);
+            writeBattles(out, battleEntries.times());
+            out.writeBoolean(rows != null && rows.complete());
+            writeRecord(bytes, COLUMNS, payload.toByteArray());
+            writeRecord(bytes, PROGRESS, progressPayload(snapshotRegions, watermarks));
+
+            try (FileChannel tmpChannel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) tmpChannel.write(buffer);
+                tmpChannel.force(true);
+            }
+            closeChannel();
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+
+            persistedCards.clear();
+            for (CardInfo card : snapshotCards) persistedCards.add(card.id());
+            baseBytes = bytes.size();
+            appendedBytes = 0;
+            return baseBytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao compactar checkpoint: " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized long sizeBytes() {
+        return baseBytes + appendedBytes;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("royale.checkpoint.size", this, CheckpointStore::sizeBytes)
+                .description("Tamanho do log de checkpoint")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public synchronized void close() {
+        closeChannel();
+    }
+
+    // =============================
+    // 🔹 Formato
+    // =============================
+
+    private long replay(Listener listener, Set<Integer> trackedCards) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size == 0) return 0;
+            return replay(in.map(FileChannel.MapMode.READ_ONLY, 0, size), listener, trackedCards);
+        }
+    }
+
+    /** Aplica os registros válidos e devolve o offset logo após o último deles. */
+    private static long replay(ByteBuffer buf, Listener listener, Set<Integer> trackedCards) {
+        CRC32 crc = new CRC32();
+        long valid = 0;
+        while (buf.remaining() >= HEADER + TRAILER) {
+            int start = buf.position();
+            int length = buf.getInt();
+            if (length < 1 || length > buf.remaining() - TRAILER) break;
+            ByteBuffer record = buf.slice(start + 4, length);
+            crc.reset();
+            crc.update(record.duplicate());
+            buf.position(start + 4 + length);
+            if ((int) crc.getValue() != buf.getInt()) break;
+
+            byte type = record.get();
+            switch (type) {
+                case CARD -> {
+                    CardInfo card = readCard(record);
+                    if (trackedCards != null) trackedCards.add(card.id());
+                    listener.card(card);
+                }
+                case REGION -> {
+                    listener.region(record.getInt());
+                    readDecks(record, listener);
+                    long[] battles = readBattles(record);
+                    readBuckets(record, listener);
+                    readMatchups(record, listener);
+                    readRows(record, listener);
+                    emitBattles(battles, readBattles(record), listener);
+                    listener.rowsComplete(record.remaining() >= 1 && record.get() != 0);
+                }
+                case SNAPSHOT -> {
+                    int regions = record.getInt();
+                    for (int i = 0; i < regions; i++) listener.region(record.getInt());
+                    readDecks(record, listener);
+                    long[] battles = readBattles(record);
+                    readBuckets(record, listener);
+                    emitBattles(battles, new long[0], listener);
+                    listener.rowsComplete(false);
+                }
+                case COLUMNS -> {
+                    int regions = record.getInt();
+                    for (int i = 0; i < regions; i++) listener.region(record.getInt());
+                    DeckKey[] rows = readColumns(record, listener);
+                    long[] battles = readBattles(record);
+                    readRowBuckets(record, rows, listener);
+                    readMatchups(record, listener);
+                    readRows(record, listener);
+                    emitBattles(battles, readBattles(record), listener);
+                    listener.rowsComplete(record.remaining() >= 1 && record.get() != 0);
+                }
+                case PROGRESS -> {
+                    int regions = record.getInt();
+                    for (int i = 0; i < regions; i++) listener.regionCrawled(record.getInt(), record.getLong());
+                    int players = record.getInt();
+                    for (int i = 0; i < players; i++) listener.watermark(readUtf(record), record.getLong());
+                }
+                case SHARD -> listener.shard(record.getInt(), record.getInt());
+                default -> { } // tipo desconhecido (versão futura): ignora
+            }
+            valid = buf.position();
+        }
+        return valid;
+    }
+
+    private static void writeRecord(ByteArrayOutputStream target, byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        DataOutputStream out = new DataOutputStream(target);
+        out.writeInt(1 + payload.length);
+        out.writeByte(type);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static byte[] cardPayload(CardInfo card) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(card.id());
+        out.writeShort(card.elixirCost());
+        writeUtf(out, card.name());
+        writeUtf(out, card.iconUrl());
+        return bytes.toByteArray();
+    }
+
+    private static CardInfo readCard(ByteBuffer in) {
+        int id = in.getInt();
+        int elixir = in.getShort();
+        return new CardInfo(id, readUtf(in), elixir, readUtf(in));
+    }
+
+    private static void writeUtf(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readUtf(ByteBuffer in) {
+        byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDecks(DataOutputStream out, DeckAggregate decks) throws IOException {
+        // contagem primeiro; o mapa concorrente pode crescer durante a iteração
+        Collection<DeckStats> values = decks.decks();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(values.size() * DECK_BYTES);
+        DataOutputStream rows = new DataOutputStream(body);
+        int count = 0;
+        for (DeckStats deck : values) {
+            rows.writeLong(deck.key().hi());
+            rows.writeLong(deck.key().lo());
+            rows.writeInt(deck.games());
+            rows.writeInt(deck.wins());
+            count++;
+        }
+        out.writeInt(count);
+        body.writeTo(out);
+    }
+
+    private static void readDecks(ByteBuffer in, Listener listener) {
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            DeckKey key = DeckKey.fromBits(in.getLong(), in.getLong());
+            listener.deck(key, in.getInt(), in.getInt());
+        }
+    }
+
+    /**
+     * Decks em colunas: {@code [byte versão][int n][int nCódigos][short código*]
+     * [byte largura][8 colunas de n índices][byte largura][n partidas][byte largura][n vitórias]}.
+     * O índice 0 do dicionário é o slot vazio. Devolve as linhas na ordem gravada (para os baldes).
+     */
+    private static List<DeckStats> writeColumns(DataOutputStream out, DeckAggregate decks) throws IOException {
+        // cópia: o mapa concorrente pode crescer durante a escrita
+        List<DeckStats> rows = new ArrayList<>(decks.decks());
+        int n = rows.size();
+        DeckKey[] keys = new DeckKey[n];
+        int[] games = new int[n];
+        int[] wins = new int[n];
+        int[] indexOf = new int[1 << 16];
+        Arrays.fill(indexOf, -1);
+        int[] codes = new int[256];
+        indexOf[0] = 0;
+        int dictionary = 1;
+        for (int i = 0; i < n; i++) {
+            DeckStats deck = rows.get(i);
+            keys[i] = deck.key();
+            games[i] = deck.games();
+            wins[i] = deck.wins();
+            for (int slot = 0; slot < DeckKey.SLOTS; slot++) {
+                int code = keys[i].code(slot);
+                if (indexOf[code] >= 0) continue;
+                if (dictionary == codes.length) codes = Arrays.copyOf(codes, dictionary * 2);
+                indexOf[code] = dictionary;
+                codes[dictionary++] = code;
+            }
+        }
+
+        out.writeByte(COLUMNS_VERSION);
+        out.writeInt(n);
+        out.writeInt(dictionary);
+        for (int i = 0; i < dictionary; i++) out.writeShort(codes[i]);
+        int slotWidth = width(dictionary - 1);
+        out.writeByte(slotWidth);
+        for (int slot = 0; slot < DeckKey.SLOTS; slot++) {
+            for (DeckKey key : keys) writeFixed(out, indexOf[key.code(slot)], slotWidth);
+        }
+        writeColumn(out, games);
+        writeColumn(out, wins);
+        return rows;
+    }
+
+    /** Lê as colunas em uma passada (acesso absoluto por coluna) e devolve as chaves por linha. */
+    private static DeckKey[] readColumns(ByteBuffer in, Listener listener) {
+        byte version = in.get();
+        if (version != COLUMNS_VERSION) {
+            throw new IllegalStateException("Versão de colunas não suportada: " + version);
+        }
+        int n = in.getInt();
+        int[] codes = new int[in.getInt()];
+        for (int i = 0; i < codes.length; i++) codes[i] = Short.toUnsignedInt(in.getShort());
+        int slotWidth = in.get();
+        int slotsAt = in.position();
+        in.position(slotsAt + DeckKey.SLOTS * n * slotWidth);
+        int gamesWidth = in.get();
+        int gamesAt = in.position();
+        in.position(gamesAt + n * gamesWidth);
+        int winsWidth = in.get();
+        int winsAt = in.position();
+        in.position(winsAt + n * winsWidth);
+
+        DeckKey[] keys = new DeckKey[n];
+        for (int i = 0; i < n; i++) {
+            long hi = 0, lo = 0;
+            for (int slot = 0; slot < 4; slot++) {
+                hi = hi << 16 | codes[readFixed(in, slotsAt + (slot * n + i) * slotWidth, slotWidth)];
+                lo = lo << 16 | codes[readFixed(in, slotsAt + ((slot + 4) * n + i) * slotWidth, slotWidth)];
+            }
+            keys[i] = DeckKey.fromBits(hi, lo);
+            listener.deck(keys[i], readFixed(in, gamesAt + i * gamesWidth, gamesWidth),
+                    readFixed(in, winsAt + i * winsWidth, winsWidth));
+        }
+        return keys;
+    }
+
+    private static void writeColumn(DataOutputStream out, int[] values) throws IOException {
+        int max = 0;
+        for (int value : values) max = Math.max(max, value);
+        int width = width(max);
+        out.writeByte(width);
+        for (int value : values) writeFixed(out, value, width);
+    }
+
+    /** Menor largura (bytes) para inteiros não negativos até {@code max}. */
+    static int width(int max) {
+        return max < 1 << 8 ? 1 : max < 1 << 16 ? 2 : 4;
+    }
+
+    private static void writeFixed(DataOutputStream out, int value, int width) throws IOException {
+        switch (width) {
+            case 1 -> out.writeByte(value);
+            case 2 -> out.writeShort(value);
+            default -> out.writeInt(value);
+        }
+    }
+
+    private static int readFixed(ByteBuffer in, int offset, int width) {
+        return switch (width) {
+            case 1 -> Byte.toUnsignedInt(in.get(offset));
+            case 2 -> Short.toUnsignedInt(in.getShort(offset));
+            default -> in.getInt(offset);
+        };
+    }
+
+    private static byte[] progressPayload(Map<Integer, Long> regions, Map<String, Long> watermarks) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + regions.size() * 12 + watermarks.size() * 20);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(regions.size());
+        for (Map.Entry<Integer, Long> region : regions.entrySet()) {
+            out.writeInt(region.getKey());
+            out.writeLong(region.getValue());
+        }
+        // cópia: o mapa da coleta pode mudar durante a escrita
+        List<Map.Entry<String, Long>> players = new ArrayList<>(watermarks.entrySet());
+        out.writeInt(players.size());
+        for (Map.Entry<String, Long> player : players) {
+            writeUtf(out, player.getKey());
+            out.writeLong(player.getValue());
+        }
+        return bytes.toByteArray();
+    }
+
+    // IDs das batalhas e, no fim do payload, os horários delas (mesmo formato)
+    private static void writeBattles(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) out.writeLong(value);
+    }
+
+    // Lista opcional: registros antigos terminam antes dela
+    private static long[] readBattles(ByteBuffer in) {
+        if (in.remaining() < 4) return new long[0];
+        long[] values = new long[in.getInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.getLong();
+        return values;
+    }
+
+    private static void emitBattles(long[] ids, long[] times, Listener listener) {
+        for (int i = 0; i < ids.length; i++) listener.battle(ids[i], i < times.length ? times[i] : 0);
+    }
+
+    private static void writeBuckets(DataOutputStream out, DeckAggregate decks, int sinceHour) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream rows = new DataOutputStream(body);
+        int count = 0;
+        for (DeckStats deck : decks.decks()) {
+            long[] buckets = deck.buckets(sinceHour);
+            if (buckets.length == 0) continue;
+            rows.writeLong(deck.key().hi());
+            rows.writeLong(deck.key().lo());
+            rows.writeShort(buckets.length);
+            for (long bucket : buckets) rows.writeLong(bucket);
+            count++;
+        }
+        out.writeInt(count);
+        body.writeTo(out);
+    }
+
+    // Também opcional (depois das batalhas)
+    private static void readBuckets(ByteBuffer in, Listener listener) {
+        if (in.remaining() < 4) return;
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            DeckKey key = DeckKey.fromBits(in.getLong(), in.getLong());
+            long[] buckets = new long[Short.toUnsignedInt(in.getShort())];
+            for (int j = 0; j < buckets.length; j++) buckets[j] = in.getLong();
+            listener.buckets(key, buckets);
+        }
+    }
+
+    // Baldes do registro COLUMNS: referenciam a linha do deck em vez de repetir a chave
+    private static void writeRowBuckets(DataOutputStream out, List<DeckStats> rows, int sinceHour) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream entries = new DataOutputStream(body);
+        int count = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            long[] buckets = rows.get(row).buckets(sinceHour);
+            if (buckets.length == 0) continue;
+            entries.writeInt(row);
+            entries.writeShort(buckets.length);
+            for (long bucket : buckets) entries.writeLong(bucket);
+            count++;
+        }
+        out.writeInt(count);
+        body.writeTo(out);
+    }
+
+    private static void readRowBuckets(ByteBuffer in, DeckKey[] rows, Listener listener) {
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            DeckKey key = rows[in.getInt()];
+            long[] buckets = new long[Short.toUnsignedInt(in.getShort())];
+            for (int j = 0; j < buckets.length; j++) buckets[j] = in.getLong();
+            listener.buckets(key, buckets);
+        }
+    }
+
+    private static void writeMatchups(DataOutputStream out, MatchupTable matchups) throws IOException {
+        out.writeInt(matchups.decks());
+        for (int id = 0; id < matchups.decks(); id++) {
+            DeckKey deck = matchups.deck(id);
+            out.writeLong(deck.hi());
+            out.writeLong(deck.lo());
+        }
+        ByteBuffer cells = ByteBuffer.allocate(matchups.pairs() * 5 * 4);
+        matchups.forEach((deck, opponent, games, wins, losses) ->
+                cells.putInt(deck).putInt(opponent).putInt(games).putInt(wins).putInt(losses));
+        out.writeInt(matchups.pairs());
+        out.write(cells.array());
+    }
+
+    // Seção opcional no fim de REGION/COLUMNS
+    private static void readMatchups(ByteBuffer in, Listener listener) {
+        if (in.remaining() < 4) return;
+        DeckKey[] decks = new DeckKey[in.getInt()];
+        for (int i = 0; i < decks.length; i++) decks[i] = DeckKey.fromBits(in.getLong(), in.getLong());
+        int pairs = in.getInt();
+        for (int i = 0; i < pairs; i++) {
+            DeckKey deck = decks[in.getInt()];
+            DeckKey opponent = decks[in.getInt()];
+            listener.matchup(deck, opponent, in.getInt(), in.getInt(), in.getInt());
+        }
+    }
+
+    private static final int ROW_BYTES = 8 + 8 + 4 * 8 + 1;
+
+    /**
+     * Linhas por batalha: {@code [int n]} e, por batalha, {@code [long id][long battleTime][long hi, lo do
+     * time][long hi, lo do adversário][byte bits]} com bits 1 = vitória, 2 = vitória do adversário,
+     * 4/8 = deck do time/adversário presente.
+     */
+    private static void writeRows(DataOutputStream out, BattleRows rows) throws IOException {
+        if (rows == null) {
+            out.writeInt(0);
+            return;
+        }
+        ByteBuffer buffer;
+        synchronized (rows) { // tamanho e linhas do mesmo instante
+            buffer = ByteBuffer.allocate(4 + rows.size() * ROW_BYTES);
+            buffer.putInt(rows.size());
+            rows.forEach((battleId, battleTime, team, opponent, win, opponentWin) -> {
+                buffer.putLong(battleId).putLong(battleTime);
+                buffer.putLong(team != null ? team.hi() : 0).putLong(team != null ? team.lo() : 0);
+                buffer.putLong(opponent != null ? opponent.hi() : 0).putLong(opponent != null ? opponent.lo() : 0);
+                buffer.put((byte) ((win ? 1 : 0) | (opponentWin ? 2 : 0) | (team != null ? 4 : 0) | (opponent != null ? 8 : 0)));
+            });
+        }
+        out.write(buffer.array());
+    }
+
+    // Seção opcional no fim de REGION/COLUMNS, depois dos confrontos
+    private static void readRows(ByteBuffer in, Listener listener) {
+        if (in.remaining() < 4) return;
+        int rows = in.getInt();
+        for (int i = 0; i < rows; i++) {
+            long battleId = in.getLong();
+            long battleTime = in.getLong();
+            DeckKey team = DeckKey.fromBits(in.getLong(), in.getLong());
+            DeckKey opponent = DeckKey.fromBits(in.getLong(), in.getLong());
+            int flags = in.get();
+            listener.battleRow(battleId, battleTime, (flags & 4) != 0 ? team : null, (flags & 8) != 0 ? opponent : null,
+                    (flags & 1) != 0, (flags & 2) != 0);
+        }
+    }
+
+    // Escrita que falhou no meio: sem isso os próximos appends ficariam depois do registro
+    // rasgado, e o replay (que para no primeiro CRC inválido) os perderia
+    private void rollback(long start) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException e) {
+            // não dá para garantir onde o próximo append cairia: fecha até o próximo open()
+            log.error("Erro ao descartar registro incompleto do checkpoint: {}", e.getMessage(), e);
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.demo.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Resultado ranqueado e imutável de {@code /global/topdecks/data}.
+ *
+ * Cada entrada já está serializada em JSON e na ordem final, então responder com os
+ * top {@code k} é só concatenar {@code k} fatias. O arquivo é mapeado em memória
+ * ({@code mmap}): depois de um restart o resultado volta a ser servido sem parse.
+ *
+ * Formato: {@code [int magic][int versão][int nStable][int nTrending][int offsets[2 + nStable + nTrending]][corpo]},
+ * onde o corpo contém o resumo seguido das entradas stable e trending.
+ */
+public final class RankedSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(RankedSnapshot.class);
+
+    private static final int MAGIC = 0x52534e50; // "RSNP"
+    private static final int VERSION = 1;
+
+    private static final byte[] SUMMARY = bytes("{\"summary\":");
+    private static final byte[] STABLE = bytes(",\"stable\":[");
+    private static final byte[] TRENDING = bytes("],\"trending\":[");
+    private static final byte[] END = bytes("]}");
+
+    private final ByteBuffer body;
+    private final int stableCount;
+    private final int trendingCount;
+    private final int[] offsets; // fim de cada segmento: [resumo, stable..., trending...]
+
+    private RankedSnapshot(ByteBuffer body, int stableCount, int trendingCount, int[] offsets) {
+        this.body = body;
+        this.stableCount = stableCount;
+        this.trendingCount = trendingCount;
+        this.offsets = offsets;
+    }
+
+    public int stableCount() {
+        return stableCount;
+    }
+
+    public int trendingCount() {
+        return trendingCount;
+    }
+
+    /** Resposta completa com no máximo {@code limit} decks por categoria. */
+    public byte[] toJson(int limit) {
+        int stable = Math.min(Math.max(limit, 0), stableCount);
+        int trending = Math.min(Math.max(limit, 0), trendingCount);
+
+        int size = SUMMARY.length + STABLE.length + TRENDING.length + END.length
+                + segmentBytes(0, 1)
+                + segmentBytes(1, 1 + stable) + Math.max(stable - 1, 0)
+                + segmentBytes(1 + stableCount, 1 + stableCount + trending) + Math.max(trending - 1, 0);
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(SUMMARY);
+        copy(out, 0);
+        out.put(STABLE);
+        for (int i = 0; i < stable; i++) {
+            if (i > 0) out.put((byte) ',');
+            copy(out, 1 + i);
+        }
+        out.put(TRENDING);
+        for (int i = 0; i < trending; i++) {
+            if (i > 0) out.put((byte) ',');
+            copy(out, 1 + stableCount + i);
+        }
+        out.put(END);
+        return out.array();
+    }
+
+    /** Grava o snapshot (arquivo temporário + rename atômico) e o devolve mapeado. */
+    public static RankedSnapshot write(Path path, byte[] summary, List<byte[]> stable, List<byte[]> trending) {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        int segments = 1 + stable.size() + trending.size();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + segments * 4 + 256 * segments);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(stable.size());
+            out.writeInt(trending.size());
+            int end = summary.length;
+            out.writeInt(end);
+            for (byte[] entry : stable) out.writeInt(end += entry.length);
+            for (byte[] entry : trending) out.writeInt(end += entry.length);
+            out.write(summary);
+            for (byte[] entry : stable) out.write(entry);
+            for (byte[] entry : trending) out.write(entry);
+
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(true);
+            }
+            // o mapeamento anterior continua válido: o rename só troca a entrada do diretório
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return map(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao gravar snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /** Mapeia um snapshot gravado por {@link #write}; {@code null} se não existir ou estiver inválido. */
+    public static RankedSnapshot map(Path path) {
+        if (!Files.exists(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (file.remaining() < 16 || file.getInt() != MAGIC || file.getInt() != VERSION) return null;
+            int stable = file.getInt();
+            int trending = file.getInt();
+            if (stable < 0 || trending < 0) return null;
+            int segments = 1 + stable + trending;
+            if ((long) segments * 4 > file.remaining()) return null;
+            int[] offsets = new int[segments];
+            for (int i = 0; i < segments; i++) offsets[i] = file.getInt();
+            ByteBuffer body = file.slice();
+            if (offsets[segments - 1] != body.remaining()) return null;
+            return new RankedSnapshot(body, stable, trending, offsets);
+        } catch (IOException e) {
+            log.warn("Erro ao mapear snapshot {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private int start(int segment) {
+        return segment == 0 ? 0 : offsets[segment - 1];
+    }
+
+    private int segmentBytes(int from, int to) {
+        return from >= to ? 0 : offsets[to - 1] - start(from);
+    }
+
+    private void copy(ByteBuffer out, int segment) {
+        int start = start(segment);
+        out.put(out.position(), body, start, offsets[segment] - start);
+        out.position(out.position() + offsets[segment] - start);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
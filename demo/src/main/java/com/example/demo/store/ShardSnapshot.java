@@ -0,0 +1,107 @@
+package com.example.demo.store;
+
+import com.example.demo.model.CardInfo;
+import com.example.demo.model.DeckKey;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Estado exportado por um nó da coleta particionada ({@link CheckpointStore#exportShard}): a
+ * partição {@code shard} de {@code shards}, com as regiões em que {@link #shardOf} dá {@code shard}.
+ *
+ * O coordenador guarda um snapshot por partição e fica com o "maior" numa ordem total: a
+ * {@code version} (último {@code crawledAt} das regiões), depois as partidas e por fim o checksum
+ * dos bytes. Como escolher o máximo não depende da ordem nem de repetições, o merge é comutativo e
+ * idempotente, e um nó que volta sem o estado (versão menor) não apaga o que já foi juntado.
+ * Partições diferentes cobrem regiões disjuntas; as batalhas vistas por mais de uma partição são
+ * contadas uma vez só a partir das linhas por batalha ({@code rows}, ver
+ * {@link com.example.demo.aggregate.BattleRows}) quando {@code hasRows}: todo registro com batalhas
+ * veio marcado como completo pelo nó ({@link CheckpointStore.Listener#rowsComplete}).
+ */
+public record ShardSnapshot(int shard, int shards, long version, long games, int regions, long battles, long rows,
+                            boolean hasRows, long checksum, byte[] bytes) {
+
+    /** Partição de uma região. */
+    public static int shardOf(int locationId, int shards) {
+        return Math.floorMod(locationId, shards);
+    }
+
+    /** Lê e valida os bytes de {@link CheckpointStore#exportShard}. */
+    public static ShardSnapshot parse(byte[] bytes) {
+        int[] header = {-1, 0};
+        long[] totals = new long[4]; // versão, partidas, IDs de batalha, linhas
+        long[] recordBattles = {0};
+        boolean[] complete = {true};
+        Set<Integer> regions = new HashSet<>();
+        CheckpointStore.read(bytes, new CheckpointStore.Listener() {
+            @Override
+            public void card(CardInfo card) {
+            }
+
+            @Override
+            public void region(int locationId) {
+                regions.add(locationId);
+            }
+
+            @Override
+            public void deck(DeckKey key, int games, int wins) {
+                totals[1] += games;
+            }
+
+            @Override
+            public void battle(long battleId, long battleTime) {
+                totals[2]++;
+                recordBattles[0]++;
+            }
+
+            @Override
+            public void battleRow(long battleId, long battleTime, DeckKey team, DeckKey opponent,
+                                  boolean win, boolean opponentWin) {
+                totals[3]++;
+            }
+
+            @Override
+            public void rowsComplete(boolean rows) {
+                if (!rows && recordBattles[0] > 0) complete[0] = false;
+                recordBattles[0] = 0;
+            }
+
+            @Override
+            public void regionCrawled(int locationId, long crawledAt) {
+                regions.add(locationId);
+                totals[0] = Math.max(totals[0], crawledAt);
+            }
+
+            @Override
+            public void shard(int shard, int shards) {
+                if (header[0] >= 0) throw new IllegalArgumentException("Snapshot com mais de uma partição");
+                header[0] = shard;
+                header[1] = shards;
+            }
+        });
+
+        int shard = header[0], shards = header[1];
+        if (shard < 0) throw new IllegalArgumentException("Snapshot sem partição (não veio de /global/shards/snapshot)");
+        if (shards < 1 || shard >= shards) {
+            throw new IllegalArgumentException("Partição inválida: " + shard + "/" + shards);
+        }
+        for (int region : regions) {
+            if (shardOf(region, shards) != shard) {
+                throw new IllegalArgumentException("Região " + region + " não pertence à partição " + shard + "/" + shards);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return new ShardSnapshot(shard, shards, totals[0], totals[1], regions.size(), totals[2], totals[3],
+                complete[0], crc.getValue(), bytes);
+    }
+
+    /** {@code true} se este snapshot ganha de {@code other} (mesma partição) no merge. */
+    public boolean newerThan(ShardSnapshot other) {
+        if (version != other.version) return version > other.version;
+        if (games != other.games) return games > other.games;
+        return checksum > other.checksum;
+    }
+}
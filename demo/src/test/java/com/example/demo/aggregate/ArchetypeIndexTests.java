@@ -0,0 +1,109 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchetypeIndexTests {
+
+	private static final int[] HOG = {26000021, 28000008, 26000010, 27000006, 26000030, 28000011, 26000038, 26000049};
+	private static final int[] GOLEM = {26000009, 26000015, 26000039, 26000048, 28000000, 28000012, 26000063, 26000014};
+
+	@Test
+	void groupsOneCardSwapsAndKeepsDifferentDecksApart() {
+		DeckKey hog = DeckKey.of(HOG);
+		DeckKey hogFireball = swap(HOG, 5, 28000000);   // troca o feitiço
+		DeckKey hogTornado = swap(HOG, 1, 28000012);
+		DeckKey hogTwoSwaps = swap(swapIds(HOG, 1, 28000012), 5, 28000000);
+		DeckKey golem = DeckKey.of(GOLEM);
+
+		assertEquals(7 / 9.0, ArchetypeIndex.similarity(hog, hogFireball), 1e-9);
+		assertEquals(0.6, ArchetypeIndex.similarity(hog, hogTwoSwaps), 1e-9);
+		assertEquals(1.0, ArchetypeIndex.similarity(hog, hog), 1e-9);
+
+		DeckAggregate decks = new DeckAggregate();
+		decks.add(hogFireball, 50, 25);
+		decks.add(hog, 300, 160);
+		decks.add(hogTornado, 20, 9);
+		decks.add(hogTwoSwaps, 10, 5);
+		decks.add(golem, 100, 48);
+
+		ArchetypeIndex index = new ArchetypeIndex(0.75);
+		index.addAll(decks);
+
+		// o mais jogado vira representante; as variantes de uma troca entram nele
+		int archetype = index.archetypeOf(hog);
+		assertEquals(hog, index.representative(archetype));
+		assertEquals(archetype, index.archetypeOf(hogFireball));
+		assertEquals(archetype, index.archetypeOf(hogTornado));
+		assertEquals(List.of(hog, hogFireball, hogTornado), index.members(archetype));
+		// duas trocas do representante (0.6) e um deck sem nada em comum ficam em arquétipos próprios
+		assertNotEquals(archetype, index.archetypeOf(hogTwoSwaps));
+		assertNotEquals(archetype, index.archetypeOf(golem));
+		assertEquals(3, index.size());
+		assertEquals(5, index.decks());
+		assertEquals(-1, index.archetypeOf(DeckKey.of(26000000)));
+
+		// incremental: decks já vistos não mudam de arquétipo, novos entram no mais parecido
+		int before = index.archetypeOf(hogTwoSwaps);
+		assertEquals(archetype, index.assign(swap(HOG, 7, 26000000)));
+		assertEquals(before, index.assign(hogTwoSwaps));
+		assertEquals(3, index.size());
+	}
+
+	@Test
+	void matchesExhaustiveRepresentativeScan() {
+		// decks gerados em famílias (base + algumas trocas) para ter grupos de verdade
+		Random rnd = new Random(11);
+		int[][] bases = new int[40][];
+		for (int b = 0; b < bases.length; b++) bases[b] = randomDeck(rnd);
+		DeckKey[] decks = new DeckKey[3000];
+		for (int i = 0; i < decks.length; i++) {
+			int[] ids = bases[rnd.nextInt(bases.length)].clone();
+			int swaps = rnd.nextInt(3);
+			for (int s = 0; s < swaps; s++) ids[rnd.nextInt(8)] = 26000000 + rnd.nextInt(100);
+			decks[i] = DeckKey.of(ids);
+		}
+
+		ArchetypeIndex index = new ArchetypeIndex(0.75);
+		int misses = 0, assigned = 0;
+		for (DeckKey deck : decks) {
+			if (index.archetypeOf(deck) >= 0) continue;
+			// melhor representante por varredura completa, antes de atribuir
+			double best = 0;
+			for (int a = 0; a < index.size(); a++) {
+				best = Math.max(best, ArchetypeIndex.similarity(deck, index.representative(a)));
+			}
+			int archetype = index.assign(deck);
+			assigned++;
+			double got = ArchetypeIndex.similarity(deck, index.representative(archetype));
+			if (best >= 0.75) {
+				if (got < best) misses++; // LSH não achou o melhor candidato
+			} else {
+				assertEquals(deck, index.representative(archetype));
+			}
+			assertTrue(got >= 0.75 || deck.equals(index.representative(archetype)));
+		}
+		assertTrue(misses <= assigned / 100, "candidatos perdidos pelo LSH: " + misses + " de " + assigned);
+		assertTrue(index.size() < index.decks() / 2);
+	}
+
+	private static int[] randomDeck(Random rnd) {
+		return rnd.ints(26000000, 26000100).distinct().limit(8).toArray();
+	}
+
+	private static int[] swapIds(int[] ids, int slot, int card) {
+		int[] copy = Arrays.copyOf(ids, ids.length);
+		copy[slot] = card;
+		return copy;
+	}
+
+	private static DeckKey swap(int[] ids, int slot, int card) {
+		return DeckKey.of(swapIds(ids, slot, card));
+	}
+}
@@ -0,0 +1,51 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BattleRowsTests {
+
+	private static final DeckKey HOG = DeckKey.of(26000021, 28000008, 26000010, 27000006, 26000030, 28000011, 26000038, 26000049);
+	private static final DeckKey GOLEM = DeckKey.of(26000009, 26000015, 26000039, 26000048, 28000000, 28000012, 26000063, 26000014);
+
+	@Test
+	void pruneForgetsOldRowsAndKeepsTheRestInOrder() {
+		BattleRows rows = new BattleRows();
+		for (int i = 0; i < 1_000; i++) {
+			// horários alternados: metade antiga, metade recente
+			rows.add(2L * i + 2, i % 2 == 0 ? 100 : 5_000 + i, i % 3 == 0 ? null : HOG, GOLEM, i % 2 == 0, i % 2 == 1);
+		}
+
+		assertEquals(500, rows.prune(1_000));
+		assertEquals(500, rows.size());
+		List<String> kept = new ArrayList<>();
+		rows.forEach((battleId, battleTime, team, opponent, win, opponentWin) ->
+				kept.add(battleId + "@" + battleTime + " " + (team != null) + " " + opponent.equals(GOLEM) + " " + win + opponentWin));
+		assertEquals("4@5001 true true falsetrue", kept.get(0));
+		assertEquals("8@5003 false true falsetrue", kept.get(1));
+		assertEquals("2000@5999 false true falsetrue", kept.get(499));
+
+		// continua aceitando linhas depois de encolher
+		rows.add(4_000, 9_000, HOG, GOLEM, true, false);
+		assertEquals(501, rows.size());
+		assertEquals(0, rows.prune(1_000));
+	}
+
+	@Test
+	void missingRowsCountUntilTheyLeaveTheHorizon() {
+		BattleRows rows = new BattleRows();
+		assertTrue(rows.complete());
+		rows.markMissing(700);
+		rows.markMissing(500);
+		assertFalse(rows.complete());
+		rows.prune(700);
+		assertFalse(rows.complete(), "a batalha de 700 ainda está dentro");
+		rows.prune(701);
+		assertTrue(rows.complete());
+	}
+}
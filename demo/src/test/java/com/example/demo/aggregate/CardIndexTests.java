@@ -0,0 +1,72 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardIndexTests {
+
+	private static final int HOG = 26000021;
+	private static final int LOG = 28000011;
+
+	@Test
+	void countersMatchScanOverDecks() {
+		Random rnd = new Random(3);
+		DeckAggregate decks = new DeckAggregate();
+		for (int i = 0; i < 2_000; i++) {
+			int[] ids = new int[8];
+			for (int s = 0; s < 8; s++) ids[s] = 26000000 + s * 12 + rnd.nextInt(12);
+			int games = 1 + rnd.nextInt(20);
+			decks.add(DeckKey.of(ids), games, rnd.nextInt(games + 1));
+		}
+		CardIndex index = new CardIndex();
+		index.addAll(decks);
+
+		// consulta O(cartas) = varredura O(decks)
+		for (int card : new int[]{26000000, 26000013, 26000095}) {
+			long games = 0, wins = 0, pairGames = 0, pairWins = 0;
+			int partner = 26000050;
+			for (DeckStats deck : decks.decks()) {
+				if (!deck.key().contains(card)) continue;
+				games += deck.games();
+				wins += deck.wins();
+				if (deck.key().contains(partner)) {
+					pairGames += deck.games();
+					pairWins += deck.wins();
+				}
+			}
+			assertEquals(games, index.games(card));
+			assertEquals(wins, index.wins(card));
+			CardIndex.Pair pair = index.synergies(card, 0, CardIndex.MAX_CARDS).stream()
+					.filter(p -> p.cardId() == partner).findFirst().orElseThrow();
+			assertEquals(pairGames, pair.games());
+			assertEquals(pairWins, pair.wins());
+		}
+		assertEquals(decks.totalGames(), index.totalGames());
+		assertEquals(96, index.size());
+	}
+
+	@Test
+	void synergiesRankPairsThatWinMoreTogether() {
+		CardIndex index = new CardIndex();
+		index.add(DeckKey.of(HOG, LOG, 26000010), 100, 70);   // juntas: 70%
+		index.add(DeckKey.of(HOG, 26000010), 100, 40);
+		index.add(DeckKey.of(LOG, 26000030), 100, 50);
+		index.add(DeckKey.of(HOG, 26000030), 10, 5);
+
+		List<CardIndex.Pair> pairs = index.synergies(HOG, 50, 10);
+		assertEquals(List.of(LOG, 26000010), pairs.stream().map(CardIndex.Pair::cardId).toList());
+		assertTrue(pairs.get(0).synergy() > 0);
+		assertEquals(100, pairs.get(0).games());
+
+		assertFalse(index.contains(26000001));
+		assertEquals(List.of(), index.synergies(26000001, 0, 10));
+		index.clear();
+		assertFalse(index.contains(HOG));
+		assertEquals(0, index.totalGames());
+	}
+}
@@ -0,0 +1,98 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckPartialsTests {
+
+	@Test
+	void reducedPartialsMatchSharedAggregateExactly() throws Exception {
+		long hour = 3_600_000L;
+		long now = 500_000L * hour;
+		DeckKey[] pool = new DeckKey[3_000];
+		for (int i = 0; i < pool.length; i++) pool[i] = DeckKey.of(26000000 + i % 100, 27000000 + i / 100);
+
+		DeckAggregate shared = new DeckAggregate();
+		DeckPartials partials = new DeckPartials();
+		List<Thread> workers = new ArrayList<>();
+		// os 8 seguram o slot ao mesmo tempo: uma parcial por tarefa simultânea
+		CountDownLatch started = new CountDownLatch(8);
+		for (int w = 0; w < 8; w++) {
+			long seed = w;
+			workers.add(new Thread(() -> {
+				Random rnd = new Random(seed);
+				try (DeckPartials.Slot slot = partials.acquire()) {
+					started.countDown();
+					awaitQuietly(started);
+					for (int i = 0; i < 40_000; i++) {
+						DeckKey key = pool[rnd.nextInt(pool.length)];
+						boolean win = rnd.nextBoolean();
+						// algumas partidas sem horário e algumas fora da janela de 7 dias
+						long battleTime = i % 10 == 0 ? 0 : now - rnd.nextInt(200) * hour;
+						shared.record(key, win, battleTime);
+						slot.record(key, win, battleTime);
+					}
+				}
+			}));
+		}
+		for (Thread worker : workers) worker.start();
+		for (Thread worker : workers) worker.join();
+
+		assertEquals(8, partials.partitions());
+		DeckAggregate reduced = partials.reduce();
+		assertEquals(shared.size(), reduced.size());
+		assertEquals(shared.totalGames(), reduced.totalGames());
+		assertEquals(shared.totalWins(), reduced.totalWins());
+		for (DeckStats deck : shared.decks()) {
+			DeckStats other = reduced.get(deck.key());
+			assertEquals(deck.games(), other.games());
+			assertEquals(deck.wins(), other.wins());
+			assertArrayEquals(deck.buckets(Integer.MIN_VALUE), other.buckets(Integer.MIN_VALUE));
+		}
+	}
+
+	@Test
+	void threadPerTaskReusesSlotsOfFinishedTasks() throws Exception {
+		// como com virtual threads: cada tarefa numa thread nova, no máximo 4 ao mesmo tempo
+		DeckKey key = DeckKey.of(26000000, 26000001);
+		DeckKey opponent = DeckKey.of(26000002, 26000003);
+		DeckPartials partials = new DeckPartials();
+		for (int round = 0; round < 50; round++) {
+			CountDownLatch started = new CountDownLatch(4);
+			List<Thread> tasks = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				tasks.add(new Thread(() -> {
+					try (DeckPartials.Slot slot = partials.acquire()) {
+						started.countDown();
+						awaitQuietly(started);
+						slot.record(key, true, 0);
+						slot.recordMatchup(key, opponent, true, false);
+					}
+				}));
+			}
+			for (Thread task : tasks) task.start();
+			for (Thread task : tasks) task.join();
+		}
+
+		assertEquals(4, partials.partitions());
+		DeckAggregate reduced = partials.reduce();
+		assertEquals(200, reduced.get(key).games());
+		assertEquals(200, reduced.get(key).wins());
+		assertEquals(200, partials.reduceMatchups().matchups(key, 0).get(0).games());
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckRankingTests {
+
+	@Test
+	void pagesMatchFullSort() {
+		Random rnd = new Random(3);
+		DeckAggregate decks = new DeckAggregate();
+		for (int i = 0; i < 2_000; i++) {
+			int games = 40 + rnd.nextInt(400);
+			decks.add(DeckKey.of(26000000 + i % 110, 27000000 + i / 110), games, rnd.nextInt(games + 1));
+		}
+		// empates de score devem manter uma ordem estável entre páginas
+		decks.add(DeckKey.of(28000001), 300, 150);
+		decks.add(DeckKey.of(28000002), 300, 150);
+
+		DeckRanking ranking = DeckRanking.of(decks, key -> List.of());
+		List<Double> expected = new ArrayList<>();
+		for (DeckStats deck : decks.decks()) {
+			if (deck.games() >= DeckRanking.MIN_STABLE) {
+				expected.add(DeckRanking.wilsonLowerBound(deck.wins(), deck.games(), DeckRanking.Z95) * 100.0);
+			}
+		}
+		expected.sort(Comparator.reverseOrder());
+		assertEquals(expected.size(), ranking.stableCount());
+
+		List<Map<String, Object>> all = ranking.stable(0, Integer.MAX_VALUE);
+		assertEquals(expected, all.stream().map(d -> (Double) d.get("wilsonLB")).toList());
+
+		List<Map<String, Object>> paged = new ArrayList<>();
+		for (int offset = 0; offset < all.size(); offset += 7) paged.addAll(ranking.stable(offset, 7));
+		assertEquals(all, paged);
+
+		assertTrue(ranking.trending(ranking.trendingCount(), 20).isEmpty());
+		assertTrue(ranking.stable(0, 0).isEmpty());
+	}
+
+	@Test
+	void windowsRollForwardAndTrendingRanksShareGrowth() {
+		long hour = 3_600_000L;
+		long now = 1_000_000L * hour;
+		DeckKey steady = DeckKey.of(26000001);
+		DeckKey rising = DeckKey.of(26000002);
+		DeckKey old = DeckKey.of(26000003);
+		DeckAggregate decks = new DeckAggregate();
+		for (int i = 0; i < 600; i++) {
+			// steady: mesmo ritmo nos 7 dias; rising: quase tudo nas últimas 24h
+			decks.record(steady, i % 2 == 0, now - (i % 168) * hour);
+			decks.record(rising, i % 3 == 0, now - (i < 500 ? i % 24 : 24 + i % 144) * hour);
+		}
+		decks.record(old, true, now - 8 * 24 * hour);
+		decks.record(old, true, now - 2 * hour); // avança a janela do deck e descarta o balde de 8 dias
+
+		long[] counts = new long[4];
+		decks.get(old).windowCounts(TimeWindow.hour(now), counts);
+		assertArrayEquals(new long[]{1, 1, 1, 1}, counts);
+		assertEquals(2, decks.get(old).games());
+
+		decks.get(steady).windowCounts(TimeWindow.hour(now), counts);
+		assertEquals(600, counts[2]);
+		// um dia depois, as horas mais antigas saem da janela de 7 dias
+		decks.get(steady).windowCounts(TimeWindow.hour(now + 24 * hour), counts);
+		assertTrue(counts[2] < 600);
+
+		DeckRanking day = DeckRanking.of(decks, TimeWindow.DAY, now, key -> List.of());
+		List<Map<String, Object>> trending = day.trending(0, 10);
+		assertEquals(2, trending.size());
+		assertEquals(500, trending.get(0).get("games"));
+		assertTrue((Double) trending.get(0).get("shareGrowth") > (Double) trending.get(1).get("shareGrowth"));
+		assertEquals(1, day.stableCount());
+
+		DeckRanking all = DeckRanking.of(decks, TimeWindow.ALL, now, key -> List.of());
+		assertEquals(2, all.stableCount());
+		assertEquals(1202, all.totalGames());
+	}
+}
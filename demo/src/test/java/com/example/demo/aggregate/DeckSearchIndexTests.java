@@ -0,0 +1,88 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckSearchIndexTests {
+
+	// custo conhecido só para tropas (26xxxxxx): construções/feitiços ficam fora da média
+	private static int elixir(int cardId) {
+		return cardId / 1_000_000 == 26 ? 1 + cardId % 7 : -1;
+	}
+
+	@Test
+	void filtersAndRankingMatchFullScan() {
+		Random rnd = new Random(11);
+		DeckAggregate decks = new DeckAggregate();
+		for (int i = 0; i < 5_000; i++) {
+			int[] ids = new int[8];
+			for (int s = 0; s < 8; s++) ids[s] = (s < 6 ? 26000000 : 28000000) + s * 5 + rnd.nextInt(5);
+			int games = 1 + rnd.nextInt(400);
+			decks.add(DeckKey.of(ids), games, rnd.nextInt(games + 1));
+		}
+		DeckSearchIndex index = DeckSearchIndex.of(decks, DeckSearchIndexTests::elixir);
+		assertEquals(decks.size(), index.size());
+
+		for (int q = 0; q < 200; q++) {
+			int[] include = rnd.nextInt(4) == 0 ? new int[0] : new int[]{26000000 + rnd.nextInt(5), 26000005 + rnd.nextInt(5)};
+			int[] exclude = rnd.nextBoolean() ? new int[0] : new int[]{26000010 + rnd.nextInt(5)};
+			int minGames = rnd.nextInt(300);
+			double maxElixir = rnd.nextBoolean() ? Double.POSITIVE_INFINITY : 2.5 + rnd.nextInt(3);
+			DeckSearchIndex.Sort sort = DeckSearchIndex.Sort.values()[rnd.nextInt(3)];
+
+			List<DeckStats> expected = new ArrayList<>();
+			for (DeckStats deck : decks.decks()) {
+				DeckKey key = deck.key();
+				if (deck.games() < minGames) continue;
+				boolean ok = true;
+				for (int id : include) ok &= key.contains(id);
+				for (int id : exclude) ok &= !key.contains(id);
+				double total = 0;
+				int known = 0;
+				for (int id : key.cardIds()) {
+					if (elixir(id) >= 0) {
+						total += elixir(id);
+						known++;
+					}
+				}
+				if (ok && (float) (total / known) <= maxElixir) expected.add(deck);
+			}
+			Comparator<DeckStats> order = switch (sort) {
+				case WILSON -> Comparator.comparingDouble(d -> DeckRanking.wilsonLowerBound(d.wins(), d.games(), DeckRanking.Z95));
+				case WINRATE -> Comparator.comparingDouble(d -> d.wins() / (double) d.games());
+				case GAMES -> Comparator.comparingInt(DeckStats::games);
+			};
+			expected.sort(order.reversed());
+
+			DeckSearchIndex.Result result = index.search(
+					new DeckSearchIndex.Query(include, exclude, minGames, 0, maxElixir, sort), 5, 10);
+			assertEquals(expected.size(), result.total());
+			assertEquals(Math.max(0, Math.min(10, expected.size() - 5)), result.ordinals().length);
+			for (int i = 0; i < result.ordinals().length; i++) {
+				// empates podem trocar de posição: compara o critério, não a chave
+				DeckStats want = expected.get(5 + i);
+				int ordinal = result.ordinals()[i];
+				assertEquals(0, order.compare(want, decks.get(index.key(ordinal))), "query " + q + " posição " + i);
+			}
+		}
+	}
+
+	@Test
+	void unknownCardsAndEmptyIndex() {
+		DeckSearchIndex empty = DeckSearchIndex.of(new DeckAggregate(), id -> 3);
+		DeckSearchIndex.Result none = empty.search(new DeckSearchIndex.Query(new int[]{26000000}, new int[0], 0, 0,
+				Double.POSITIVE_INFINITY, DeckSearchIndex.Sort.WILSON), 0, 20);
+		assertEquals(0, none.total());
+		assertEquals(0, none.ordinals().length);
+		assertThrows(IllegalArgumentException.class, () -> DeckSearchIndex.Sort.parse("elixir"));
+		assertThrows(IllegalArgumentException.class, () -> empty.search(new DeckSearchIndex.Query(new int[]{42},
+				new int[0], 0, 0, Double.POSITIVE_INFINITY, DeckSearchIndex.Sort.GAMES), 0, 20));
+	}
+}
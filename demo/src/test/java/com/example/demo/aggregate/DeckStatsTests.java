@@ -0,0 +1,69 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckStatsTests {
+
+	private static final DeckKey DECK = DeckKey.of(26000021, 28000008, 26000010, 27000006, 26000030, 28000011, 26000038, 26000049);
+
+	@Test
+	void ringMatchesSparseBucketsAcrossTheSwitch() {
+		Random rnd = new Random(5);
+		for (int round = 0; round < 20; round++) {
+			DeckStats stats = new DeckStats(DECK);
+			TreeMap<Integer, long[]> expected = new TreeMap<>();
+			int newest = 0;
+			int hour = 480_000;
+			for (int i = 0; i < 2_000; i++) {
+				// quase sempre perto da hora atual, às vezes pulando dias à frente ou voltando
+				hour += rnd.nextInt(10) == 0 ? rnd.nextInt(200) - 60 : rnd.nextInt(3) - 1;
+				boolean win = rnd.nextBoolean();
+				stats.addBucket(hour, 1, win ? 1 : 0);
+
+				if (newest != 0 && hour <= newest - DeckStats.BUCKET_HOURS) continue;
+				newest = Math.max(newest, hour);
+				expected.computeIfAbsent(hour, h -> new long[2])[0]++;
+				if (win) expected.get(hour)[1]++;
+				expected.headMap(newest - DeckStats.BUCKET_HOURS, true).clear();
+			}
+
+			long[] buckets = stats.buckets(Integer.MIN_VALUE);
+			assertEquals(expected.size(), buckets.length);
+			int i = 0;
+			for (Map.Entry<Integer, long[]> entry : expected.entrySet()) {
+				assertEquals(DeckStats.bucket(entry.getKey(), (int) entry.getValue()[0], (int) entry.getValue()[1]), buckets[i++]);
+			}
+
+			long[] counts = new long[4];
+			stats.windowCounts(newest, counts);
+			long[] want = new long[4];
+			for (Map.Entry<Integer, long[]> entry : expected.tailMap(newest - TimeWindow.WEEK.hours(), false).entrySet()) {
+				want[2] += entry.getValue()[0];
+				want[3] += entry.getValue()[1];
+				if (entry.getKey() > newest - TimeWindow.DAY.hours()) {
+					want[0] += entry.getValue()[0];
+					want[1] += entry.getValue()[1];
+				}
+			}
+			assertArrayEquals(want, counts);
+		}
+	}
+
+	@Test
+	void staysSparseForFewHours() {
+		DeckStats stats = new DeckStats(DECK);
+		for (int hour = 0; hour < DeckStats.RING_AT; hour++) stats.addBucket(480_000 + hour, 2, 1);
+		stats.addBucket(480_000, 1, 0);
+		long[] buckets = stats.buckets(480_010);
+		assertEquals(DeckStats.RING_AT - 10, buckets.length);
+		assertEquals(DeckStats.bucket(480_010, 2, 1), buckets[0]);
+		assertEquals(DeckStats.bucket(480_000, 3, 1), stats.buckets(Integer.MIN_VALUE)[0]);
+	}
+}
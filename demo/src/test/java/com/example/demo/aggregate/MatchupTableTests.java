@@ -0,0 +1,82 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchupTableTests {
+
+	private static final DeckKey HOG = DeckKey.of(26000021, 28000008, 26000010, 27000006, 26000030, 28000011, 26000038, 26000049);
+	private static final DeckKey GOLEM = DeckKey.of(26000009, 26000015, 26000039, 26000048, 28000000, 28000012, 26000063, 26000014);
+	private static final DeckKey XBOW = DeckKey.of(27000008, 26000030, 26000038, 28000011, 26000010, 27000006, 26000043, 28000008);
+
+	@Test
+	void countsBothSidesAndMatchesPerPairScan() {
+		Random rnd = new Random(7);
+		DeckKey[] decks = new DeckKey[60];
+		for (int i = 0; i < decks.length; i++) {
+			int[] ids = new int[8];
+			for (int s = 0; s < 8; s++) ids[s] = 26000000 + s * 10 + rnd.nextInt(10);
+			decks[i] = DeckKey.of(ids);
+		}
+		MatchupTable table = new MatchupTable();
+		Map<List<DeckKey>, int[]> expected = new HashMap<>(); // (deck, adversário) -> games, wins, losses
+		for (int i = 0; i < 20_000; i++) {
+			DeckKey deck = decks[rnd.nextInt(decks.length)];
+			DeckKey opponent = decks[rnd.nextInt(decks.length)];
+			int outcome = rnd.nextInt(3); // 0 derrota, 1 vitória, 2 empate
+			table.record(deck, opponent, outcome == 1, outcome == 0);
+			if (deck.equals(opponent)) continue;
+			int[] forward = expected.computeIfAbsent(List.of(deck, opponent), k -> new int[3]);
+			int[] backward = expected.computeIfAbsent(List.of(opponent, deck), k -> new int[3]);
+			forward[0]++;
+			backward[0]++;
+			if (outcome == 1) { forward[1]++; backward[2]++; }
+			if (outcome == 0) { forward[2]++; backward[1]++; }
+		}
+
+		assertEquals(expected.size() / 2, table.pairs());
+		for (DeckKey deck : decks) {
+			for (MatchupTable.Matchup matchup : table.matchups(deck, 1)) {
+				int[] counts = expected.get(List.of(deck, matchup.opponent()));
+				assertArrayEquals(counts, new int[]{matchup.games(), matchup.wins(), matchup.losses()});
+			}
+		}
+
+		// reduzir parciais dá o mesmo que registrar tudo numa tabela só
+		MatchupTable merged = new MatchupTable();
+		merged.addAll(table);
+		merged.addAll(table);
+		for (MatchupTable.Matchup matchup : merged.matchups(decks[0], 1)) {
+			int[] counts = expected.get(List.of(decks[0], matchup.opponent()));
+			assertArrayEquals(new int[]{2 * counts[0], 2 * counts[1], 2 * counts[2]},
+					new int[]{matchup.games(), matchup.wins(), matchup.losses()});
+		}
+	}
+
+	@Test
+	void countersRankByConfidenceAndRespectPairLimit() {
+		MatchupTable table = new MatchupTable(2);
+		table.add(HOG, GOLEM, 100, 40, 60);  // golem ganha 60 de 100
+		table.add(XBOW, HOG, 3, 3, 0);       // x-bow ganha 3 de 3: winrate maior, confiança menor
+		table.add(GOLEM, XBOW, 5, 1, 4);     // tabela cheia: par novo descartado
+
+		List<MatchupTable.Matchup> counters = table.counters(HOG, 1, 10);
+		assertEquals(List.of(GOLEM, XBOW), counters.stream().map(MatchupTable.Matchup::opponent).toList());
+		assertEquals(new MatchupTable.Matchup(GOLEM, 100, 40, 60), counters.get(0));
+		assertEquals(1, table.counters(HOG, 50, 10).size());
+		assertEquals(2, table.pairs());
+		assertEquals(5, table.dropped());
+
+		// pares já conhecidos continuam somando com a tabela cheia
+		table.record(GOLEM, HOG, true, false);
+		assertEquals(new MatchupTable.Matchup(GOLEM, 101, 40, 61), table.counters(HOG, 1, 1).get(0));
+		assertTrue(table.matchups(DeckKey.of(26000000), 1).isEmpty());
+	}
+}
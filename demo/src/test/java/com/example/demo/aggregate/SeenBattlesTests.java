@@ -0,0 +1,86 @@
+package com.example.demo.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeenBattlesTests {
+
+	@Test
+	void addsEachIdOnce() {
+		SeenBattles seen = new SeenBattles();
+		Random rnd = new Random(1);
+		long[] ids = new long[50_000];
+		for (int i = 0; i < ids.length; i++) ids[i] = rnd.nextLong() | 1;
+
+		for (long id : ids) assertTrue(seen.add(id));
+		for (long id : ids) assertFalse(seen.add(id));
+		assertEquals(ids.length, seen.size());
+
+		long[] stored = seen.toArray();
+		Arrays.sort(stored);
+		Arrays.sort(ids);
+		assertArrayEquals(ids, stored);
+
+		// 0 = batalha sem identidade: sempre conta
+		assertTrue(seen.add(0));
+		assertTrue(seen.add(0));
+		assertFalse(seen.contains(0));
+	}
+
+	@Test
+	void addSideTellsWhetherTheOtherSideWasSeen() {
+		SeenBattles seen = new SeenBattles();
+		long battle = 0x5eed_0000_0000_0042L;
+
+		assertEquals(SeenBattles.Sighting.BATTLE, seen.addSide(battle, 1000));
+		assertEquals(SeenBattles.Sighting.SEEN, seen.addSide(battle, 1000));
+		assertEquals(SeenBattles.Sighting.SIDE, seen.addSide(battle ^ 1, 1000));
+		assertEquals(SeenBattles.Sighting.SEEN, seen.addSide(battle ^ 1, 1000));
+		assertEquals(2, seen.size());
+
+		seen.prune(2000);
+		assertEquals(SeenBattles.Sighting.SEEN, seen.addSide(battle, 1000), "anterior ao horizonte");
+		assertEquals(SeenBattles.Sighting.BATTLE, seen.addSide(0, 0), "sem identidade: sempre conta");
+	}
+
+	@Test
+	void removeKeepsTheOtherIdsReachable() {
+		SeenBattles seen = new SeenBattles();
+		Random rnd = new Random(2);
+		long[] ids = new long[20_000];
+		for (int i = 0; i < ids.length; i++) ids[i] = rnd.nextLong() | 1;
+		for (long id : ids) seen.add(id);
+
+		// metade sai; as que colidiram com elas continuam achadas
+		for (int i = 0; i < ids.length; i += 2) assertTrue(seen.remove(ids[i]));
+		assertFalse(seen.remove(ids[0]));
+		assertEquals(ids.length / 2, seen.size());
+		for (int i = 0; i < ids.length; i++) assertEquals(i % 2 == 1, seen.contains(ids[i]));
+		assertTrue(seen.add(ids[0]), "esquecida conta de novo");
+	}
+
+	@Test
+	void pruneForgetsOldBattlesAndRejectsThemAfterwards() {
+		SeenBattles seen = new SeenBattles();
+		for (long id = 1; id <= 1000; id++) seen.add(id * 0x9E3779B97F4A7C15L, id);
+		seen.add(7, Long.MAX_VALUE); // sem horário
+
+		assertEquals(500, seen.prune(501));
+		assertEquals(501, seen.size());
+		SeenBattles.Entries entries = seen.entries();
+		for (long time : entries.times()) assertTrue(time >= 501);
+		assertTrue(seen.contains(600 * 0x9E3779B97F4A7C15L));
+		assertFalse(seen.contains(100 * 0x9E3779B97F4A7C15L));
+
+		// esquecida e reaparecendo: continua sem contar
+		assertFalse(seen.add(100 * 0x9E3779B97F4A7C15L, 100));
+		assertTrue(seen.add(2000 * 0x9E3779B97F4A7C15L, 2000));
+		// o horizonte não volta
+		assertEquals(0, seen.prune(10));
+		assertFalse(seen.add(200 * 0x9E3779B97F4A7C15L, 200));
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.demo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTests {
+
+	private final AtomicLong now = new AtomicLong();
+	private final List<Runnable> refreshes = new ArrayList<>();
+
+	private ResultCache<String, Integer> cache(int maxEntries) {
+		return new ResultCache<>(Duration.ofSeconds(10), Duration.ofSeconds(20), maxEntries, refreshes::add, now::get);
+	}
+
+	@Test
+	void servesFreshThenStaleWhileRevalidating() {
+		ResultCache<String, Integer> cache = cache(8);
+		AtomicInteger loads = new AtomicInteger();
+
+		assertEquals(1, cache.get("br", k -> loads.incrementAndGet()));
+		assertEquals(1, cache.get("br", k -> loads.incrementAndGet()));
+
+		now.addAndGet(Duration.ofSeconds(15).toNanos());
+		assertEquals(1, cache.get("br", k -> loads.incrementAndGet()));
+		assertEquals(1, cache.get("br", k -> loads.incrementAndGet()));
+		assertEquals(1, refreshes.size(), "só um recálculo em segundo plano");
+		refreshes.get(0).run();
+		assertEquals(2, cache.get("br", k -> loads.incrementAndGet()));
+
+		// depois de ttl + stale o valor não é mais servido
+		now.addAndGet(Duration.ofSeconds(31).toNanos());
+		assertEquals(3, cache.get("br", k -> loads.incrementAndGet()));
+
+		assertEquals(2L, cache.stats().get("misses"));
+		assertEquals(2L, cache.stats().get("staleHits"));
+		assertEquals(1L, cache.stats().get("refreshes"));
+	}
+
+	@Test
+	void coalescesConcurrentMisses() throws Exception {
+		ResultCache<String, Integer> cache = cache(8);
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger loads = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			results.add(pool.submit(() -> cache.get("br", k -> {
+				loading.countDown();
+				await(release);
+				return loads.incrementAndGet();
+			})));
+			loading.await();
+			for (int i = 0; i < 3; i++) results.add(pool.submit(() -> cache.get("br", k -> loads.incrementAndGet())));
+			while ((long) cache.stats().get("coalesced") < 3) Thread.onSpinWait();
+			release.countDown();
+			for (Future<Integer> result : results) assertEquals(1, result.get(5, TimeUnit.SECONDS));
+			assertEquals(1, loads.get());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedAndRetriesFailures() {
+		ResultCache<String, Integer> cache = cache(2);
+		cache.get("a", k -> 1);
+		cache.get("b", k -> 2);
+		cache.get("a", k -> -1);
+		cache.get("c", k -> 3);
+		assertEquals(1, cache.get("a", k -> -1));
+		assertEquals(20, cache.get("b", k -> 20), "b foi o menos usado e saiu do cache");
+
+		assertThrows(IllegalStateException.class, () -> cache.get("x", k -> { throw new IllegalStateException("falhou"); }));
+		assertEquals(7, cache.get("x", k -> 7));
+	}
+
+	@Test
+	void keyWithLoadInFlightIsNotEvicted() throws Exception {
+		ResultCache<String, Integer> cache = cache(1);
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger loads = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			Future<Integer> first = pool.submit(() -> cache.get("br", k -> {
+				loading.countDown();
+				await(release);
+				return loads.incrementAndGet();
+			}));
+			loading.await();
+			// outra chave enche o cache enquanto "br" ainda calcula
+			assertEquals(9, cache.get("us", k -> 9));
+			Future<Integer> second = pool.submit(() -> cache.get("br", k -> loads.incrementAndGet()));
+			while ((long) cache.stats().get("coalesced") < 1 && !second.isDone()) Thread.onSpinWait();
+			release.countDown();
+			assertEquals(1, first.get(5, TimeUnit.SECONDS));
+			assertEquals(1, second.get(5, TimeUnit.SECONDS));
+			assertEquals(1, loads.get());
+			assertEquals(1, cache.size(), "terminado o cálculo, o limite volta a valer");
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
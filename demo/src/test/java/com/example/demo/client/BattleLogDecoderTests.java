@@ -0,0 +1,102 @@
+package com.example.demo.client;
+
+import com.example.demo.model.BattleRecord;
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BattleLogDecoderTests {
+
+	private static final String BATTLELOG = """
+			[
+			  {"type": "PvP", "battleTime": "20251004T120000.000Z", "arena": {"id": 54000001, "name": "Legendary"},
+			   "gameMode": {"id": 72000006, "name": "Ladder"},
+			   "team": [{"tag": "#AAA", "crowns": 3, "cards": [
+			     {"name": "Knight", "id": 26000000, "level": 14, "elixirCost": 3, "iconUrls": {"medium": "k.png"}},
+			     {"name": "Archers", "id": 26000001, "elixirCost": 3, "iconUrls": {"medium": "a.png", "evolutionMedium": "ae.png"}},
+			     {"name": "Goblins", "id": 26000002, "elixirCost": 2, "iconUrls": {"medium": "g.png"}},
+			     {"name": "Giant", "id": 26000003, "elixirCost": 5, "iconUrls": {"medium": "gi.png"}},
+			     {"name": "P.E.K.K.A", "id": 26000004, "elixirCost": 7, "iconUrls": {"medium": "p.png"}},
+			     {"name": "Minions", "id": 26000005, "elixirCost": 3, "iconUrls": {"medium": "m.png"}},
+			     {"name": "Cannon", "id": 27000000, "elixirCost": 3, "iconUrls": {"medium": "c.png"}},
+			     {"name": "Mirror", "id": 28000006, "iconUrls": {"medium": "mi.png"}}],
+			     "supportCards": [{"name": "Tower Princess", "id": 159000000}]}],
+			   "opponent": [{"tag": "#BBB", "crowns": 1, "cards": [
+			     {"name": "Hog Rider", "id": 26000021, "elixirCost": 4, "iconUrls": {"medium": "h.png"}},
+			     {"name": "Fireball", "id": 28000000, "elixirCost": 4, "iconUrls": {"medium": "f.png"}}]}]},
+			  {"type": "2v2", "gameMode": {"id": 72000009},
+			   "team": [{"crowns": 0, "cards": [{"name": "Knight", "id": 26000000}]}, {"crowns": 0, "cards": [{"id": 26000001}]}],
+			   "opponent": [{"crowns": 2}]},
+			  {"type": "boatBattle", "team": [{"crowns": 0}]}
+			]
+			""";
+
+	@Test
+	void decodesAtEveryChunkBoundary() {
+		byte[] json = BATTLELOG.getBytes(StandardCharsets.UTF_8);
+		for (int split = 1; split < json.length; split++) {
+			CardDictionary cards = new CardDictionary();
+			BattleLogDecoder decoder = new BattleLogDecoder(cards);
+			List<BattleRecord> battles = new ArrayList<>();
+			battles.addAll(decoder.feed(ByteBuffer.wrap(json, 0, split)));
+			battles.addAll(decoder.feed(ByteBuffer.wrap(json, split, json.length - split)));
+			battles.addAll(decoder.finish());
+			assertBattles(battles, cards);
+		}
+	}
+
+	@Test
+	void decodesWholeBody() {
+		CardDictionary cards = new CardDictionary();
+		assertBattles(BattleLogDecoder.decode(BATTLELOG.getBytes(StandardCharsets.UTF_8), cards), cards);
+	}
+
+	private static void assertBattles(List<BattleRecord> battles, CardDictionary cards) {
+		assertEquals(2, battles.size());
+
+		BattleRecord ladder = battles.get(0);
+		assertEquals(72000006, ladder.gameModeId());
+		assertTrue(ladder.win());
+		assertEquals(DeckKey.of(26000000, 26000001, 26000002, 26000003, 26000004, 26000005, 27000000, 28000006),
+				ladder.teamDeck());
+		assertEquals("Archers", cards.get(26000001).name());
+		assertEquals("a.png", cards.get(26000001).iconUrl());
+		assertEquals(0, cards.get(28000006).elixirCost());
+		assertEquals(DeckKey.of(26000021, 28000000), ladder.opponentDeck());
+		assertFalse(ladder.opponentWin());
+		assertEquals("Hog Rider", cards.get(26000021).name());
+		assertEquals(java.time.Instant.parse("2025-10-04T12:00:00Z").toEpochMilli(), ladder.battleTime());
+		assertNotEquals(0, ladder.battleId());
+
+		BattleRecord duo = battles.get(1);
+		assertEquals(72000009, duo.gameModeId());
+		assertFalse(duo.win());
+		assertEquals(DeckKey.of(26000000), duo.teamDeck());
+		assertEquals(0, duo.battleId(), "sem battleTime/tags a batalha não tem identidade");
+	}
+
+	@Test
+	void sameBattleFromTheOtherSideDiffersOnlyInTheSideBit() {
+		String mine = """
+				[{"battleTime": "20251004T120000.000Z", "gameMode": {"id": 72000006},
+				  "team": [{"tag": "#AAA", "crowns": 3}], "opponent": [{"tag": "#BBB", "crowns": 1}]}]
+				""";
+		String theirs = """
+				[{"battleTime": "20251004T120000.000Z", "gameMode": {"id": 72000006},
+				  "team": [{"tag": "#BBB", "crowns": 1}], "opponent": [{"tag": "#AAA", "crowns": 3}]}]
+				""";
+		String later = mine.replace("120000", "120500");
+		CardDictionary cards = new CardDictionary();
+		long id = BattleLogDecoder.decode(mine.getBytes(StandardCharsets.UTF_8), cards).get(0).battleId();
+		// mesmo ID de batalha, lado do dono do log no bit mais baixo
+		assertEquals(id ^ 1, BattleLogDecoder.decode(theirs.getBytes(StandardCharsets.UTF_8), cards).get(0).battleId());
+		assertEquals(id, BattleLogDecoder.decode(mine.getBytes(StandardCharsets.UTF_8), cards).get(0).battleId());
+		assertNotEquals(id, BattleLogDecoder.decode(later.getBytes(StandardCharsets.UTF_8), cards).get(0).battleId());
+	}
+}
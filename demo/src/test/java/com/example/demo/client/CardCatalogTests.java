@@ -0,0 +1,37 @@
+package com.example.demo.client;
+
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardCatalogTests {
+
+	@Test
+	void refreshKeepsEtagWhenUnchangedAndUpdatesRenderedCards() {
+		AtomicReference<String> body = new AtomicReference<>("""
+				{"items": [{"name": "Knight", "id": 26000000, "elixirCost": 3, "iconUrls": {"medium": "k.png"}}],
+				 "supportItems": [{"name": "Tower Princess", "id": 159000000, "iconUrls": {"medium": "tp.png"}}]}""");
+		RoyaleApiClient client = new RoyaleApiClient(null, null, null, 0) {
+			@Override
+			public String getCards() {
+				return body.get();
+			}
+		};
+		CardDictionary dictionary = new CardDictionary();
+		CardCatalog catalog = new CardCatalog(client, dictionary);
+
+		CardCatalog.Cards first = catalog.get();
+		assertEquals(2, first.size());
+		assertSame(first, catalog.get());
+		assertSame(first, catalog.refresh());
+		assertEquals("Knight", dictionary.render(DeckKey.of(26000000)).get(0).get("name"));
+
+		body.set(body.get().replace("Knight", "Cavaleiro"));
+		CardCatalog.Cards second = catalog.refresh();
+		assertNotEquals(first.etag(), second.etag());
+		assertEquals("Cavaleiro", dictionary.render(DeckKey.of(26000000)).get(0).get("name"));
+	}
+}
@@ -0,0 +1,72 @@
+package com.example.demo.client;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FetchExecutorTests {
+
+	@Test
+	void boundsRunningTasksByThrottleLimit() throws Exception {
+		FetchExecutor fetches = new FetchExecutor(true, 16, new RequestThrottle(10, 10, 3, 8));
+		try {
+			// Java 17 cai para o pool de plataforma; Java 21+ usa virtual threads
+			assertEquals(Runtime.version().feature() >= 21, fetches.virtual());
+			assertEquals(3, peak(fetches, 40, 5));
+			assertEquals(0, fetches.active());
+		} finally {
+			fetches.destroy();
+		}
+	}
+
+	@Test
+	void platformPoolFollowsAdaptiveLimit() throws Exception {
+		RequestThrottle throttle = new RequestThrottle(10_000, 10_000, 2, 64);
+		FetchExecutor fetches = new FetchExecutor(false, 8, throttle);
+		try {
+			assertFalse(fetches.virtual());
+			// limite AIMD ainda no mínimo: só 2 das 8 threads buscam, o resto espera vaga
+			assertEquals(2, peak(fetches, 40, 20));
+
+			// respostas bem-sucedidas fazem o limite crescer; as threads do pool passam a ser o teto
+			Flux.range(0, 2_000).flatMap(i -> throttle.throttle(Mono.just(i)), 64).blockLast(Duration.ofSeconds(10));
+			assertTrue(throttle.concurrencyLimit() > 8);
+			assertEquals(8, peak(fetches, 40, 20));
+
+			// 429: o limite cai pela metade e as buscas em andamento acompanham
+			while (throttle.concurrencyLimit() > 4) throttle.onThrottled(Duration.ZERO);
+			assertEquals(throttle.concurrencyLimit(), peak(fetches, 40, 20));
+			assertEquals(0, fetches.waiting());
+		} finally {
+			fetches.destroy();
+		}
+	}
+
+	// maior número de tarefas rodando ao mesmo tempo em {@code count} tarefas de {@code sleepMillis}
+	private static int peak(FetchExecutor fetches, int count, long sleepMillis) throws Exception {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+		List<CompletableFuture<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			tasks.add(fetches.run(() -> {
+				peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(sleepMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+			}));
+		}
+		CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).get();
+		return peak.get();
+	}
+}
@@ -0,0 +1,112 @@
+package com.example.demo.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestThrottleTests {
+
+	@Test
+	void neverExceedsConcurrencyLimitAndReleasesAllPermits() {
+		RequestThrottle throttle = new RequestThrottle(10_000, 10_000, 4, 4);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+
+		Flux.range(0, 200)
+				.flatMap(i -> throttle.throttle(Mono.defer(() -> {
+					peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+					return Mono.delay(Duration.ofMillis(1)).doOnTerminate(running::decrementAndGet);
+				})), 64)
+				.blockLast(Duration.ofSeconds(30));
+
+		assertEquals(4, peak.get());
+		awaitIdle(throttle);
+	}
+
+	@Test
+	void cancelledWaitersDoNotLeakPermits() {
+		RequestThrottle throttle = new RequestThrottle(10_000, 10_000, 1, 1);
+		Flux.range(0, 50)
+				.flatMap(i -> throttle.throttle(Mono.delay(Duration.ofMillis(5))), 50)
+				.take(3)
+				.blockLast(Duration.ofSeconds(10));
+
+		awaitIdle(throttle);
+		assertNotNull(throttle.throttle(Mono.just("ok")).block(Duration.ofSeconds(1)));
+	}
+
+	@Test
+	void throttledResponseHalvesLimit() {
+		RequestThrottle throttle = new RequestThrottle(10_000, 10_000, 2, 64);
+		Flux.range(0, 500).flatMap(i -> throttle.throttle(Mono.just(i)), 64).blockLast(Duration.ofSeconds(10));
+		int grown = throttle.concurrencyLimit();
+		assertTrue(grown > 2);
+
+		throttle.onThrottled(Duration.ZERO);
+		assertEquals(Math.max(2, grown / 2), throttle.concurrencyLimit(), 1);
+	}
+
+	@Test
+	void queuedCallWaitsForRetryAfter() {
+		RequestThrottle throttle = new RequestThrottle(10_000, 10_000, 1, 1);
+		AtomicLong started = new AtomicLong();
+
+		// a primeira ocupa a única vaga; a segunda fica na fila
+		Mono<Long> first = throttle.throttle(Mono.delay(Duration.ofMillis(50)));
+		Mono<Long> queued = throttle.throttle(Mono.fromSupplier(System::nanoTime).doOnNext(started::set));
+		Flux<Long> both = Flux.merge(first, queued).cache();
+		both.subscribe();
+		long throttledAt = System.nanoTime();
+		throttle.onThrottled(Duration.ofMillis(300)); // 429 enquanto a primeira está em andamento
+
+		both.blockLast(Duration.ofSeconds(5));
+		assertTrue(started.get() - throttledAt >= Duration.ofMillis(300).toNanos(),
+				"começou " + Duration.ofNanos(started.get() - throttledAt).toMillis() + " ms depois do 429");
+		awaitIdle(throttle);
+	}
+
+	@Test
+	void throttledResponseKeepsQueuedReservations() {
+		// 10/s sem burst: 5 chamadas reservadas já ocupam os próximos ~400 ms
+		RequestThrottle throttle = new RequestThrottle(10, 1, 64, 64);
+		long start = System.nanoTime();
+		Flux<Long> reserved = Flux.range(0, 5).flatMap(i -> throttle.throttle(Mono.fromSupplier(System::nanoTime))).cache();
+		reserved.subscribe();
+
+		throttle.onThrottled(Duration.ZERO); // 429 sem Retry-After com as reservas na fila
+		long late = throttle.throttle(Mono.fromSupplier(System::nanoTime)).block(Duration.ofSeconds(5));
+		reserved.blockLast(Duration.ofSeconds(5));
+
+		// a nova chamada entra depois das 5 já agendadas, não junto com elas
+		assertTrue(late - start >= Duration.ofMillis(450).toNanos(),
+				"começou " + Duration.ofNanos(late - start).toMillis() + " ms depois");
+	}
+
+	@Test
+	void metricsFollowThrottleState() {
+		RequestThrottle throttle = new RequestThrottle(10_000, 10_000, 2, 64);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		throttle.bindTo(registry);
+
+		throttle.onThrottled(Duration.ZERO);
+		throttle.onThrottled(Duration.ZERO);
+
+		assertEquals(2.0, registry.get("royale.api.throttled").functionCounter().count());
+		assertEquals(2.0, registry.get("royale.api.concurrency.limit").gauge().value());
+		assertEquals(0.0, registry.get("royale.api.in.flight").gauge().value());
+	}
+
+	// a vaga é devolvida no doFinally, que roda depois do sinal terminal chegar ao assinante
+	private static void awaitIdle(RequestThrottle throttle) {
+		long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+		while (throttle.inFlight() != 0 && System.nanoTime() < deadline) Thread.onSpinWait();
+		assertEquals(0, throttle.inFlight());
+	}
+}
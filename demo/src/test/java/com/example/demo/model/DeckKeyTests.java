@@ -0,0 +1,34 @@
+package com.example.demo.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckKeyTests {
+
+	private static final int[] DECK = {26000021, 28000008, 26000010, 27000006, 26000030, 28000011, 26000038, 26000049};
+
+	@Test
+	void keyIgnoresCardOrder() {
+		int[] shuffled = {28000011, 26000049, 26000010, 27000006, 26000021, 28000008, 26000038, 26000030};
+		assertEquals(DeckKey.of(DECK), DeckKey.of(shuffled));
+		assertEquals(DeckKey.of(DECK).hashCode(), DeckKey.of(shuffled).hashCode());
+	}
+
+	@Test
+	void roundTripsThroughStringAndCardIds() {
+		DeckKey key = DeckKey.of(DECK);
+		assertEquals(key, DeckKey.parse(key.toString()));
+		int[] sorted = DECK.clone();
+		java.util.Arrays.sort(sorted);
+		assertArrayEquals(sorted, key.cardIds());
+		assertTrue(key.contains(27000006));
+		assertFalse(key.contains(26000000));
+	}
+
+	@Test
+	void rejectsUnsupportedIds() {
+		assertThrows(IllegalArgumentException.class, () -> DeckKey.of(159000000));
+		assertThrows(IllegalArgumentException.class, () -> DeckKey.parse("Knight,Archers"));
+	}
+}
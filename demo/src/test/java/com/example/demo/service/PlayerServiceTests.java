@@ -0,0 +1,47 @@
+package com.example.demo.service;
+
+import com.example.demo.client.BattleLogCache;
+import com.example.demo.client.CardDictionary;
+import com.example.demo.model.BattleRecord;
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlayerServiceTests {
+
+	private static final DeckKey DECK = DeckKey.of(26000000, 26000001, 26000002, 26000003, 26000004, 26000005, 26000006, 26000007);
+
+	@Test
+	void batchStreamsPlayersAsTheyCompleteAndIsolatesFailures() {
+		AtomicInteger calls = new AtomicInteger();
+		BattleLogCache logs = new BattleLogCache(null, Duration.ofMinutes(2), Duration.ofMinutes(30), 100) {
+			@Override
+			public Mono<List<BattleRecord>> get(String playerTag) {
+				calls.incrementAndGet();
+				List<BattleRecord> battles = List.of(new BattleRecord(1, 1, 72000006, 3, 1, DECK, null));
+				return switch (playerTag) {
+					case "#SLOW" -> Mono.delay(Duration.ofMillis(300)).thenReturn(battles);
+					case "#FAST" -> Mono.just(battles);
+					default -> Mono.error(new RuntimeException("404"));
+				};
+			}
+		};
+		PlayerService service = new PlayerService(logs, new CardDictionary(), 4, 10);
+
+		List<Map<String, Object>> results = service.getPlayerStatsBatch(List.of("#SLOW", "#FAST", "#GONE", "#FAST"))
+				.collectList().block();
+
+		assertEquals(3, calls.get());
+		assertEquals(List.of("#FAST", "#GONE", "#SLOW"), results.stream().map(r -> r.get("playerTag")).toList());
+		assertEquals(1, results.get(0).get("wins"));
+		assertEquals("404", results.get(1).get("error"));
+		assertThrows(IllegalArgumentException.class, () -> service.getPlayerStatsBatch(List.of()));
+	}
+}
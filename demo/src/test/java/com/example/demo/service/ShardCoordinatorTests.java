@@ -0,0 +1,119 @@
+package com.example.demo.service;
+
+import com.example.demo.aggregate.BattleRows;
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.MatchupTable;
+import com.example.demo.aggregate.SeenBattles;
+import com.example.demo.model.CardInfo;
+import com.example.demo.model.DeckKey;
+import com.example.demo.store.CheckpointStore;
+import com.example.demo.store.ShardSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardCoordinatorTests {
+
+	private static final DeckKey HOG = DeckKey.of(26000021, 28000008, 26000010, 27000006, 26000030, 28000011, 26000038, 26000049);
+	private static final DeckKey GOLEM = DeckKey.of(26000009, 26000015, 26000039, 26000048, 28000000, 28000012, 26000063, 26000014);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void battleSeenByTwoShardsCountsOnce() {
+		// batalha 4 aparece nas duas partições pelo mesmo lado (jogador no ranking de regiões de partições diferentes)
+		ShardSnapshot even = shard("even", 0, 57000008, new long[]{2, 4}, 1000);
+		ShardSnapshot odd = shard("odd", 1, 57000007, new long[]{4, 6}, 2000);
+
+		for (List<ShardSnapshot> order : List.of(List.of(even, odd), List.of(odd, even))) {
+			ShardCoordinator.Merged merged = ShardCoordinator.fold(order, 1000);
+			assertEquals(3, merged.battles().size());
+			assertEquals(3, merged.decks().totalGames()); // 3 batalhas, só o deck do dono do log
+			assertNull(merged.decks().get(GOLEM));
+			assertEquals(3, merged.decks().get(HOG).games());
+			assertEquals(3, merged.decks().get(HOG).wins());
+			assertEquals(List.of(new MatchupTable.Matchup(GOLEM, 3, 3, 0)), merged.matchups().matchups(HOG, 1));
+			assertEquals(Map.of(57000007, 2000L, 57000008, 1000L), merged.regions());
+			assertEquals(Map.of("#P0", 1000L, "#P1", 2000L), merged.watermarks());
+		}
+	}
+
+	@Test
+	void shardWithoutRowsFallsBackToCounters() {
+		// log de antes das linhas: só contadores; a batalha 4 já conta por ele e não de novo pela outra partição
+		ShardSnapshot legacy = shard("legacy", 0, 57000008, new long[]{2, 4}, 1000, false);
+		ShardSnapshot odd = shard("odd", 1, 57000007, new long[]{4, 6}, 2000);
+		assertFalse(legacy.hasRows());
+
+		for (List<ShardSnapshot> order : List.of(List.of(legacy, odd), List.of(odd, legacy))) {
+			ShardCoordinator.Merged merged = ShardCoordinator.fold(order, 1000);
+			assertEquals(3, merged.decks().get(HOG).games());
+			assertEquals(3, merged.battles().size());
+		}
+	}
+
+	@Test
+	void bothSidesOfABattleCountEachDeckOnce() {
+		// os dois jogadores da batalha 8 são top em partições diferentes: cada um conta o seu deck
+		ShardSnapshot hog = shard("hog", 0, 57000008, new long[]{8}, 1000);
+		ShardSnapshot golem = shard("golem", 1, 57000007, new long[]{8 ^ 1}, 1000, true, GOLEM, HOG, false);
+
+		for (List<ShardSnapshot> order : List.of(List.of(hog, golem), List.of(golem, hog))) {
+			ShardCoordinator.Merged merged = ShardCoordinator.fold(order, 1000);
+			assertEquals(2, merged.battles().size());
+			assertEquals(1, merged.decks().get(HOG).games());
+			assertEquals(1, merged.decks().get(HOG).wins());
+			assertEquals(1, merged.decks().get(GOLEM).games());
+			assertEquals(0, merged.decks().get(GOLEM).wins());
+			// confronto uma vez só
+			assertEquals(List.of(new MatchupTable.Matchup(GOLEM, 1, 1, 0)), merged.matchups().matchups(HOG, 1));
+		}
+	}
+
+	private ShardSnapshot shard(String name, int index, int region, long[] battleIds, long crawledAt) {
+		return shard(name, index, region, battleIds, crawledAt, true);
+	}
+
+	private ShardSnapshot shard(String name, int index, int region, long[] battleIds, long crawledAt, boolean withRows) {
+		return shard(name, index, region, battleIds, crawledAt, withRows, HOG, GOLEM, true);
+	}
+
+	// uma região da partição; em cada batalha o dono do log joga com {@code team}
+	private ShardSnapshot shard(String name, int index, int region, long[] battleIds, long crawledAt, boolean withRows,
+								DeckKey team, DeckKey opponent, boolean win) {
+		CheckpointStore store = new CheckpointStore(dir.resolve(name + ".log").toString(), 1.0);
+		store.open(new CheckpointStore.Listener() {
+			@Override
+			public void card(CardInfo card) {
+			}
+
+			@Override
+			public void region(int locationId) {
+			}
+
+			@Override
+			public void deck(DeckKey key, int games, int wins) {
+			}
+		});
+		DeckAggregate delta = new DeckAggregate();
+		MatchupTable matchups = new MatchupTable();
+		BattleRows rows = new BattleRows();
+		SeenBattles battles = new SeenBattles();
+		for (long battleId : battleIds) {
+			battles.add(battleId, crawledAt);
+			delta.record(team, win, crawledAt);
+			matchups.record(team, opponent, win, !win);
+			if (withRows) rows.add(battleId, crawledAt, team, opponent, win, !win);
+		}
+		store.appendRegion(region, List.of(), delta, matchups, withRows ? rows : null, battles, crawledAt, Map.of("#P" + index, crawledAt));
+		byte[] bytes = store.exportShard(index, 2);
+		store.close();
+		return ShardSnapshot.parse(bytes);
+	}
+}
@@ -0,0 +1,265 @@
+package com.example.demo.store;
+
+import com.example.demo.aggregate.BattleRows;
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.MatchupTable;
+import com.example.demo.aggregate.SeenBattles;
+import com.example.demo.model.CardInfo;
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointStoreTests {
+
+	private static final DeckKey DECK_A = DeckKey.of(26000021, 28000008, 26000010, 27000006, 26000030, 28000011, 26000038, 26000049);
+	private static final DeckKey DECK_B = DeckKey.of(26000000, 26000001, 26000002, 26000003, 26000004, 26000005, 26000006, 26000007);
+	private static final CardInfo KNIGHT = new CardInfo(26000000, "Knight", 3, "https://cdn/knight.png");
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void replaysRegionDeltasAndDropsTornTail() throws Exception {
+		Path file = dir.resolve("cache.log");
+		CheckpointStore store = new CheckpointStore(file.toString(), 1.0);
+		store.open(new Replay());
+		store.appendRegion(57000007, List.of(KNIGHT), delta(DECK_A, 3, 2), matchup(DECK_A, DECK_B, 3, 2, 1), new BattleRows(), battles(11, 12), 1000, Map.of("#AAA", 500L));
+		store.appendRegion(57000008, List.of(KNIGHT), delta(DECK_A, 1, 1), matchup(DECK_B, DECK_A, 1, 0, 1), new BattleRows(), battles(13), 2000, Map.of("#AAA", 700L, "#BBB", 300L));
+		long valid = Files.size(file);
+		store.appendRegion(57000009, List.of(KNIGHT), delta(DECK_B, 5, 0), new MatchupTable(), new BattleRows(), new SeenBattles(), 3000, Map.of());
+		store.close();
+
+		// simula queda no meio da última escrita
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(valid + 10);
+		}
+
+		Replay replay = new Replay();
+		store.open(replay);
+		assertEquals(List.of(57000007, 57000008), replay.regions);
+		assertEquals(List.of(KNIGHT), replay.cards);
+		assertEquals(List.of(11L, 12L, 13L), replay.battles);
+		assertEquals(Map.of(57000007, 1000L, 57000008, 2000L), replay.crawledAt);
+		assertEquals(Map.of("#AAA", 700L, "#BBB", 300L), replay.watermarks);
+		assertEquals(4, replay.decks.get(DECK_A).games());
+		assertEquals(3, replay.decks.get(DECK_A).wins());
+		assertNull(replay.decks.get(DECK_B));
+		assertEquals(List.of(new MatchupTable.Matchup(DECK_B, 4, 3, 1)), replay.matchups.matchups(DECK_A, 1));
+		assertEquals(valid, Files.size(file));
+
+		// segue gravando a partir do último registro válido
+		store.appendRegion(57000009, List.of(KNIGHT), delta(DECK_B, 5, 0), new MatchupTable(), new BattleRows(), new SeenBattles(), 3000, Map.of());
+		store.close();
+		Replay again = new Replay();
+		store.read(again);
+		assertEquals(List.of(57000007, 57000008, 57000009), again.regions);
+		assertEquals(5, again.decks.get(DECK_B).games());
+	}
+
+	@Test
+	void compactionKeepsStateInSingleSnapshot() throws Exception {
+		Path file = dir.resolve("cache.log");
+		CheckpointStore store = new CheckpointStore(file.toString(), 1.0);
+		store.open(new Replay());
+		DeckAggregate all = new DeckAggregate();
+		for (int region = 0; region < 50; region++) {
+			DeckAggregate delta = delta(DECK_A, 2, 1);
+			store.appendRegion(57000007 + region, List.of(KNIGHT), delta, new MatchupTable(), new BattleRows(), battles(region + 1), region, Map.of());
+			all.merge(delta);
+		}
+		// baldes por hora: só os dos últimos 7 dias sobrevivem à compactação
+		long now = System.currentTimeMillis();
+		all.record(DECK_A, true, now);
+		all.record(DECK_B, false, now - 10L * 24 * 3_600_000);
+		MatchupTable matchups = matchup(DECK_A, DECK_B, 70_000, 40_000, 29_000);
+		long beforeCompaction = Files.size(file);
+		store.compact(List.of(KNIGHT), Map.of(57000007, 10L, 57000008, 20L), all, matchups, new BattleRows(), battles(1, 2, 3),
+				Map.of("#AAA", 900L));
+		store.close();
+
+		assertTrue(Files.size(file) < beforeCompaction);
+		assertFalse(Files.exists(dir.resolve("cache.log.tmp")));
+		Replay replay = new Replay();
+		store.read(replay);
+		assertEquals(2, replay.regions.size());
+		assertEquals(101, replay.decks.get(DECK_A).games());
+		assertEquals(51, replay.decks.get(DECK_A).wins());
+		assertEquals(1, replay.decks.get(DECK_A).buckets(Integer.MIN_VALUE).length);
+		assertEquals(1, replay.decks.get(DECK_B).games());
+		assertEquals(0, replay.decks.get(DECK_B).buckets(Integer.MIN_VALUE).length);
+		assertEquals(List.of(1L, 2L, 3L), replay.battles);
+		assertEquals(List.of(1001L, 1002L, 1003L), replay.battleTimes); // para o horizonte de SeenBattles.prune
+		assertEquals(Map.of(57000007, 10L, 57000008, 20L), replay.crawledAt);
+		assertEquals(Map.of("#AAA", 900L), replay.watermarks);
+		assertEquals(List.of(new MatchupTable.Matchup(DECK_A, 70_000, 29_000, 40_000)), replay.matchups.matchups(DECK_B, 1));
+	}
+
+	@Test
+	void appendWithoutOpenFailsClearly() {
+		CheckpointStore store = new CheckpointStore(dir.resolve("cache.log").toString(), 1.0);
+		assertThrows(IllegalStateException.class, () -> store.appendRegion(57000007, List.of(KNIGHT), delta(DECK_A, 1, 1),
+				new MatchupTable(), new BattleRows(), new SeenBattles(), 1000, Map.of()));
+	}
+
+	@Test
+	void columnarSnapshotWidensColumnsWhenNeeded() throws Exception {
+		Path file = dir.resolve("cache.log");
+		CheckpointStore store = new CheckpointStore(file.toString(), 1.0);
+		store.open(new Replay());
+		// 320 cartas distintas (índices de 2 bytes) e um deck com mais de 65535 partidas (coluna de 4 bytes)
+		DeckAggregate all = new DeckAggregate();
+		for (int i = 0; i < 40; i++) {
+			int first = 26000000 + i * 8;
+			all.add(DeckKey.of(first, first + 1, first + 2, first + 3, first + 4, first + 5, first + 6, first + 7), i + 1, i);
+		}
+		all.add(DECK_A, 100_000, 51_000);
+		all.add(DeckKey.of(26000000), 7, 3); // deck incompleto: slots vazios
+		store.compact(List.of(KNIGHT), Map.of(), all, new MatchupTable(), new BattleRows(), new SeenBattles(), Map.of());
+		store.close();
+
+		Replay replay = new Replay();
+		store.read(replay);
+		assertEquals(all.size(), replay.decks.size());
+		for (var deck : all.decks()) {
+			assertEquals(deck.games(), replay.decks.get(deck.key()).games());
+			assertEquals(deck.wins(), replay.decks.get(deck.key()).wins());
+		}
+		assertEquals(1, CheckpointStore.width(255));
+		assertEquals(2, CheckpointStore.width(256));
+		assertEquals(4, CheckpointStore.width(100_000));
+	}
+
+	@Test
+	void exportedShardReplaysLikeTheLog() throws Exception {
+		Path file = dir.resolve("cache.log");
+		CheckpointStore store = new CheckpointStore(file.toString(), 1.0);
+		assertEquals(List.of(), shardOf(store.exportShard(0, 2)).regions); // sem log: só a partição
+
+		store.open(new Replay());
+		BattleRows rows = new BattleRows();
+		rows.add(11, 900, DECK_A, DECK_B, true, false);
+		rows.add(0, 950, null, DECK_B, false, true); // sem ID e sem o deck do time
+		store.appendRegion(57000008, List.of(KNIGHT), delta(DECK_A, 3, 2), matchup(DECK_A, DECK_B, 3, 2, 1), rows, battles(11), 1000, Map.of("#AAA", 500L));
+		store.appendRegion(57000010, List.of(KNIGHT), delta(DECK_B, 4, 1), new MatchupTable(), new BattleRows(), battles(12), 2000, Map.of());
+		byte[] exported = store.exportShard(0, 2);
+		store.close();
+
+		Replay replay = shardOf(exported);
+		assertEquals(List.of(0, 2), replay.shard);
+		assertEquals(List.of(57000008, 57000010), replay.regions);
+		assertEquals(List.of(KNIGHT), replay.cards);
+		assertEquals(3, replay.decks.get(DECK_A).games());
+		assertEquals(4, replay.decks.get(DECK_B).games());
+		assertEquals(List.of(11L, 12L), replay.battles);
+		assertEquals(List.of(new MatchupTable.Matchup(DECK_B, 3, 2, 1)), replay.matchups.matchups(DECK_A, 1));
+		assertEquals(List.of("11@900 " + DECK_A + " x " + DECK_B + " 10", "0@950 null x " + DECK_B + " 01"), replay.rows);
+
+		// fechado, o export relê o log do disco e chega aos mesmos bytes
+		assertArrayEquals(exported, store.exportShard(0, 2));
+		// snapshot cortado no meio não é aplicado pela metade sem aviso
+		byte[] torn = Arrays.copyOf(exported, exported.length - 3);
+		assertThrows(IllegalArgumentException.class, () -> CheckpointStore.read(torn, new Replay()));
+	}
+
+	private static Replay shardOf(byte[] exported) {
+		Replay replay = new Replay();
+		CheckpointStore.read(exported, replay);
+		return replay;
+	}
+
+	// batalha N jogada em 1000 + N
+	private static SeenBattles battles(long... ids) {
+		SeenBattles battles = new SeenBattles();
+		for (long id : ids) battles.add(id, 1000 + id);
+		return battles;
+	}
+
+	private static DeckAggregate delta(DeckKey key, int games, int wins) {
+		DeckAggregate delta = new DeckAggregate();
+		delta.add(key, games, wins);
+		return delta;
+	}
+
+	private static MatchupTable matchup(DeckKey deck, DeckKey opponent, int games, int wins, int losses) {
+		MatchupTable matchups = new MatchupTable();
+		matchups.add(deck, opponent, games, wins, losses);
+		return matchups;
+	}
+
+	private static final class Replay implements CheckpointStore.Listener {
+		final List<CardInfo> cards = new ArrayList<>();
+		final List<Integer> regions = new ArrayList<>();
+		final List<Long> battles = new ArrayList<>();
+		final List<Long> battleTimes = new ArrayList<>();
+		final Map<Integer, Long> crawledAt = new HashMap<>();
+		final Map<String, Long> watermarks = new HashMap<>();
+		final DeckAggregate decks = new DeckAggregate();
+		final MatchupTable matchups = new MatchupTable();
+		final List<Integer> shard = new ArrayList<>();
+		final List<String> rows = new ArrayList<>();
+
+		@Override
+		public void card(CardInfo card) {
+			cards.add(card);
+		}
+
+		@Override
+		public void region(int locationId) {
+			regions.add(locationId);
+		}
+
+		@Override
+		public void deck(DeckKey key, int games, int wins) {
+			decks.add(key, games, wins);
+		}
+
+		@Override
+		public void battle(long battleId, long battleTime) {
+			battles.add(battleId);
+			battleTimes.add(battleTime);
+		}
+
+		@Override
+		public void regionCrawled(int locationId, long at) {
+			crawledAt.put(locationId, at);
+		}
+
+		@Override
+		public void watermark(String playerTag, long battleTime) {
+			watermarks.merge(playerTag, battleTime, Math::max);
+		}
+
+		@Override
+		public void buckets(DeckKey key, long[] buckets) {
+			decks.addBuckets(key, buckets);
+		}
+
+		@Override
+		public void matchup(DeckKey deck, DeckKey opponent, int games, int wins, int losses) {
+			matchups.add(deck, opponent, games, wins, losses);
+		}
+
+		@Override
+		public void battleRow(long battleId, long battleTime, DeckKey team, DeckKey opponent, boolean win, boolean opponentWin) {
+			rows.add(battleId + "@" + battleTime + " " + team + " x " + opponent + " " + (win ? 1 : 0) + (opponentWin ? 1 : 0));
+		}
+
+		@Override
+		public void shard(int index, int count) {
+			shard.add(index);
+			shard.add(count);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.example.demo.store;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankedSnapshotTests {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void servesTopEntriesFromMappedFile() throws Exception {
+		Path file = dir.resolve("snapshot.bin");
+		RankedSnapshot.write(file, json("{\"globalMeanWinrate\":50.0,\"totalGames\":900}"),
+				List.of(json("{\"games\":400}"), json("{\"games\":300}"), json("{\"games\":200}")),
+				List.of(json("{\"games\":90}")));
+
+		// relido do disco, como após um restart
+		RankedSnapshot snapshot = RankedSnapshot.map(file);
+		assertNotNull(snapshot);
+
+		JsonNode top2 = mapper.readTree(snapshot.toJson(2));
+		assertEquals(900, top2.get("summary").get("totalGames").asInt());
+		assertEquals(2, top2.get("stable").size());
+		assertEquals(300, top2.get("stable").get(1).get("games").asInt());
+		assertEquals(1, top2.get("trending").size());
+
+		JsonNode none = mapper.readTree(snapshot.toJson(0));
+		assertEquals(0, none.get("stable").size());
+		assertEquals(0, none.get("trending").size());
+	}
+
+	@Test
+	void rejectsMissingOrForeignFiles() throws Exception {
+		assertNull(RankedSnapshot.map(dir.resolve("missing.bin")));
+		Path garbage = dir.resolve("garbage.bin");
+		Files.write(garbage, json("{\"not\":\"a snapshot\"}"));
+		assertNull(RankedSnapshot.map(garbage));
+	}
+
+	private static byte[] json(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,155 @@
+package com.example.demo.store;
+
+import com.example.demo.aggregate.BattleRows;
+import com.example.demo.aggregate.DeckAggregate;
+import com.example.demo.aggregate.MatchupTable;
+import com.example.demo.aggregate.SeenBattles;
+import com.example.demo.model.CardInfo;
+import com.example.demo.model.DeckKey;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardSnapshotTests {
+
+	private static final DeckKey DECK = DeckKey.of(26000021, 28000008, 26000010, 27000006, 26000030, 28000011, 26000038, 26000049);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void readsPartitionAndRejectsForeignRegions() {
+		ShardSnapshot snapshot = ShardSnapshot.parse(export("a", 1, 2, new int[]{57000007, 57000009}, 500, 7));
+		assertEquals(1, ShardSnapshot.shardOf(57000007, 2));
+		assertEquals(1, snapshot.shard());
+		assertEquals(2, snapshot.shards());
+		assertEquals(501, snapshot.version()); // último crawledAt
+		assertEquals(14, snapshot.games());
+		assertEquals(2, snapshot.regions());
+
+		// 57000008 é da partição 0
+		assertThrows(IllegalArgumentException.class, () -> ShardSnapshot.parse(export("b", 1, 2, new int[]{57000008}, 500, 1)));
+		// log sem registro de partição (ex: o arquivo de checkpoint cru)
+		assertThrows(IllegalArgumentException.class, () -> ShardSnapshot.parse(new byte[0]));
+	}
+
+	@Test
+	void mergeIsCommutativeAndIdempotent() {
+		// várias versões de cada partição, entregues em ordens diferentes e repetidas
+		List<ShardSnapshot> deliveries = new ArrayList<>();
+		for (int version = 1; version <= 3; version++) {
+			deliveries.add(ShardSnapshot.parse(export("s0v" + version, 0, 2, new int[]{57000008, 57000010}, version * 100, version)));
+			deliveries.add(ShardSnapshot.parse(export("s1v" + version, 1, 2, new int[]{57000007}, version * 100, version)));
+		}
+		// mesma versão e partidas, bytes diferentes: o desempate também independe da ordem
+		deliveries.add(ShardSnapshot.parse(export("s1tie", 1, 2, new int[]{57000009}, 300, 3)));
+
+		Map<Integer, ShardSnapshot> expected = lww(deliveries);
+		assertEquals(2, expected.size());
+		assertEquals(301, expected.get(0).version());
+		Random rnd = new Random(3);
+		for (int round = 0; round < 50; round++) {
+			List<ShardSnapshot> shuffled = new ArrayList<>(deliveries);
+			shuffled.addAll(deliveries.subList(0, rnd.nextInt(deliveries.size())));
+			Collections.shuffle(shuffled, rnd);
+			Map<Integer, ShardSnapshot> merged = lww(shuffled);
+			for (int shard : expected.keySet()) assertSame(expected.get(shard), merged.get(shard));
+		}
+	}
+
+	@Test
+	void hasRowsComesFromTheRecordFlagsNotFromCounts() {
+		CheckpointStore store = new CheckpointStore(dir.resolve("mixed.log").toString(), 1.0);
+		store.open(new CheckpointStore.Listener() {
+			@Override
+			public void card(CardInfo card) {
+			}
+
+			@Override
+			public void region(int locationId) {
+			}
+
+			@Override
+			public void deck(DeckKey key, int games, int wins) {
+			}
+		});
+		DeckAggregate delta = new DeckAggregate();
+		delta.add(DECK, 2, 1);
+		// região com linhas de sobra: sozinha, as contagens diriam que toda batalha tem linha
+		BattleRows rows = new BattleRows();
+		for (long id = 2; id <= 8; id += 2) rows.add(id, 500, DECK, DECK, true, false);
+		store.appendRegion(57000008, List.of(), delta, new MatchupTable(), rows, battle(2, 500), 500, Map.of());
+		assertTrue(ShardSnapshot.parse(store.exportShard(0, 2)).hasRows());
+
+		// região vazia gravada sem linhas não muda nada; com batalhas, sim
+		store.appendRegion(57000010, List.of(), new DeckAggregate(), new MatchupTable(), null, new SeenBattles(), 600, Map.of());
+		assertTrue(ShardSnapshot.parse(store.exportShard(0, 2)).hasRows());
+		store.appendRegion(57000012, List.of(), delta, new MatchupTable(), null, battle(10, 700), 700, Map.of());
+		ShardSnapshot snapshot = ShardSnapshot.parse(store.exportShard(0, 2));
+		assertTrue(snapshot.rows() >= snapshot.battles());
+		assertFalse(snapshot.hasRows());
+
+		// linhas marcadas como faltando ficam na compactação até saírem do horizonte
+		BattleRows all = new BattleRows();
+		all.addAll(rows);
+		all.markMissing(700);
+		SeenBattles battles = battle(2, 500);
+		battles.add(10, 700);
+		store.compact(List.of(), Map.of(57000008, 500L), delta, new MatchupTable(), all, battles, Map.of());
+		assertFalse(ShardSnapshot.parse(store.exportShard(0, 2)).hasRows());
+		all.prune(701);
+		battles.prune(701);
+		store.compact(List.of(), Map.of(57000008, 500L), delta, new MatchupTable(), all, battles, Map.of());
+		assertTrue(ShardSnapshot.parse(store.exportShard(0, 2)).hasRows());
+		store.close();
+	}
+
+	// a regra do coordenador: por partição, fica o snapshot que ganha em newerThan
+	private static Map<Integer, ShardSnapshot> lww(List<ShardSnapshot> deliveries) {
+		Map<Integer, ShardSnapshot> shards = new TreeMap<>();
+		for (ShardSnapshot snapshot : deliveries) {
+			shards.merge(snapshot.shard(), snapshot, (current, offered) -> offered.newerThan(current) ? offered : current);
+		}
+		return shards;
+	}
+
+	private byte[] export(String name, int shard, int shards, int[] regions, long crawledAt, int games) {
+		CheckpointStore store = new CheckpointStore(dir.resolve(name + ".log").toString(), 1.0);
+		store.open(new CheckpointStore.Listener() {
+			@Override
+			public void card(CardInfo card) {
+			}
+
+			@Override
+			public void region(int locationId) {
+			}
+
+			@Override
+			public void deck(DeckKey key, int games, int wins) {
+			}
+		});
+		for (int i = 0; i < regions.length; i++) {
+			DeckAggregate delta = new DeckAggregate();
+			delta.add(DECK, games, games / 2);
+			store.appendRegion(regions[i], List.of(), delta, new MatchupTable(), new BattleRows(), battle(regions[i], crawledAt), crawledAt + i, Map.of());
+		}
+		byte[] bytes = store.exportShard(shard, shards);
+		store.close();
+		return bytes;
+	}
+
+	private static SeenBattles battle(long battleId, long battleTime) {
+		SeenBattles battles = new SeenBattles();
+		battles.add(battleId, battleTime);
+		return battles;
+	}
+}